@@ -21,8 +21,11 @@ import com.google.cloud.tools.appengine.cloudsdk.CloudSdkNotFoundException;
 import com.google.cloud.tools.managedcloudsdk.BadCloudSdkVersionException;
 import com.google.cloud.tools.managedcloudsdk.ManagedCloudSdk;
 import com.google.cloud.tools.managedcloudsdk.UnsupportedOsException;
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
 import org.gradle.util.GradleVersion;
 
 /**
@@ -35,18 +38,26 @@ public class AppEngineCorePluginConfiguration {
 
   public static final String LOGIN_TASK_NAME = "appengineCloudSdkLogin";
   public static final String DEPLOY_TASK_NAME = "appengineDeploy";
+  public static final String AWAIT_DEPLOY_TASK_NAME = "appengineAwaitDeploy";
   public static final String DEPLOY_CRON_TASK_NAME = "appengineDeployCron";
   public static final String DEPLOY_DISPATCH_TASK_NAME = "appengineDeployDispatch";
   public static final String DEPLOY_DOS_TASK_NAME = "appengineDeployDos";
   public static final String DEPLOY_INDEX_TASK_NAME = "appengineDeployIndex";
   public static final String DEPLOY_QUEUE_TASK_NAME = "appengineDeployQueue";
   public static final String DEPLOY_ALL_TASK_NAME = "appengineDeployAll";
+  public static final String DEPLOY_SERVICES_TASK_NAME = "appengineDeployServices";
+  public static final String VALIDATE_CONFIG_TASK_NAME = "appengineValidateConfig";
   public static final String SHOW_CONFIG_TASK_NAME = "appengineShowConfiguration";
+  public static final String LOGS_TASK_NAME = "appengineLogs";
   public static final String DOWNLOAD_CLOUD_SDK_TASK_NAME = "downloadCloudSdk";
   public static final String CHECK_CLOUD_SDK_TASK_NAME = "checkCloudSdk";
 
   public static final String APPENGINE_EXTENSION = "appengine";
 
+  // appengine tasks that only read local files, they must not download or check the Cloud SDK
+  private static final Set<String> LOCAL_TASK_NAMES =
+      ImmutableSet.of(VALIDATE_CONFIG_TASK_NAME, LOGS_TASK_NAME);
+
   private Project project;
   private DeployExtension deployExtension;
   private ToolsExtension toolsExtension;
@@ -84,12 +95,15 @@ public class AppEngineCorePluginConfiguration {
     createCheckCloudSdkTask();
     createLoginTask();
     createDeployTask();
+    createAwaitDeployTask();
     createDeployCronTask();
     createDeployDispatchTask();
     createDeployDosTask();
     createDeployIndexTask();
     createDeployQueueTask();
     createDeployAllTask();
+    createValidateConfigTask();
+    createDeployServicesTask();
     createShowConfigurationTask();
   }
 
@@ -115,7 +129,7 @@ public class AppEngineCorePluginConfiguration {
 
           try {
             cloudSdkOperations =
-                new CloudSdkOperations(
+                CloudSdkOperations.forSdk(
                     toolsExtension.getCloudSdkHome(), toolsExtension.getServiceAccountKeyFile());
           } catch (CloudSdkNotFoundException ex) {
             // this should never happen, not found exception only occurs when auto-discovery fails,
@@ -139,14 +153,23 @@ public class AppEngineCorePluginConfiguration {
                   p -> {
                     if (managedCloudSdk != null) {
                       downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+                      downloadCloudSdkTask.setCloudSdkVersion(toolsExtension.getCloudSdkVersion());
+                      downloadCloudSdkTask.setCloudSdkMirror(toolsExtension.getCloudSdkMirror());
+                      downloadCloudSdkTask.setUpdateCheckHours(
+                          toolsExtension.getCloudSdkUpdateCheckHours());
+                      downloadCloudSdkTask.setComponents(toolsExtension.getComponents());
                       p.getTasks()
-                          .matching(task -> task.getName().startsWith("appengine"))
+                          .matching(AppEngineCorePluginConfiguration::usesCloudSdk)
                           .forEach(task -> task.dependsOn(downloadCloudSdkTask));
                     }
                   });
             });
   }
 
+  private static boolean usesCloudSdk(Task task) {
+    return task.getName().startsWith("appengine") && !LOCAL_TASK_NAMES.contains(task.getName());
+  }
+
   private void createCheckCloudSdkTask() {
     project
         .getTasks()
@@ -162,8 +185,11 @@ public class AppEngineCorePluginConfiguration {
                     if (managedCloudSdk == null && toolsExtension.getCloudSdkVersion() != null) {
                       checkCloudSdkTask.setVersion(toolsExtension.getCloudSdkVersion());
                       checkCloudSdkTask.setCloudSdk(cloudSdkOperations.getCloudSdk());
+                      checkCloudSdkTask.setCloudSdkDescriptor(
+                          CloudSdkDescriptor.forSdk(
+                              toolsExtension.getCloudSdkHome().toPath(), p.getGradle()));
                       p.getTasks()
-                          .matching(task -> task.getName().startsWith("appengine"))
+                          .matching(AppEngineCorePluginConfiguration::usesCloudSdk)
                           .forEach(task -> task.dependsOn(checkCloudSdkTask));
                     }
                   });
@@ -207,6 +233,26 @@ public class AppEngineCorePluginConfiguration {
               deployTask.setGroup(taskGroup);
               deployTask.setDescription("Deploy an App Engine application");
               // deployConfig is set in AppEngineStandardPlugin and AppEngineFlexiblePlugin
+
+              project.afterEvaluate(
+                  project ->
+                      deployTask.setAsyncDeployment(cloudSdkOperations.getAsyncDeployment()));
+            });
+  }
+
+  private void createAwaitDeployTask() {
+    DeployTask deployTask = (DeployTask) project.getTasks().getByName(DEPLOY_TASK_NAME);
+    project
+        .getTasks()
+        .create(
+            AWAIT_DEPLOY_TASK_NAME,
+            AwaitDeployTask.class,
+            awaitDeployTask -> {
+              awaitDeployTask.setGroup(taskGroup);
+              awaitDeployTask.setDescription(
+                  "Wait for a deployment submitted with " + DEPLOY_TASK_NAME + " --async");
+              awaitDeployTask.setDeployTask(deployTask);
+              awaitDeployTask.mustRunAfter(deployTask);
             });
   }
 
@@ -316,6 +362,79 @@ public class AppEngineCorePluginConfiguration {
             });
   }
 
+  private void createValidateConfigTask() {
+    ValidateConfigTask validateConfigTask =
+        project
+            .getTasks()
+            .create(
+                VALIDATE_CONFIG_TASK_NAME,
+                ValidateConfigTask.class,
+                validateTask -> {
+                  validateTask.setGroup(taskGroup);
+                  validateTask.setDescription("Validate App Engine configuration files");
+
+                  project.afterEvaluate(
+                      project -> {
+                        validateTask.setDeployConfig(deployExtension);
+                      });
+                });
+
+    // every deployment validates the configuration first
+    for (String deployTaskName :
+        new String[] {
+          DEPLOY_TASK_NAME,
+          DEPLOY_CRON_TASK_NAME,
+          DEPLOY_DISPATCH_TASK_NAME,
+          DEPLOY_DOS_TASK_NAME,
+          DEPLOY_INDEX_TASK_NAME,
+          DEPLOY_QUEUE_TASK_NAME,
+          DEPLOY_ALL_TASK_NAME
+        }) {
+      project.getTasks().getByName(deployTaskName).dependsOn(validateConfigTask);
+    }
+  }
+
+  private void createDeployServicesTask() {
+    // a single task on the root project collects the services of all app engine projects, it is
+    // created right away so the root build script can configure it
+    Project rootProject = project.getRootProject();
+    Task task = rootProject.getTasks().findByName(DEPLOY_SERVICES_TASK_NAME);
+    if (task == null) {
+      task =
+          rootProject
+              .getTasks()
+              .create(
+                  DEPLOY_SERVICES_TASK_NAME,
+                  DeployServicesTask.class,
+                  deployServicesTask -> {
+                    deployServicesTask.setGroup(taskGroup);
+                    deployServicesTask.setDescription(
+                        "Deploy the App Engine applications of all projects in this build");
+                    rootProject
+                        .getGradle()
+                        .getTaskGraph()
+                        .whenReady(deployServicesTask::startPipeline);
+                  });
+    }
+    if (!(task instanceof DeployServicesTask)) {
+      // a task of the build, or this plugin loaded by another buildscript classpath
+      project
+          .getLogger()
+          .warn(
+              project.getPath()
+                  + " is not deployed by "
+                  + task.getPath()
+                  + ", it is not a task of this plugin. Load the plugin in the root project's"
+                  + " buildscript to deploy all projects with "
+                  + DEPLOY_SERVICES_TASK_NAME);
+      return;
+    }
+    // services are added once all projects are configured, with their final deploy configuration
+    DeployServicesTask deployServicesTask = (DeployServicesTask) task;
+    DeployTask deployTask = (DeployTask) project.getTasks().getByName(DEPLOY_TASK_NAME);
+    project.getGradle().projectsEvaluated(gradle -> deployServicesTask.addService(deployTask));
+  }
+
   private void createShowConfigurationTask() {
     project
         .getTasks()
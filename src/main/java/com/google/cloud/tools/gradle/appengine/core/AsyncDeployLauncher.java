@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entrypoint of the detached process that runs an asynchronous deployment. It outlives the build
+ * that submitted the deployment, so it only depends on the JDK: it runs the command with its output
+ * appended to the log file and then writes the exit code to the status file.
+ *
+ * <p>Usage: {@code AsyncDeployLauncher <status file> <log file> <command>...}
+ */
+public class AsyncDeployLauncher {
+
+  /** Exit code recorded when the command could not be started at all. */
+  static final int LAUNCH_FAILED = 127;
+
+  /** Run the command and record its exit code. */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 3) {
+      throw new IllegalArgumentException(
+          "Usage: AsyncDeployLauncher <status file> <log file> <command>...");
+    }
+    Path status = new File(args[0]).toPath();
+    File log = new File(args[1]);
+    List<String> command = Arrays.asList(args).subList(2, args.length);
+
+    int exitCode;
+    try {
+      Process process =
+          new ProcessBuilder(command)
+              .redirectErrorStream(true)
+              .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+              .start();
+      process.getOutputStream().close();
+      exitCode = process.waitFor();
+    } catch (IOException ex) {
+      try (PrintStream out =
+          new PrintStream(
+              Files.newOutputStream(
+                  log.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+              true,
+              "UTF-8")) {
+        out.println("Failed to start " + command.get(0) + ": " + ex.getMessage());
+      }
+      exitCode = LAUNCH_FAILED;
+    }
+
+    // move into place so a poller never reads a partially written status
+    Path temp = status.resolveSibling(status.getFileName() + ".tmp");
+    Files.write(temp, String.valueOf(exitCode).getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, status, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
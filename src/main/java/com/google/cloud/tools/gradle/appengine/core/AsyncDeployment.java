@@ -0,0 +1,236 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.api.deploy.DeployConfiguration;
+import com.google.cloud.tools.appengine.cloudsdk.CloudSdk;
+import com.google.cloud.tools.appengine.cloudsdk.internal.args.GcloudArgs;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Submits deployments that run in a detached process, so the build does not wait for them. The
+ * submitted deployment is described by an operation handle (operation.json), each deployment has
+ * its own directory for its log and status file, so a launcher that is still running can't report
+ * into a later deployment.
+ */
+public class AsyncDeployment {
+
+  static final String OPERATION_FILE = "operation.json";
+  static final String LOG_FILE = "gcloud.log";
+  static final String STATUS_FILE = "exit-code";
+  static final String OPERATION_DIRECTORY_PREFIX = "deploy-";
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  private final CloudSdk cloudSdk;
+  @Nullable private final File credentialFile;
+
+  public AsyncDeployment(CloudSdk cloudSdk, @Nullable File credentialFile) {
+    this.cloudSdk = cloudSdk;
+    this.credentialFile = credentialFile;
+  }
+
+  /** A submitted deployment, as stored in operation.json. */
+  public static class Operation {
+    String projectId;
+    String version;
+    @Nullable String fingerprint;
+    List<String> command;
+    String log;
+    String status;
+    long submitted;
+
+    public String getLog() {
+      return log;
+    }
+
+    /** Returns the exit code of the deployment, or null if it is still running. */
+    @Nullable
+    public Integer getExitCode() throws IOException {
+      Path statusFile = new File(status).toPath();
+      if (!Files.isRegularFile(statusFile)) {
+        return null;
+      }
+      String exitCode = new String(Files.readAllBytes(statusFile), StandardCharsets.UTF_8).trim();
+      try {
+        return Integer.valueOf(exitCode);
+      } catch (NumberFormatException ex) {
+        throw new IOException("Invalid deployment status in " + status + ": " + exitCode, ex);
+      }
+    }
+  }
+
+  /**
+   * Start a deployment in a detached process.
+   *
+   * @param config the deployment
+   * @param fingerprint the deploy fingerprint to record once the deployment succeeds
+   * @param operationDirectory where the operation handle is written, the log and status go in a
+   *     subdirectory of their own
+   * @return the operation handle of the submitted deployment
+   */
+  public Operation submit(
+      DeployConfiguration config, @Nullable String fingerprint, File operationDirectory)
+      throws IOException {
+    Path directory = operationDirectory.toPath();
+    Files.createDirectories(directory);
+    deleteFinished(directory);
+
+    Operation operation = new Operation();
+    operation.submitted = System.currentTimeMillis();
+    Path deployDirectory =
+        Files.createTempDirectory(
+            directory, OPERATION_DIRECTORY_PREFIX + operation.submitted + "-");
+    operation.log = deployDirectory.resolve(LOG_FILE).toString();
+    operation.status = deployDirectory.resolve(STATUS_FILE).toString();
+    operation.projectId = config.getProjectId();
+    operation.version = config.getVersion();
+    operation.fingerprint = fingerprint;
+    operation.command = deployCommand(config);
+
+    List<String> launcher = new ArrayList<>();
+    launcher.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+    launcher.add("-cp");
+    launcher.add(launcherClasspath());
+    launcher.add(AsyncDeployLauncher.class.getName());
+    launcher.add(operation.status);
+    launcher.add(operation.log);
+    launcher.addAll(operation.command);
+
+    ProcessBuilder processBuilder =
+        new ProcessBuilder(launcher)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(operation.log)));
+    processBuilder.environment().putAll(deployEnvironment());
+    Process process = processBuilder.start();
+    process.getOutputStream().close();
+
+    write(operation, directory.resolve(OPERATION_FILE));
+    return operation;
+  }
+
+  // the directories of earlier deployments that finished, their launcher is gone
+  private static void deleteFinished(Path directory) throws IOException {
+    List<Path> finished = new ArrayList<>();
+    try (DirectoryStream<Path> deployDirectories =
+        Files.newDirectoryStream(directory, OPERATION_DIRECTORY_PREFIX + "*")) {
+      for (Path deployDirectory : deployDirectories) {
+        if (Files.isRegularFile(deployDirectory.resolve(STATUS_FILE))) {
+          finished.add(deployDirectory);
+        }
+      }
+    }
+    for (Path deployDirectory : finished) {
+      Files.deleteIfExists(deployDirectory.resolve(LOG_FILE));
+      Files.deleteIfExists(deployDirectory.resolve(STATUS_FILE));
+      Files.deleteIfExists(deployDirectory);
+    }
+  }
+
+  /** The gcloud command line of a deployment, the same one plugins-core would run. */
+  @VisibleForTesting
+  List<String> deployCommand(DeployConfiguration config) {
+    List<String> command = new ArrayList<>();
+    command.add(cloudSdk.getGCloudPath().toAbsolutePath().toString());
+    command.add("app");
+    command.add("deploy");
+    for (File deployable : config.getDeployables()) {
+      command.add(deployable.toPath().toString());
+    }
+    command.addAll(GcloudArgs.get("bucket", config.getBucket()));
+    command.addAll(GcloudArgs.get("image-url", config.getImageUrl()));
+    command.addAll(GcloudArgs.get("promote", config.getPromote()));
+    command.addAll(GcloudArgs.get("server", config.getServer()));
+    command.addAll(GcloudArgs.get("stop-previous-version", config.getStopPreviousVersion()));
+    command.addAll(GcloudArgs.get("version", config.getVersion()));
+    command.addAll(GcloudArgs.get(config));
+    command.addAll(GcloudArgs.get("credential-file-override", credentialFile));
+    return command;
+  }
+
+  private Map<String, String> deployEnvironment() {
+    Map<String, String> environment = new HashMap<>();
+    environment.put("CLOUDSDK_APP_USE_GSUTIL", "0");
+    environment.put("CLOUDSDK_CORE_DISABLE_PROMPTS", "1");
+    String metricsEnvironment = getClass().getPackage().getImplementationTitle();
+    if (metricsEnvironment != null) {
+      environment.put("CLOUDSDK_METRICS_ENVIRONMENT", metricsEnvironment);
+      String metricsVersion = getClass().getPackage().getImplementationVersion();
+      if (metricsVersion != null) {
+        environment.put("CLOUDSDK_METRICS_ENVIRONMENT_VERSION", metricsVersion);
+      }
+    }
+    return environment;
+  }
+
+  private static String launcherClasspath() throws IOException {
+    try {
+      return new File(
+              AsyncDeployLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+          .getPath();
+    } catch (URISyntaxException ex) {
+      throw new IOException("Failed to locate the plugin classpath", ex);
+    }
+  }
+
+  /** Read the operation handle in operationDirectory, or return null if there is none. */
+  @Nullable
+  public static Operation read(File operationDirectory) throws IOException {
+    Path file = operationDirectory.toPath().resolve(OPERATION_FILE);
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, Operation.class);
+    }
+  }
+
+  /**
+   * Remove the operation handle of a finished deployment, its log is kept until the next deployment
+   * is submitted.
+   */
+  public static void complete(File operationDirectory) throws IOException {
+    Files.deleteIfExists(operationDirectory.toPath().resolve(OPERATION_FILE));
+  }
+
+  @VisibleForTesting
+  static void write(Operation operation, Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      GSON.toJson(operation, writer);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
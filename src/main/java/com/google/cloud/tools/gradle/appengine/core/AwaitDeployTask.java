@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+
+/** Task to wait for a deployment submitted with appengineDeploy --async. */
+public class AwaitDeployTask extends DefaultTask {
+
+  private static final long DEFAULT_TIMEOUT_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+
+  private DeployTask deployTask;
+  private long timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+  private long pollIntervalMillis = 1000;
+
+  public void setDeployTask(DeployTask deployTask) {
+    this.deployTask = deployTask;
+  }
+
+  /** Sets the number of seconds to wait for the deployment. */
+  @Option(option = "timeout", description = "Seconds to wait for the deployment (default 1800)")
+  public void setTimeout(String timeoutSeconds) {
+    try {
+      this.timeoutSeconds = Long.parseLong(timeoutSeconds);
+    } catch (NumberFormatException ex) {
+      throw new GradleException("Invalid timeout '" + timeoutSeconds + "', expected seconds", ex);
+    }
+  }
+
+  @VisibleForTesting
+  void setPollIntervalMillis(long pollIntervalMillis) {
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  /** Task entrypoint : Wait for the submitted deployment to finish and report its outcome. */
+  @TaskAction
+  public void awaitDeployAction() throws IOException, InterruptedException {
+    File operationDirectory = deployTask.getOperationDirectory();
+    AsyncDeployment.Operation operation = AsyncDeployment.read(operationDirectory);
+    if (operation == null) {
+      getLogger().lifecycle("No submitted deployment to wait for");
+      setDidWork(false);
+      return;
+    }
+    String target = "version " + operation.version + " to " + operation.projectId;
+
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+    long logOffset = 0;
+    Integer exitCode;
+    while ((exitCode = operation.getExitCode()) == null) {
+      logOffset = printLog(operation.getLog(), logOffset, false);
+      if (System.currentTimeMillis() > deadline) {
+        throw new GradleException(
+            "Timed out after "
+                + timeoutSeconds
+                + " seconds waiting for the deployment of "
+                + target
+                + ", it is still running (log: "
+                + operation.getLog()
+                + ")");
+      }
+      Thread.sleep(pollIntervalMillis);
+    }
+    printLog(operation.getLog(), logOffset, true);
+    AsyncDeployment.complete(operationDirectory);
+
+    if (exitCode != 0) {
+      throw new GradleException(
+          "Deployment of "
+              + target
+              + " failed with exit code "
+              + exitCode
+              + " (log: "
+              + operation.getLog()
+              + ")");
+    }
+
+    DeployExtension deployConfig = deployTask.getDeployConfig();
+    if (deployConfig != null
+        && Objects.equals(deployConfig.getProjectId(), operation.projectId)
+        && Objects.equals(deployConfig.getVersion(), operation.version)) {
+      DeployFingerprint.forTask(deployTask).record(deployConfig, operation.fingerprint);
+    }
+    getLogger().lifecycle("Deployment of " + target + " finished");
+  }
+
+  /** Print the lines appended to the log since offset, returns the new offset. */
+  private long printLog(String log, long offset, boolean includePartialLine) throws IOException {
+    File logFile = new File(log);
+    if (!logFile.isFile() || logFile.length() <= offset) {
+      return offset;
+    }
+    try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+      byte[] appended = new byte[(int) (file.length() - offset)];
+      file.seek(offset);
+      file.readFully(appended);
+      int end = appended.length;
+      if (!includePartialLine) {
+        // a line is only printed once it is complete
+        while (end > 0 && appended[end - 1] != '\n') {
+          end--;
+        }
+      }
+      String text = new String(appended, 0, end, StandardCharsets.UTF_8);
+      for (String line : text.split("\\r?\\n")) {
+        if (!line.isEmpty()) {
+          getLogger().lifecycle(line);
+        }
+      }
+      return offset + end;
+    }
+  }
+}
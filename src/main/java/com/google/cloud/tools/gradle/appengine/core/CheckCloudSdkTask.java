@@ -24,13 +24,33 @@ import com.google.cloud.tools.appengine.cloudsdk.CloudSdkOutOfDateException;
 import com.google.cloud.tools.appengine.cloudsdk.CloudSdkVersionFileException;
 import com.google.cloud.tools.appengine.cloudsdk.InvalidJavaSdkException;
 import com.google.common.base.Strings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 
+/**
+ * Validates a user provided Cloud SDK. The result is recorded against the SDK's VERSION file,
+ * component manifests and java home, so the SDK is only validated again when one of those changes.
+ */
 public class CheckCloudSdkTask extends DefaultTask {
 
   private CloudSdk cloudSdk;
+  private CloudSdkDescriptor cloudSdkDescriptor;
   private String version;
 
   public void setVersion(String version) {
@@ -41,11 +61,43 @@ public class CheckCloudSdkTask extends DefaultTask {
     this.cloudSdk = cloudSdk;
   }
 
+  public void setCloudSdkDescriptor(CloudSdkDescriptor cloudSdkDescriptor) {
+    this.cloudSdkDescriptor = cloudSdkDescriptor;
+  }
+
+  @Input
+  @Optional
+  public String getVersion() {
+    return version;
+  }
+
+  /** The VERSION file and component manifests of the SDK. */
+  @InputFiles
+  @PathSensitive(PathSensitivity.ABSOLUTE)
+  public FileCollection getSdkManifests() {
+    return getProject().files((Callable<List<File>>) this::findSdkManifests);
+  }
+
+  /** The java home the SDK runs with. */
+  @Input
+  @Optional
+  public String getJavaHome() {
+    if (cloudSdkDescriptor == null) {
+      return null;
+    }
+    return cloudSdkDescriptor.getJavaHome().toAbsolutePath().toString();
+  }
+
+  @OutputFile
+  public File getCheckedMarker() {
+    return new File(getProject().getBuildDir(), "appengine/checked-cloud-sdk.txt");
+  }
+
   /** Task entrypoint : Verify Cloud SDK installation. */
   @TaskAction
   public void checkCloudSdkAction()
       throws CloudSdkNotFoundException, CloudSdkVersionFileException, InvalidJavaSdkException,
-          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException {
+          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException, IOException {
     // These properties are only set by AppEngineCorePluginConfiguration if the correct config
     // params are set in the tools extension.
     if (Strings.isNullOrEmpty(version) || cloudSdk == null) {
@@ -64,5 +116,24 @@ public class CheckCloudSdkTask extends DefaultTask {
 
     cloudSdk.validateCloudSdk();
     cloudSdk.validateAppEngineJavaComponents();
+
+    File marker = getCheckedMarker();
+    Files.createDirectories(marker.getParentFile().toPath());
+    Files.write(marker.toPath(), ("version=" + version + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private List<File> findSdkManifests() {
+    List<File> manifests = new ArrayList<>();
+    if (cloudSdkDescriptor == null) {
+      return manifests;
+    }
+    // the descriptor already listed the installed components, don't list the sdk again
+    if (cloudSdkDescriptor.getVersion() != null) {
+      manifests.add(cloudSdkDescriptor.getSdkPath().resolve("VERSION").toFile());
+    }
+    for (Path manifest : cloudSdkDescriptor.getComponentManifests()) {
+      manifests.add(manifest.toFile());
+    }
+    return manifests;
   }
 }
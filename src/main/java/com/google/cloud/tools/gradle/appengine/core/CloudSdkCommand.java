@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.ConsoleListener;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.GradleException;
+
+/** Runs Cloud SDK install commands the managed SDK has no api for, without prompting. */
+final class CloudSdkCommand {
+
+  private CloudSdkCommand() {}
+
+  /**
+   * Run command in directory, passing its output to consoleListener.
+   *
+   * @param description what the command does, for the failure message
+   * @param recording records the process for the build's process report
+   */
+  static void run(
+      List<String> command,
+      Path directory,
+      ConsoleListener consoleListener,
+      String description,
+      ProcessTelemetry.Recording recording)
+      throws IOException, InterruptedException {
+    ProcessBuilder processBuilder =
+        new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true);
+    processBuilder.environment().put("CLOUDSDK_CORE_DISABLE_PROMPTS", "1");
+    Process process = processBuilder.start();
+    recording.started();
+    process.getOutputStream().close();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        consoleListener.console(line + "\n");
+        // stderr is merged into stdout
+        recording.stdOut(line);
+      }
+    }
+    int exitCode = process.waitFor();
+    recording.finished(exitCode);
+    if (exitCode != 0) {
+      throw new GradleException(description + " failed with exit code " + exitCode);
+    }
+  }
+}
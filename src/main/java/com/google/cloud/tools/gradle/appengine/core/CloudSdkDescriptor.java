@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * What the plugin needs to know about a Cloud SDK installation (path, version, java home and
+ * installed components), resolved once and shared by all projects of a build. Later builds in the
+ * same daemon reuse it as long as the VERSION file and the component records are unchanged, which
+ * takes two file stats instead of reading the SDK tree.
+ */
+public final class CloudSdkDescriptor {
+
+  // one descriptor per sdk, shared by all projects and builds of a daemon
+  private static final Map<Path, Entry> descriptors = new ConcurrentHashMap<>();
+
+  private final Path sdkPath;
+  @Nullable private final String version;
+  private final Path javaHome;
+  private final List<String> components;
+
+  @VisibleForTesting
+  CloudSdkDescriptor(
+      Path sdkPath, @Nullable String version, Path javaHome, List<String> components) {
+    this.sdkPath = sdkPath;
+    this.version = version;
+    this.javaHome = javaHome;
+    this.components = ImmutableList.copyOf(components);
+  }
+
+  /**
+   * The descriptor of the SDK at sdkPath. Within one build (identified by the build object, e.g.
+   * {@code project.getGradle()}) a resolved descriptor is returned without checking the SDK.
+   */
+  public static CloudSdkDescriptor forSdk(Path sdkPath, Object build) {
+    Path key = sdkPath.toAbsolutePath().normalize();
+    Entry entry = descriptors.get(key);
+    if (entry != null && entry.build.get() == build) {
+      return entry.descriptor;
+    }
+    Stamp stamp = Stamp.of(key);
+    if (entry == null || !entry.stamp.equals(stamp)) {
+      entry = new Entry(resolve(key), stamp, build);
+    } else {
+      entry = new Entry(entry.descriptor, stamp, build);
+    }
+    descriptors.put(key, entry);
+    return entry.descriptor;
+  }
+
+  /** Read the descriptor of the SDK at sdkPath from the SDK tree. */
+  @VisibleForTesting
+  static CloudSdkDescriptor resolve(Path sdkPath) {
+    try {
+      String version = null;
+      Path versionFile = sdkPath.resolve("VERSION");
+      if (Files.isRegularFile(versionFile)) {
+        version = new String(Files.readAllBytes(versionFile), StandardCharsets.UTF_8).trim();
+      }
+      // gcloud records each installed component in .install/<component>.manifest
+      List<String> components = new ArrayList<>();
+      Path installDirectory = sdkPath.resolve(".install");
+      if (Files.isDirectory(installDirectory)) {
+        try (DirectoryStream<Path> manifests =
+            Files.newDirectoryStream(installDirectory, "*.manifest")) {
+          for (Path manifest : manifests) {
+            String name = manifest.getFileName().toString();
+            components.add(name.substring(0, name.length() - ".manifest".length()));
+          }
+        }
+      }
+      Collections.sort(components);
+      return new CloudSdkDescriptor(
+          sdkPath, version, Paths.get(System.getProperty("java.home")), components);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to read the Cloud SDK at " + sdkPath, ex);
+    }
+  }
+
+  public Path getSdkPath() {
+    return sdkPath;
+  }
+
+  /** The version in the VERSION file, null if the SDK is not installed (yet). */
+  @Nullable
+  public String getVersion() {
+    return version;
+  }
+
+  public Path getJavaHome() {
+    return javaHome;
+  }
+
+  /** Ids of the installed components, sorted. */
+  public List<String> getComponents() {
+    return components;
+  }
+
+  /** The files gcloud records installed components in. */
+  public List<Path> getComponentManifests() {
+    List<Path> manifests = new ArrayList<>();
+    for (String component : components) {
+      manifests.add(sdkPath.resolve(".install").resolve(component + ".manifest"));
+    }
+    return manifests;
+  }
+
+  private static class Entry {
+    private final CloudSdkDescriptor descriptor;
+    private final Stamp stamp;
+    private final WeakReference<Object> build;
+
+    Entry(CloudSdkDescriptor descriptor, Stamp stamp, Object build) {
+      this.descriptor = descriptor;
+      this.stamp = stamp;
+      this.build = new WeakReference<>(build);
+    }
+  }
+
+  /** Modification times of the VERSION file and the component records. */
+  private static class Stamp {
+    private final long versionModified;
+    private final long componentsModified;
+
+    private Stamp(long versionModified, long componentsModified) {
+      this.versionModified = versionModified;
+      this.componentsModified = componentsModified;
+    }
+
+    static Stamp of(Path sdkPath) {
+      return new Stamp(
+          sdkPath.resolve("VERSION").toFile().lastModified(),
+          sdkPath.resolve(".install").toFile().lastModified());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Stamp)) {
+        return false;
+      }
+      Stamp stamp = (Stamp) other;
+      return versionModified == stamp.versionModified
+          && componentsModified == stamp.componentsModified;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(versionModified) * 31 + Long.hashCode(componentsModified);
+    }
+  }
+}
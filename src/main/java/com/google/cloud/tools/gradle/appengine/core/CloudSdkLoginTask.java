@@ -32,6 +32,6 @@ public class CloudSdkLoginTask extends GcloudTask {
   /** Login by delegating to gcloud auth login. */
   @TaskAction
   public void login() throws AppEngineException {
-    gcloud.newAuth(CloudSdkOperations.getDefaultHandler(getLogger())).login();
+    gcloud.newAuth(CloudSdkOperations.getDefaultHandler(this, "auth login")).login();
   }
 }
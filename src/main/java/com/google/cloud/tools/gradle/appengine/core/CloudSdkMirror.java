@@ -0,0 +1,427 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.ConsoleListener;
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.gradle.api.GradleException;
+
+/**
+ * Installs the managed Cloud SDK from a local archive or a mirror (a local directory, or an http(s)
+ * url ending with /) instead of the public download url. A mirror holds the SDK archives under
+ * their download names, each with a {@code .sha256} checksum file, and optionally a components
+ * snapshot (components-2.json) that gcloud then installs components from.
+ *
+ * <p>The archive is streamed through the decompressor as it is read and hashed on the way. The tree
+ * is extracted next to sdkHome and only moved into place once the whole archive matched its
+ * checksum. Remote archives are extracted as they download, and kept in a .part file meanwhile that
+ * an interrupted download resumes from.
+ */
+public class CloudSdkMirror {
+
+  static final String COMPONENTS_SNAPSHOT = "components-2.json";
+  static final String SDK_DIRECTORY = "google-cloud-sdk";
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+  private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+  private final URI location;
+
+  /**
+   * Mirror at location.
+   *
+   * @param location an SDK archive, or a directory of SDK archives (a url ending with /)
+   */
+  public CloudSdkMirror(URI location) {
+    this.location = location;
+  }
+
+  /**
+   * Extract the SDK from the mirror into sdkHome and run its install script.
+   *
+   * @param recording records the install script for the build's process report
+   */
+  public void install(
+      Path sdkHome,
+      @Nullable String version,
+      ProgressListener progressListener,
+      ConsoleListener consoleListener,
+      ProcessTelemetry.Recording recording)
+      throws IOException, InterruptedException {
+    URI archive = findArchive(version);
+    consoleListener.console("Installing Cloud SDK from " + archive + "\n");
+    progressListener.start("Installing Cloud SDK from " + archive, ProgressListener.UNKNOWN);
+
+    String expectedSha256 = readChecksum(archive);
+    if (isFile(archive)) {
+      extract(Paths.get(archive), expectedSha256, sdkHome, progressListener.newChild(1));
+    } else {
+      // kept next to the installation while it streams, so a dropped connection can be resumed
+      Path versionDirectory = sdkHome.toAbsolutePath().getParent();
+      String name = archive.getPath().substring(archive.getPath().lastIndexOf('/') + 1);
+      ResumableDownload download =
+          new ResumableDownload(
+              archive, versionDirectory.resolve(name), progressListener.newChild(1));
+      try (InputStream in = download.open()) {
+        extract(archive, in, expectedSha256, sdkHome);
+      } finally {
+        // a corrupt download must not be resumed, a complete one is no longer needed
+        if (!download.canResume()) {
+          download.deletePartFile();
+        }
+      }
+    }
+
+    ProgressListener stage = progressListener.newChild(1);
+    stage.start("Running the Cloud SDK install script", ProgressListener.UNKNOWN);
+    runInstallScript(sdkHome, consoleListener, recording);
+    stage.done();
+
+    progressListener.done();
+  }
+
+  /** Point gcloud's component manager at the components snapshot of the mirror, if there is one. */
+  public void configureComponents(Path sdkHome) throws IOException {
+    String snapshotUrl;
+    if (isFile(location)) {
+      Path snapshot = Paths.get(location).resolve(COMPONENTS_SNAPSHOT);
+      if (!Files.isDirectory(Paths.get(location)) || !Files.isRegularFile(snapshot)) {
+        return;
+      }
+      snapshotUrl = "snapshot_url = " + snapshot.toAbsolutePath().toUri();
+    } else {
+      // only a remote directory can have a snapshot, gcloud reports a missing one by itself
+      if (!location.getPath().endsWith("/")) {
+        return;
+      }
+      snapshotUrl = "snapshot_url = " + location.resolve(COMPONENTS_SNAPSHOT);
+    }
+
+    // installation wide gcloud properties, in ini format
+    Path properties = sdkHome.resolve("properties");
+    List<String> lines = new ArrayList<>();
+    if (Files.isRegularFile(properties)) {
+      for (String line : Files.readAllLines(properties, StandardCharsets.UTF_8)) {
+        if (!line.trim().startsWith("snapshot_url")) {
+          lines.add(line);
+        }
+      }
+    }
+    int section = lines.indexOf("[component_manager]");
+    if (section < 0) {
+      lines.add("[component_manager]");
+      lines.add(snapshotUrl);
+    } else {
+      lines.add(section + 1, snapshotUrl);
+    }
+    Files.write(properties, lines, StandardCharsets.UTF_8);
+  }
+
+  /** Locate the archive for version (null for the latest version) in this mirror. */
+  @VisibleForTesting
+  URI findArchive(@Nullable String version) {
+    String name =
+        archiveName(version, System.getProperty("os.name"), System.getProperty("os.arch"));
+    if (!isFile(location)) {
+      return location.getPath().endsWith("/") ? location.resolve(name) : location;
+    }
+    Path path = Paths.get(location);
+    if (!Files.isDirectory(path)) {
+      if (!Files.isRegularFile(path)) {
+        throw new GradleException("Cloud SDK mirror " + path + " does not exist.");
+      }
+      return location;
+    }
+    Path archive = path.resolve(name);
+    if (!Files.isRegularFile(archive)) {
+      throw new GradleException("Cloud SDK mirror " + path + " does not contain " + name);
+    }
+    return archive.toUri();
+  }
+
+  /** The name of an SDK archive on the public download site. */
+  @VisibleForTesting
+  static String archiveName(@Nullable String version, String osName, String osArch) {
+    String os = osName.toLowerCase(Locale.US);
+    boolean is64Bit = osArch.contains("64");
+    if (os.contains("windows")) {
+      if (version == null || "LATEST".equals(version)) {
+        return "google-cloud-sdk-windows-" + (is64Bit ? "x86_64-" : "") + "bundled-python.zip";
+      }
+      return "google-cloud-sdk-"
+          + version
+          + "-windows-"
+          + (is64Bit ? "x86_64" : "x86")
+          + "-bundled-python.zip";
+    }
+    if (version == null || "LATEST".equals(version)) {
+      return "google-cloud-sdk.tar.gz";
+    }
+    String platform = os.contains("mac") || os.contains("darwin") ? "darwin" : "linux";
+    return "google-cloud-sdk-"
+        + version
+        + "-"
+        + platform
+        + "-"
+        + (is64Bit ? "x86_64" : "x86")
+        + ".tar.gz";
+  }
+
+  /** Read the expected sha256 of the archive from archive.sha256. */
+  @VisibleForTesting
+  static String readChecksum(URI archive) throws IOException {
+    URI checksum = URI.create(archive.toString() + ".sha256");
+    byte[] content;
+    try (InputStream in = open(checksum).getInputStream()) {
+      content = ByteStreams.toByteArray(in);
+    } catch (FileNotFoundException ex) {
+      throw new GradleException("Missing checksum " + checksum + " for " + archive, ex);
+    }
+    // sha256sum format: "<hash>  <file name>", or just the hash
+    return Splitter.on(' ')
+        .omitEmptyStrings()
+        .splitToList(new String(content, StandardCharsets.UTF_8))
+        .get(0)
+        .trim()
+        .toLowerCase(Locale.US);
+  }
+
+  /**
+   * Extract a local archive in a single pass, like a remote one, reporting the bytes read to stage.
+   */
+  @VisibleForTesting
+  static void extract(Path archive, String expectedSha256, Path sdkHome, ProgressListener stage)
+      throws IOException {
+    stage.start("Extracting " + archive, Files.size(archive));
+    try (InputStream in = new ProgressInputStream(Files.newInputStream(archive), stage)) {
+      extract(archive.toUri(), in, expectedSha256, sdkHome);
+    }
+    stage.done();
+  }
+
+  /**
+   * Stream the archive through the decompressor, hashing it on the way, and move its
+   * google-cloud-sdk directory to sdkHome if the archive matched expectedSha256. The tree is
+   * extracted next to sdkHome first, so a failed or interrupted extraction never looks like an
+   * installation.
+   */
+  private static void extract(URI archive, InputStream in, String expectedSha256, Path sdkHome)
+      throws IOException {
+    Path versionDirectory = sdkHome.toAbsolutePath().getParent();
+    Files.createDirectories(versionDirectory);
+    Path temp = Files.createTempDirectory(versionDirectory, ".extract-");
+    try {
+      HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), in);
+      ArchiveInputStream entries = openArchive(archive, hashing);
+      extractEntries(entries, temp);
+      // whatever follows the last entry (padding, a zip's central directory) is hashed too
+      ByteStreams.exhaust(hashing);
+      String actualSha256 = hashing.hash().toString();
+      if (!actualSha256.equals(expectedSha256)) {
+        throw new GradleException(
+            "Checksum mismatch for "
+                + archive
+                + ": expected "
+                + expectedSha256
+                + " but was "
+                + actualSha256);
+      }
+
+      Path extractedSdk = temp.resolve(SDK_DIRECTORY);
+      if (!Files.isDirectory(extractedSdk)) {
+        throw new GradleException(archive + " does not contain a " + SDK_DIRECTORY + " directory");
+      }
+      if (Files.exists(sdkHome)) {
+        // left behind by an incomplete installation
+        MoreFiles.deleteRecursively(sdkHome, RecursiveDeleteOption.ALLOW_INSECURE);
+      }
+      Files.move(extractedSdk, sdkHome, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      MoreFiles.deleteRecursively(temp, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  private static void extractEntries(ArchiveInputStream entries, Path destination)
+      throws IOException {
+    ArchiveEntry entry;
+    while ((entry = entries.getNextEntry()) != null) {
+      Path target = destination.resolve(entry.getName()).normalize();
+      if (!target.startsWith(destination)) {
+        throw new IOException("Blocked unzipping files outside destination: " + entry.getName());
+      }
+      if (entry.isDirectory()) {
+        checkNoSymbolicLink(destination, target, entry);
+        Files.createDirectories(target);
+        continue;
+      }
+      checkNoSymbolicLink(destination, target.getParent(), entry);
+      Files.createDirectories(target.getParent());
+      if (entry instanceof TarArchiveEntry && ((TarArchiveEntry) entry).isSymbolicLink()) {
+        Path link = destination.getFileSystem().getPath(((TarArchiveEntry) entry).getLinkName());
+        if (!target.getParent().resolve(link).normalize().startsWith(destination)) {
+          throw new IOException(
+              "Blocked symbolic link outside destination: " + entry.getName() + " -> " + link);
+        }
+        Files.createSymbolicLink(target, link);
+        continue;
+      }
+      Files.copy(entries, target, StandardCopyOption.REPLACE_EXISTING);
+      if (entry instanceof TarArchiveEntry) {
+        setPermissions(target, ((TarArchiveEntry) entry).getMode());
+      }
+    }
+  }
+
+  // a symbolic link extracted earlier must not redirect the entries that follow it
+  private static void checkNoSymbolicLink(Path destination, Path path, ArchiveEntry entry)
+      throws IOException {
+    for (Path parent = path; !parent.equals(destination); parent = parent.getParent()) {
+      if (Files.isSymbolicLink(parent)) {
+        throw new IOException(
+            "Blocked unzipping files through a symbolic link: " + entry.getName());
+      }
+    }
+  }
+
+  private static boolean isFile(URI uri) {
+    return uri.getScheme() == null || "file".equals(uri.getScheme());
+  }
+
+  private static URLConnection open(URI uri) throws IOException {
+    URLConnection connection = uri.toURL().openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+    return connection;
+  }
+
+  private static ArchiveInputStream openArchive(URI archive, InputStream in) throws IOException {
+    String name = archive.getPath();
+    if (name.endsWith(".zip")) {
+      return new ZipArchiveInputStream(in);
+    }
+    if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+      return new TarArchiveInputStream(new GzipCompressorInputStream(in));
+    }
+    throw new GradleException("Unsupported Cloud SDK archive " + archive);
+  }
+
+  private static void setPermissions(Path file, int mode) throws IOException {
+    if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+    PosixFilePermission[] bits = {
+      PosixFilePermission.OTHERS_EXECUTE,
+      PosixFilePermission.OTHERS_WRITE,
+      PosixFilePermission.OTHERS_READ,
+      PosixFilePermission.GROUP_EXECUTE,
+      PosixFilePermission.GROUP_WRITE,
+      PosixFilePermission.GROUP_READ,
+      PosixFilePermission.OWNER_EXECUTE,
+      PosixFilePermission.OWNER_WRITE,
+      PosixFilePermission.OWNER_READ
+    };
+    for (int i = 0; i < bits.length; i++) {
+      if ((mode & (1 << i)) != 0) {
+        permissions.add(bits[i]);
+      }
+    }
+    permissions.add(PosixFilePermission.OWNER_READ);
+    permissions.add(PosixFilePermission.OWNER_WRITE);
+    Files.setPosixFilePermissions(file, permissions);
+  }
+
+  /** Run the install script with the same options as the managed installer. */
+  private static void runInstallScript(
+      Path sdkHome, ConsoleListener consoleListener, ProcessTelemetry.Recording recording)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    if (System.getProperty("os.name").toLowerCase(Locale.US).contains("windows")) {
+      command.add("cmd.exe");
+      command.add("/c");
+      command.add(sdkHome.resolve("install.bat").toString());
+    } else {
+      command.add(sdkHome.resolve("install.sh").toString());
+    }
+    command.add("--path-update=false");
+    command.add("--command-completion=false");
+    command.add("--quiet");
+    command.add("--usage-reporting=false");
+
+    CloudSdkCommand.run(command, sdkHome, consoleListener, "Cloud SDK install script", recording);
+  }
+
+  /** Reports the bytes read from a stream to a progress listener. */
+  private static class ProgressInputStream extends FilterInputStream {
+    private final ProgressListener progressListener;
+
+    ProgressInputStream(InputStream in, ProgressListener progressListener) {
+      super(in);
+      this.progressListener = progressListener;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read != -1) {
+        progressListener.update(1);
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        progressListener.update(read);
+      }
+      return read;
+    }
+  }
+}
@@ -24,17 +24,32 @@ import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import com.google.cloud.tools.appengine.cloudsdk.LocalRun;
 import com.google.cloud.tools.appengine.cloudsdk.process.LegacyProcessHandler;
 import com.google.cloud.tools.appengine.cloudsdk.process.NonZeroExceptionExitListener;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.cloud.tools.gradle.appengine.util.io.DeferredOutputLineListener;
+import com.google.cloud.tools.gradle.appengine.util.io.FileOutputLineListener;
+import com.google.cloud.tools.gradle.appengine.util.io.GradleLoggerOutputListener;
 import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
 import org.gradle.api.logging.Logger;
 
 /** Cloud Sdk Operations with all common configuration. */
 public class CloudSdkOperations {
 
+  // operations hold no per-project state, so projects (and builds) using the same sdk share them
+  private static final Map<String, CloudSdkOperations> operations = new ConcurrentHashMap<>();
+
   private final CloudSdk cloudSdk;
   private final Gcloud gcloud;
   private final LocalRun localRun;
   private final AppCfg appcfg;
+  private final AsyncDeployment asyncDeployment;
 
   /**
    * Operations factory for Cloud Sdk based actions.
@@ -55,6 +70,31 @@ public class CloudSdkOperations {
                 getClass().getPackage().getImplementationVersion())
             .build();
     appcfg = AppCfg.builder(cloudSdk).build();
+    asyncDeployment = new AsyncDeployment(cloudSdk, credentialFile);
+  }
+
+  /**
+   * Shared operations for a Cloud SDK, created by the first project that uses the sdk with this
+   * credential file and reused by every other project of the build and by later builds in the
+   * daemon.
+   *
+   * @param cloudSdkHome path to cloud sdk
+   * @param credentialFile optional path to a credential file
+   * @throws CloudSdkNotFoundException when cloud sdk path cannot be validated
+   */
+  public static CloudSdkOperations forSdk(File cloudSdkHome, @Nullable File credentialFile)
+      throws CloudSdkNotFoundException {
+    String key =
+        cloudSdkHome.getAbsolutePath()
+            + File.pathSeparator
+            + (credentialFile == null ? "" : credentialFile.getAbsolutePath());
+    CloudSdkOperations existing = operations.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    CloudSdkOperations created = new CloudSdkOperations(cloudSdkHome, credentialFile);
+    existing = operations.putIfAbsent(key, created);
+    return existing == null ? created : existing;
   }
 
   public CloudSdk getCloudSdk() {
@@ -73,12 +113,92 @@ public class CloudSdkOperations {
     return appcfg;
   }
 
-  /** Create a return a new default configured process handler. */
-  public static ProcessHandler getDefaultHandler(Logger logger) {
-    return LegacyProcessHandler.builder()
-        .addStdErrLineListener(logger::lifecycle)
-        .addStdOutLineListener(logger::lifecycle)
-        .setExitListener(new NonZeroExceptionExitListener())
+  public AsyncDeployment getAsyncDeployment() {
+    return asyncDeployment;
+  }
+
+  /**
+   * Cache for read-only gcloud queries, like gcloud config lookups, of this sdk. Every such query
+   * should go through it.
+   *
+   * @param ttlHours hours an answer stays valid for, 0 to always ask gcloud
+   */
+  public GcloudQueryCache getQueryCache(Project project, int ttlHours) {
+    return GcloudQueryCache.forProject(project, cloudSdk.getPath(), ttlHours);
+  }
+
+  /**
+   * Create a return a new default configured process handler for a task. Errors and warnings are
+   * logged at their level and runs of progress lines are collapsed, the full output is written to
+   * {@code build/logs/appengine/<task name>.log}, and the process is recorded in the build's
+   * process report.
+   *
+   * @param category the kind of command, for the process report
+   */
+  public static ProcessHandler getDefaultHandler(Task task, String category) {
+    return getDefaultHandler(
+        task.getLogger(),
+        "",
+        getLogFile(task.getProject(), task.getName()),
+        null,
+        ProcessTelemetry.forProject(task.getProject()).newRecording(task, category));
+  }
+
+  /**
+   * Create a return a new default configured process handler that prefixes every line of output (to
+   * tell apart processes running at the same time), writes the full output to {@code logFile},
+   * records the process with {@code recording}, and also passes every line to {@code
+   * outputListener} if there is one.
+   */
+  public static ProcessHandler getDefaultHandler(
+      Logger logger,
+      String linePrefix,
+      File logFile,
+      @Nullable ProcessOutputLineListener outputListener,
+      ProcessTelemetry.Recording recording) {
+    GradleLoggerOutputListener consoleListener =
+        GradleLoggerOutputListener.classifying(logger, linePrefix);
+    // opened once the process starts, a handler whose process never starts leaves no file open
+    DeferredOutputLineListener<FileOutputLineListener> logFileListener =
+        new DeferredOutputLineListener<>(
+            () -> new FileOutputLineListener(logFile),
+            ex -> logger.warn("Failed to open " + logFile + ", output will only be logged", ex));
+    LegacyProcessHandler.Builder builder =
+        LegacyProcessHandler.builder()
+            .addStdErrLineListener(consoleListener)
+            .addStdOutLineListener(consoleListener)
+            .addStdErrLineListener(recording::stdErr)
+            .addStdOutLineListener(recording::stdOut)
+            .addStdErrLineListener(logFileListener)
+            .addStdOutLineListener(logFileListener)
+            .setStartListener(
+                process -> {
+                  recording.started();
+                  logFileListener.open();
+                });
+    if (outputListener != null) {
+      builder.addStdErrLineListener(outputListener).addStdOutLineListener(outputListener);
+    }
+
+    ProcessExitListener exitListener = new NonZeroExceptionExitListener();
+    return builder
+        .setExitListener(
+            exitCode -> {
+              // all output has been read by now
+              recording.finished(exitCode);
+              consoleListener.flush();
+              try {
+                logFileListener.close();
+              } catch (IOException ex) {
+                logger.warn("Failed to write " + logFile, ex);
+              }
+              exitListener.onExit(exitCode);
+            })
         .build();
   }
+
+  /** The file the full output of a process run by a task is written to. */
+  public static File getLogFile(Project project, String name) {
+    return new File(project.getBuildDir(), "logs/appengine/" + name + ".log");
+  }
 }
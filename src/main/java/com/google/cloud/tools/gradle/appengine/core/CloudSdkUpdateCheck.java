@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.Project;
+
+/**
+ * Remembers when a LATEST managed Cloud SDK was last checked for updates, so that builds within the
+ * check interval skip the remote version probe. Stored in the gradle user home, shared by all
+ * builds on the machine.
+ */
+public class CloudSdkUpdateCheck {
+
+  private static final String CACHE_FILE = "caches/appengine-gradle-plugin/cloud-sdk-checks.json";
+  private static final Type CHECKS_TYPE = new TypeToken<Map<String, Long>>() {}.getType();
+
+  private final Path cacheFile;
+  private final long ttlMillis;
+
+  @VisibleForTesting
+  CloudSdkUpdateCheck(Path cacheFile, long ttlMillis) {
+    this.cacheFile = cacheFile;
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * The update check record in the gradle user home.
+   *
+   * @param ttlHours hours a check stays valid for, 0 to check on every build
+   */
+  public static CloudSdkUpdateCheck forProject(Project project, int ttlHours) {
+    Path cacheFile =
+        project.getGradle().getGradleUserHomeDir().toPath().resolve(CACHE_FILE).toAbsolutePath();
+    return new CloudSdkUpdateCheck(cacheFile, TimeUnit.HOURS.toMillis(ttlHours));
+  }
+
+  /** Whether the installation at sdkHome was not checked for updates within the interval. */
+  public boolean isDue(Path sdkHome) {
+    Long lastChecked = read().get(key(sdkHome));
+    return lastChecked == null || System.currentTimeMillis() - lastChecked >= ttlMillis;
+  }
+
+  /** Record that the installation at sdkHome was just checked (and updated if needed). */
+  public synchronized void recordCheck(Path sdkHome) throws IOException {
+    Map<String, Long> checks = read();
+    checks.put(key(sdkHome), System.currentTimeMillis());
+
+    Files.createDirectories(cacheFile.getParent());
+    Path temp = Files.createTempFile(cacheFile.getParent(), "cloud-sdk-checks", ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        new Gson().toJson(checks, CHECKS_TYPE, writer);
+      }
+      Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private Map<String, Long> read() {
+    Map<String, Long> checks = new HashMap<>();
+    if (Files.isRegularFile(cacheFile)) {
+      try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+        Map<String, Long> loaded = new Gson().fromJson(reader, CHECKS_TYPE);
+        if (loaded != null) {
+          checks.putAll(loaded);
+        }
+      } catch (IOException | JsonParseException ex) {
+        // a broken record means checking again
+      }
+    }
+    return checks;
+  }
+
+  private static String key(Path sdkHome) {
+    return sdkHome.toAbsolutePath().normalize().toString();
+  }
+}
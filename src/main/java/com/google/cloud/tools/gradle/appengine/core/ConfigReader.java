@@ -18,11 +18,7 @@ package com.google.cloud.tools.gradle.appengine.core;
 
 import com.google.cloud.tools.appengine.AppEngineDescriptor;
 import com.google.cloud.tools.appengine.api.AppEngineException;
-import com.google.cloud.tools.appengine.cloudsdk.CloudSdkNotFoundException;
-import com.google.cloud.tools.appengine.cloudsdk.CloudSdkOutOfDateException;
-import com.google.cloud.tools.appengine.cloudsdk.CloudSdkVersionFileException;
 import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
-import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -35,21 +31,21 @@ public final class ConfigReader {
 
   private ConfigReader() {}
 
-  /** Return gcloud config property for project, or error out if not found. */
-  public static String getProject(Gcloud gcloud) {
+  /**
+   * Return gcloud config property for project, or error out if not found. The answer is reused from
+   * queryCache while gcloud's configuration is unchanged.
+   */
+  public static String getProject(Gcloud gcloud, GcloudQueryCache queryCache) {
+    String gcloudProject;
     try {
-      String gcloudProject = gcloud.getConfig().getProject();
-      if (gcloudProject == null || gcloudProject.trim().isEmpty()) {
-        throw new GradleException("Project was not found in gcloud config");
-      }
-      return gcloudProject;
-    } catch (CloudSdkNotFoundException
-        | CloudSdkOutOfDateException
-        | CloudSdkVersionFileException
-        | IOException
-        | ProcessHandlerException ex) {
+      gcloudProject = queryCache.get("config project", () -> gcloud.getConfig().getProject());
+    } catch (Exception ex) {
       throw new GradleException("Failed to read project from gcloud config", ex);
     }
+    if (gcloudProject == null || gcloudProject.trim().isEmpty()) {
+      throw new GradleException("Project was not found in gcloud config");
+    }
+    return gcloudProject;
   }
 
   /** Return "application" tag from appengine-web.xml or error out if could not read. */
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.InetAddresses;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+
+/**
+ * Offline validation of the configuration yamls (cron, dispatch, dos, index, queue) against the
+ * syntax, keys and limits enforced by App Engine, so mistakes are reported with a line number
+ * before anything is sent to gcloud.
+ */
+public class ConfigYamlValidator {
+
+  public static final List<String> CONFIG_YAMLS =
+      ImmutableList.of("cron.yaml", "dispatch.yaml", "dos.yaml", "index.yaml", "queue.yaml");
+
+  static final int MAX_CRON_JOBS = 250;
+  static final int MAX_DISPATCH_RULES = 20;
+  static final int MAX_DISPATCH_PATH_LENGTH = 100;
+  static final int MAX_DOS_ENTRIES = 100;
+  static final int MAX_COMPOSITE_INDEXES = 200;
+  static final int MAX_BUCKET_SIZE = 500;
+  static final int MAX_CRON_RETRY_LIMIT = 5;
+
+  private static final Pattern DURATION = Pattern.compile("\\d+(\\.\\d+)?[smhd]");
+  private static final Pattern RATE = Pattern.compile("\\d+(\\.\\d+)?/[smhd]");
+  private static final Pattern QUEUE_NAME = Pattern.compile("[a-zA-Z0-9-]{1,100}");
+  private static final Pattern STORAGE_LIMIT = Pattern.compile("\\d+(\\.\\d+)?[BKMGT]?");
+  private static final Pattern CRON_INTERVAL =
+      Pattern.compile("every \\d+ (minutes|mins|minute|hours|hour)( .*)?");
+
+  private static final Set<String> CRON_RETRY_KEYS =
+      ImmutableSet.of(
+          "job_retry_limit",
+          "job_age_limit",
+          "min_backoff_seconds",
+          "max_backoff_seconds",
+          "max_doublings");
+  private static final Set<String> QUEUE_RETRY_KEYS =
+      ImmutableSet.of(
+          "task_retry_limit",
+          "task_age_limit",
+          "min_backoff_seconds",
+          "max_backoff_seconds",
+          "max_doublings");
+
+  private final String fileName;
+  private final List<String> problems = new ArrayList<>();
+
+  private ConfigYamlValidator(String fileName) {
+    this.fileName = fileName;
+  }
+
+  /** Validate a configuration yaml, returns a description of every problem found. */
+  public static List<String> validate(File yaml) throws IOException {
+    try (Reader reader = Files.newBufferedReader(yaml.toPath(), StandardCharsets.UTF_8)) {
+      return validate(yaml.getName(), reader);
+    }
+  }
+
+  /** Validate configuration yaml content, the type of configuration is taken from fileName. */
+  public static List<String> validate(String fileName, Reader content) {
+    ConfigYamlValidator validator = new ConfigYamlValidator(fileName);
+    Node root;
+    try {
+      root = new Yaml().compose(content);
+    } catch (MarkedYAMLException ex) {
+      int line = ex.getProblemMark() == null ? 0 : ex.getProblemMark().getLine() + 1;
+      validator.problems.add(fileName + ":" + line + ": invalid yaml, " + ex.getProblem());
+      return validator.problems;
+    } catch (YAMLException ex) {
+      validator.problems.add(fileName + ": invalid yaml, " + ex.getMessage());
+      return validator.problems;
+    }
+    if (root == null) {
+      // an empty configuration is a valid configuration
+      return Collections.emptyList();
+    }
+
+    switch (fileName) {
+      case "cron.yaml":
+        validator.validateCron(root);
+        break;
+      case "dispatch.yaml":
+        validator.validateDispatch(root);
+        break;
+      case "dos.yaml":
+        validator.validateDos(root);
+        break;
+      case "index.yaml":
+        validator.validateIndex(root);
+        break;
+      case "queue.yaml":
+        validator.validateQueue(root);
+        break;
+      default:
+        throw new IllegalArgumentException("Not a configuration yaml: " + fileName);
+    }
+    return validator.problems;
+  }
+
+  private void validateCron(Node root) {
+    Map<String, Node> rootKeys = keys(root, fileName, ImmutableSet.of("cron"));
+    List<Node> jobs = entries(rootKeys, "cron");
+    checkMaxEntries(root, jobs, MAX_CRON_JOBS, "cron jobs");
+    for (Node job : jobs) {
+      Map<String, Node> keys =
+          keys(
+              job,
+              "cron job",
+              ImmutableSet.of(
+                  "url",
+                  "schedule",
+                  "description",
+                  "timezone",
+                  "target",
+                  "retry_parameters",
+                  "attempt_deadline"));
+      if (keys == null) {
+        continue;
+      }
+      String url = requireScalar(job, keys, "url", "cron job");
+      if (url != null && !url.startsWith("/")) {
+        problem(keys.get("url"), "cron url must start with '/', found '" + url + "'");
+      }
+      String schedule = requireScalar(job, keys, "schedule", "cron job");
+      if (schedule != null
+          && schedule.startsWith("every ")
+          && Character.isDigit(schedule.charAt("every ".length()))
+          && !CRON_INTERVAL.matcher(schedule).matches()) {
+        problem(keys.get("schedule"), "invalid cron interval '" + schedule + "'");
+      }
+      checkPattern(keys.get("attempt_deadline"), DURATION, "attempt_deadline");
+      Node retry = keys.get("retry_parameters");
+      if (retry != null) {
+        Map<String, Node> retryKeys = keys(retry, "retry_parameters", CRON_RETRY_KEYS);
+        if (retryKeys != null) {
+          checkInteger(retryKeys.get("job_retry_limit"), 0, MAX_CRON_RETRY_LIMIT);
+          checkPattern(retryKeys.get("job_age_limit"), DURATION, "job_age_limit");
+          checkBackoff(retryKeys);
+        }
+      }
+    }
+  }
+
+  private void validateDispatch(Node root) {
+    Map<String, Node> rootKeys = keys(root, fileName, ImmutableSet.of("dispatch"));
+    List<Node> rules = entries(rootKeys, "dispatch");
+    checkMaxEntries(root, rules, MAX_DISPATCH_RULES, "dispatch rules");
+    for (Node rule : rules) {
+      Map<String, Node> keys =
+          keys(rule, "dispatch rule", ImmutableSet.of("url", "service", "module"));
+      if (keys == null) {
+        continue;
+      }
+      String url = requireScalar(rule, keys, "url", "dispatch rule");
+      if (url != null) {
+        checkDispatchUrl(keys.get("url"), url);
+      }
+      if (keys.containsKey("service") && keys.containsKey("module")) {
+        problem(rule, "dispatch rule must declare only one of 'service' and 'module'");
+      } else if (keys.containsKey("module")) {
+        scalar(keys.get("module"), "module");
+      } else {
+        requireScalar(rule, keys, "service", "dispatch rule");
+      }
+    }
+  }
+
+  private void checkDispatchUrl(Node node, String url) {
+    if (url.contains("://")) {
+      problem(node, "dispatch url must not include a scheme, found '" + url + "'");
+      return;
+    }
+    int slash = url.indexOf('/');
+    if (slash < 0) {
+      problem(node, "dispatch url must include a path, found '" + url + "'");
+      return;
+    }
+    String host = url.substring(0, slash);
+    String path = url.substring(slash);
+    if (host.indexOf('*', 1) >= 0) {
+      problem(node, "dispatch url host may only use '*' as a prefix, found '" + url + "'");
+    }
+    if (path.indexOf('*') >= 0 && path.indexOf('*') != path.length() - 1) {
+      problem(node, "dispatch url path may only use '*' as a suffix, found '" + url + "'");
+    }
+    if (path.length() > MAX_DISPATCH_PATH_LENGTH) {
+      problem(
+          node,
+          "dispatch url path is longer than " + MAX_DISPATCH_PATH_LENGTH + " characters: " + url);
+    }
+  }
+
+  private void validateDos(Node root) {
+    Map<String, Node> rootKeys = keys(root, fileName, ImmutableSet.of("blacklist"));
+    List<Node> blacklist = entries(rootKeys, "blacklist");
+    checkMaxEntries(root, blacklist, MAX_DOS_ENTRIES, "blacklist entries");
+    for (Node entry : blacklist) {
+      Map<String, Node> keys =
+          keys(entry, "blacklist entry", ImmutableSet.of("subnet", "description"));
+      if (keys == null) {
+        continue;
+      }
+      String subnet = requireScalar(entry, keys, "subnet", "blacklist entry");
+      if (subnet != null && !isSubnet(subnet)) {
+        problem(keys.get("subnet"), "invalid subnet '" + subnet + "'");
+      }
+    }
+  }
+
+  private static boolean isSubnet(String subnet) {
+    int slash = subnet.indexOf('/');
+    String address = slash < 0 ? subnet : subnet.substring(0, slash);
+    if (!InetAddresses.isInetAddress(address)) {
+      return false;
+    }
+    if (slash < 0) {
+      return true;
+    }
+    int maxPrefix = address.contains(":") ? 128 : 32;
+    try {
+      int prefix = Integer.parseInt(subnet.substring(slash + 1));
+      return prefix >= 0 && prefix <= maxPrefix;
+    } catch (NumberFormatException ex) {
+      return false;
+    }
+  }
+
+  private void validateIndex(Node root) {
+    Map<String, Node> rootKeys = keys(root, fileName, ImmutableSet.of("indexes"));
+    List<Node> indexes = entries(rootKeys, "indexes");
+    checkMaxEntries(root, indexes, MAX_COMPOSITE_INDEXES, "composite indexes");
+    for (Node index : indexes) {
+      Map<String, Node> keys =
+          keys(index, "index", ImmutableSet.of("kind", "ancestor", "properties"));
+      if (keys == null) {
+        continue;
+      }
+      requireScalar(index, keys, "kind", "index");
+      String ancestor = scalar(keys.get("ancestor"), "ancestor");
+      if (ancestor != null
+          && !ImmutableSet.of("yes", "no", "true", "false").contains(ancestor.toLowerCase())) {
+        problem(keys.get("ancestor"), "ancestor must be yes or no, found '" + ancestor + "'");
+      }
+      Node properties = keys.get("properties");
+      if (properties == null) {
+        if (ancestor == null || !ImmutableSet.of("yes", "true").contains(ancestor.toLowerCase())) {
+          problem(index, "index without ancestor must declare 'properties'");
+        }
+        continue;
+      }
+      if (!(properties instanceof SequenceNode)) {
+        problem(properties, "'properties' must be a list");
+        continue;
+      }
+      for (Node property : ((SequenceNode) properties).getValue()) {
+        Map<String, Node> propertyKeys =
+            keys(property, "index property", ImmutableSet.of("name", "direction", "mode"));
+        if (propertyKeys == null) {
+          continue;
+        }
+        requireScalar(property, propertyKeys, "name", "index property");
+        String direction = scalar(propertyKeys.get("direction"), "direction");
+        if (direction != null
+            && !ImmutableSet.of("asc", "desc", "ascending", "descending").contains(direction)) {
+          problem(
+              propertyKeys.get("direction"),
+              "direction must be asc or desc, found '" + direction + "'");
+        }
+        String mode = scalar(propertyKeys.get("mode"), "mode");
+        if (mode != null && !mode.equals("geospatial")) {
+          problem(propertyKeys.get("mode"), "mode must be geospatial, found '" + mode + "'");
+        }
+      }
+    }
+  }
+
+  private void validateQueue(Node root) {
+    Map<String, Node> rootKeys =
+        keys(root, fileName, ImmutableSet.of("queue", "total_storage_limit"));
+    List<Node> queues = entries(rootKeys, "queue");
+    if (rootKeys != null) {
+      checkPattern(rootKeys.get("total_storage_limit"), STORAGE_LIMIT, "total_storage_limit");
+    }
+    Set<String> names = new HashSet<>();
+    for (Node queue : queues) {
+      Map<String, Node> keys =
+          keys(
+              queue,
+              "queue",
+              ImmutableSet.of(
+                  "name",
+                  "mode",
+                  "rate",
+                  "bucket_size",
+                  "max_concurrent_requests",
+                  "retry_parameters",
+                  "target",
+                  "acl"));
+      if (keys == null) {
+        continue;
+      }
+      String name = requireScalar(queue, keys, "name", "queue");
+      if (name != null) {
+        if (!QUEUE_NAME.matcher(name).matches()) {
+          problem(keys.get("name"), "invalid queue name '" + name + "'");
+        } else if (!names.add(name)) {
+          problem(keys.get("name"), "duplicate queue '" + name + "'");
+        }
+      }
+      String mode = scalar(keys.get("mode"), "mode");
+      if (mode != null && !mode.equals("push") && !mode.equals("pull")) {
+        problem(keys.get("mode"), "mode must be push or pull, found '" + mode + "'");
+      }
+      if ("pull".equals(mode)) {
+        for (String pushOnly :
+            ImmutableList.of("rate", "bucket_size", "max_concurrent_requests", "target")) {
+          if (keys.containsKey(pushOnly)) {
+            problem(keys.get(pushOnly), "'" + pushOnly + "' is not allowed on a pull queue");
+          }
+        }
+      } else {
+        if (!keys.containsKey("rate")) {
+          problem(queue, "push queue must declare 'rate'");
+        }
+        if (keys.containsKey("acl")) {
+          problem(keys.get("acl"), "'acl' is only allowed on a pull queue");
+        }
+      }
+      checkPattern(keys.get("rate"), RATE, "rate");
+      checkInteger(keys.get("bucket_size"), 1, MAX_BUCKET_SIZE);
+      checkInteger(keys.get("max_concurrent_requests"), 1, Integer.MAX_VALUE);
+      Node retry = keys.get("retry_parameters");
+      if (retry != null) {
+        Map<String, Node> retryKeys = keys(retry, "retry_parameters", QUEUE_RETRY_KEYS);
+        if (retryKeys != null) {
+          checkInteger(retryKeys.get("task_retry_limit"), 0, Integer.MAX_VALUE);
+          checkPattern(retryKeys.get("task_age_limit"), DURATION, "task_age_limit");
+          checkBackoff(retryKeys);
+        }
+      }
+    }
+  }
+
+  private void checkBackoff(Map<String, Node> retryKeys) {
+    Double min = checkNumber(retryKeys.get("min_backoff_seconds"));
+    Double max = checkNumber(retryKeys.get("max_backoff_seconds"));
+    if (min != null && max != null && min > max) {
+      problem(
+          retryKeys.get("min_backoff_seconds"),
+          "min_backoff_seconds must not be greater than max_backoff_seconds");
+    }
+    checkInteger(retryKeys.get("max_doublings"), 0, Integer.MAX_VALUE);
+  }
+
+  /** Returns the entries of the root list. */
+  private List<Node> entries(@Nullable Map<String, Node> rootKeys, String listKey) {
+    if (rootKeys == null || !rootKeys.containsKey(listKey)) {
+      return Collections.emptyList();
+    }
+    Node list = rootKeys.get(listKey);
+    if (list instanceof ScalarNode && ((ScalarNode) list).getValue().isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (!(list instanceof SequenceNode)) {
+      problem(list, "'" + listKey + "' must be a list");
+      return Collections.emptyList();
+    }
+    return ((SequenceNode) list).getValue();
+  }
+
+  private void checkMaxEntries(Node root, List<Node> entries, int max, String what) {
+    if (entries.size() > max) {
+      problem(root, "too many " + what + ", found " + entries.size() + " but the limit is " + max);
+    }
+  }
+
+  /**
+   * Returns the keys of a mapping node, reporting duplicate keys and keys that are not allowed.
+   * Returns null if the node is not a mapping.
+   */
+  @Nullable
+  private Map<String, Node> keys(Node node, String what, Set<String> allowed) {
+    if (!(node instanceof MappingNode)) {
+      problem(node, what + " must be a mapping");
+      return null;
+    }
+    Map<String, Node> keys = new LinkedHashMap<>();
+    for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+      Node keyNode = tuple.getKeyNode();
+      if (!(keyNode instanceof ScalarNode)) {
+        problem(keyNode, "invalid key in " + what);
+        continue;
+      }
+      String key = ((ScalarNode) keyNode).getValue();
+      if (!allowed.contains(key)) {
+        problem(keyNode, "unknown key '" + key + "' in " + what);
+      } else if (keys.put(key, tuple.getValueNode()) != null) {
+        problem(keyNode, "duplicate key '" + key + "' in " + what);
+      }
+    }
+    return keys;
+  }
+
+  @Nullable
+  private String requireScalar(Node parent, Map<String, Node> keys, String key, String what) {
+    if (!keys.containsKey(key)) {
+      problem(parent, what + " is missing required key '" + key + "'");
+      return null;
+    }
+    String value = scalar(keys.get(key), key);
+    if (value != null && value.trim().isEmpty()) {
+      problem(keys.get(key), "'" + key + "' must not be empty");
+      return null;
+    }
+    return value;
+  }
+
+  @Nullable
+  private String scalar(@Nullable Node node, String key) {
+    if (node == null) {
+      return null;
+    }
+    if (!(node instanceof ScalarNode)) {
+      problem(node, "'" + key + "' must be a single value");
+      return null;
+    }
+    return ((ScalarNode) node).getValue();
+  }
+
+  private void checkPattern(@Nullable Node node, Pattern pattern, String key) {
+    String value = scalar(node, key);
+    if (value != null && !pattern.matcher(value).matches()) {
+      problem(node, "invalid " + key + " '" + value + "'");
+    }
+  }
+
+  private void checkInteger(@Nullable Node node, int min, int max) {
+    String value = scalar(node, "value");
+    if (value == null) {
+      return;
+    }
+    try {
+      int number = Integer.parseInt(value);
+      if (number < min || number > max) {
+        problem(node, value + " is out of range, expected " + range(min, max));
+      }
+    } catch (NumberFormatException ex) {
+      problem(node, "expected an integer, found '" + value + "'");
+    }
+  }
+
+  private static String range(int min, int max) {
+    return max == Integer.MAX_VALUE ? "at least " + min : "between " + min + " and " + max;
+  }
+
+  @Nullable
+  private Double checkNumber(@Nullable Node node) {
+    String value = scalar(node, "value");
+    if (value == null) {
+      return null;
+    }
+    try {
+      double number = Double.parseDouble(value);
+      if (number < 0) {
+        problem(node, "expected a positive number, found '" + value + "'");
+      }
+      return number;
+    } catch (NumberFormatException ex) {
+      problem(node, "expected a number, found '" + value + "'");
+      return null;
+    }
+  }
+
+  private void problem(Node node, String message) {
+    problems.add(fileName + ":" + (node.getStartMark().getLine() + 1) + ": " + message);
+  }
+}
@@ -20,16 +20,20 @@ import com.google.cloud.tools.appengine.api.AppEngineException;
 import com.google.cloud.tools.appengine.api.deploy.AppEngineDeployment;
 import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.gradle.api.GradleException;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
 
 public class DeployAllTask extends GcloudTask {
 
   private DeployExtension deployConfig;
   private Gcloud gcloud;
   private File stageDirectory;
+  private boolean force;
 
   public void setDeployConfig(DeployExtension deployConfig) {
     this.deployConfig = deployConfig;
@@ -43,31 +47,89 @@ public class DeployAllTask extends GcloudTask {
     this.stageDirectory = stageDirectory;
   }
 
+  @Option(option = "force", description = "Deploy even if nothing changed since the last deploy")
+  public void setForce(boolean force) {
+    this.force = force;
+  }
+
   /** Task Entrypoint : Deploys the app and all of its config files. */
   @TaskAction
-  public void deployAllAction() throws AppEngineException {
-    List<File> deployables = new ArrayList<>();
-
+  public void deployAllAction() throws AppEngineException, IOException {
     // Look for app.yaml
     File appYaml = stageDirectory.toPath().resolve("app.yaml").toFile();
     if (!appYaml.exists()) {
       throw new GradleException("Failed to deploy all: app.yaml not found.");
     }
-    addDeployable(deployables, appYaml);
 
     // Look for configuration yamls
-    String[] validYamls = {"cron.yaml", "dispatch.yaml", "dos.yaml", "index.yaml", "queue.yaml"};
-    for (String yamlName : validYamls) {
+    List<File> configYamls = new ArrayList<>();
+    for (String yamlName : ConfigYamlValidator.CONFIG_YAMLS) {
       File yaml = deployConfig.getAppEngineDirectory().toPath().resolve(yamlName).toFile();
       if (yaml.exists()) {
+        configYamls.add(yaml);
+      }
+    }
+
+    // Skip if this exact deployment already went out
+    List<File> allYamls = new ArrayList<>();
+    allYamls.add(appYaml);
+    allYamls.addAll(configYamls);
+    DeployExtension deployAllConfig = new DeployExtension(deployConfig, allYamls);
+    DeployFingerprint deployFingerprint = DeployFingerprint.forTask(this);
+    String fingerprint = deployFingerprint.compute(deployAllConfig);
+    deployFingerprint.logCacheHitRate(getLogger());
+    if (!force && deployFingerprint.isUnchanged(deployAllConfig, fingerprint)) {
+      getLogger()
+          .lifecycle(
+              "Skipping deploy, nothing changed since the last deploy of version "
+                  + deployConfig.getVersion()
+                  + " to "
+                  + deployConfig.getProjectId()
+                  + " (use --force to deploy anyway)");
+      setDidWork(false);
+      return;
+    }
+
+    // Configurations apply to the whole cloud project, only send the ones that changed
+    DeployedConfigs deployedConfigs = null;
+    if (deployConfig.getProjectId() != null) {
+      deployedConfigs = DeployedConfigs.forProject(getProject(), deployConfig.getProjectId());
+    }
+    List<File> deployables = new ArrayList<>();
+    addDeployable(deployables, appYaml);
+    List<File> changedConfigYamls = new ArrayList<>();
+    for (File yaml : configYamls) {
+      if (!force && deployedConfigs != null && deployedConfigs.isUnchanged(yaml)) {
+        getLogger()
+            .lifecycle(
+                "Skipping "
+                    + yaml.getName()
+                    + ", unchanged since the last deploy to "
+                    + deployConfig.getProjectId());
+      } else {
         addDeployable(deployables, yaml);
+        changedConfigYamls.add(yaml);
       }
     }
 
     // Deploy
-    AppEngineDeployment deploy =
-        gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger()));
-    deploy.deploy(new DeployExtension(deployConfig, deployables));
+    DeployPhaseRecorder recorder = new DeployPhaseRecorder(getPath(), deployables);
+    try {
+      recorder.record(
+          this,
+          "",
+          CloudSdkOperations.getLogFile(getProject(), getName()),
+          processHandler -> {
+            AppEngineDeployment deploy = gcloud.newDeployment(processHandler);
+            deploy.deploy(new DeployExtension(deployConfig, deployables));
+          });
+    } finally {
+      DeployPhaseRecorder.writeReport(getProject(), Collections.singletonList(recorder));
+    }
+    deployFingerprint.record(deployAllConfig, fingerprint);
+    if (deployedConfigs != null) {
+      deployedConfigs.record(changedConfigYamls);
+    }
   }
 
   private void addDeployable(List<File> deployables, File yaml) {
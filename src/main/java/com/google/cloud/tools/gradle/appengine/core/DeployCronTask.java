@@ -39,6 +39,8 @@ public class DeployCronTask extends GcloudTask {
   /** Task Entrypoint : deploy cron.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deployCron(config);
+    gcloud
+        .newDeployment(CloudSdkOperations.getDefaultHandler(this, "deploy config"))
+        .deployCron(config);
   }
 }
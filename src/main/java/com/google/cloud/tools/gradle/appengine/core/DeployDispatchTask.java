@@ -40,6 +40,8 @@ public class DeployDispatchTask extends GcloudTask {
   /** Task entrypoint : deploy dispatch.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deployDispatch(config);
+    gcloud
+        .newDeployment(CloudSdkOperations.getDefaultHandler(this, "deploy config"))
+        .deployDispatch(config);
   }
 }
@@ -39,6 +39,8 @@ public class DeployDosTask extends GcloudTask {
   /** Task entrypoint : deploy dos.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deployDos(config);
+    gcloud
+        .newDeployment(CloudSdkOperations.getDefaultHandler(this, "deploy config"))
+        .deployDos(config);
   }
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.api.deploy.DeployConfiguration;
+import com.google.cloud.tools.gradle.appengine.util.io.FileHashCache;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Remembers what was last deployed to each service of a cloud project so identical redeploys can be
+ * skipped. A fingerprint is a hash of the deploy parameters and the deployables, for an app.yaml
+ * that is the whole staged directory containing it. Any deployment to a service, of another version
+ * or from another task, replaces the fingerprint of that service, so rolling back to an earlier
+ * version is never skipped.
+ */
+public class DeployFingerprint {
+
+  private static final String STORE_DIR = "deploy-fingerprints";
+  // the service of an app.yaml, "module" is its deprecated name
+  private static final Pattern SERVICE =
+      Pattern.compile("^(?:service|module):\\s*['\"]?([\\w-]+)['\"]?\\s*(?:#.*)?$");
+
+  private final Path store;
+  @Nullable private final FileHashCache hashCache;
+  private final int parallelism;
+  private int cacheHits;
+  private int cacheMisses;
+
+  /**
+   * Fingerprint store in a directory.
+   *
+   * @param store directory of the fingerprints, one file per cloud project
+   */
+  @VisibleForTesting
+  DeployFingerprint(Path store, @Nullable FileHashCache hashCache, int parallelism) {
+    this.store = store;
+    this.hashCache = hashCache;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Fingerprint store for a task, kept in the project cache directory (usually .gradle) and shared
+   * by all deploy tasks of the build. Staged files are hashed through the file hash cache in the
+   * gradle user home, those that changed on as many threads as gradle has workers.
+   */
+  public static DeployFingerprint forTask(Task task) {
+    return new DeployFingerprint(
+        cacheDirectory(task.getProject()).resolve(STORE_DIR),
+        FileHashCache.forProject(task.getProject()),
+        task.getProject().getGradle().getStartParameter().getMaxWorkerCount());
+  }
+
+  /** Directory for the plugin's deploy state, inside the project cache directory. */
+  static Path cacheDirectory(Project project) {
+    File projectCacheDir = project.getGradle().getStartParameter().getProjectCacheDir();
+    if (projectCacheDir == null) {
+      projectCacheDir = new File(project.getRootDir(), ".gradle");
+    }
+    return projectCacheDir.toPath().resolve("appengine");
+  }
+
+  static String fileName(String name) {
+    return name.replaceAll("[^A-Za-z0-9_.-]", "_") + ".properties";
+  }
+
+  /**
+   * Compute the fingerprint of a deployment, or null if the deployment should never be considered a
+   * repeat (gcloud generates a new version when none is specified).
+   */
+  public String compute(DeployConfiguration config) throws IOException {
+    if (Strings.isNullOrEmpty(config.getVersion())) {
+      return null;
+    }
+    cacheHits = 0;
+    cacheMisses = 0;
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, config.getProjectId());
+    putString(hasher, config.getVersion());
+    putString(hasher, config.getBucket());
+    putString(hasher, config.getImageUrl());
+    putString(hasher, config.getServer());
+    putString(hasher, String.valueOf(config.getPromote()));
+    putString(hasher, String.valueOf(config.getStopPreviousVersion()));
+    for (File deployable : config.getDeployables()) {
+      Path path = deployable.toPath();
+      putString(hasher, path.getFileName().toString());
+      if ("app.yaml".equals(path.getFileName().toString()) && path.getParent() != null) {
+        putTree(hasher, path.getParent());
+      } else {
+        hasher.putBytes(hashFile(path).asBytes());
+      }
+    }
+    if (hashCache != null && cacheMisses > 0) {
+      hashCache.save();
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Log how many staged files the last computed fingerprint found in the file hash cache. */
+  public void logCacheHitRate(Logger logger) {
+    int total = cacheHits + cacheMisses;
+    if (hashCache != null && total > 0) {
+      logger.lifecycle(
+          "File hash cache: {} of {} files hashed from cache ({}%)",
+          cacheHits, total, cacheHits * 100 / total);
+    }
+  }
+
+  /** Returns true if this fingerprint was the last successful deployment to the same targets. */
+  public boolean isUnchanged(DeployConfiguration config, String fingerprint) throws IOException {
+    return fingerprint != null
+        && fingerprint.equals(load(config).getProperty(String.join(",", targets(config))));
+  }
+
+  /** Record a successful deployment, forgetting the earlier deployments to any of its targets. */
+  public void record(DeployConfiguration config, String fingerprint) throws IOException {
+    if (fingerprint == null) {
+      return;
+    }
+    List<String> targets = targets(config);
+    synchronized (DeployFingerprint.class) {
+      Properties properties = load(config);
+      for (String key : properties.stringPropertyNames()) {
+        if (!Collections.disjoint(Arrays.asList(key.split(",")), targets)) {
+          properties.remove(key);
+        }
+      }
+      properties.setProperty(String.join(",", targets), fingerprint);
+      Path file = storeFile(config);
+      Files.createDirectories(file.getParent());
+      try (OutputStream out = Files.newOutputStream(file)) {
+        properties.store(out, "appengine deploy fingerprints");
+      }
+    }
+  }
+
+  private Properties load(DeployConfiguration config) throws IOException {
+    Properties properties = new Properties();
+    Path file = storeFile(config);
+    if (Files.isRegularFile(file)) {
+      try (InputStream in = Files.newInputStream(file)) {
+        properties.load(in);
+      }
+    }
+    return properties;
+  }
+
+  private Path storeFile(DeployConfiguration config) {
+    return store.resolve(fileName(Strings.nullToEmpty(config.getProjectId())));
+  }
+
+  /**
+   * What a deployment replaces: the service of an app.yaml, or the configuration of another yaml
+   * (cron.yaml, dispatch.yaml ...), sorted.
+   */
+  @VisibleForTesting
+  static List<String> targets(DeployConfiguration config) throws IOException {
+    List<String> targets = new ArrayList<>();
+    for (File deployable : config.getDeployables()) {
+      if ("app.yaml".equals(deployable.getName())) {
+        targets.add("service:" + readService(deployable.toPath()));
+      } else {
+        targets.add(deployable.getName());
+      }
+    }
+    Collections.sort(targets);
+    return targets;
+  }
+
+  private static String readService(Path appYaml) throws IOException {
+    if (Files.isRegularFile(appYaml)) {
+      for (String line : Files.readAllLines(appYaml, StandardCharsets.UTF_8)) {
+        Matcher service = SERVICE.matcher(line);
+        if (service.matches()) {
+          return service.group(1);
+        }
+      }
+    }
+    return "default";
+  }
+
+  private void putTree(Hasher hasher, Path root) throws IOException {
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(root)) {
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    List<HashCode> hashes = hashFiles(files);
+    for (int i = 0; i < files.size(); i++) {
+      putString(hasher, root.relativize(files.get(i)).toString().replace(File.separatorChar, '/'));
+      hasher.putBytes(hashes.get(i).asBytes());
+    }
+  }
+
+  private List<HashCode> hashFiles(List<Path> files) throws IOException {
+    if (hashCache != null) {
+      List<Path> uncached = new ArrayList<>();
+      for (Path file : files) {
+        if (hashCache.lookup(file) == null) {
+          uncached.add(file);
+        }
+      }
+      cacheHits += files.size() - uncached.size();
+      cacheMisses += uncached.size();
+      // hash what changed in parallel, then everything comes from the cache
+      hashCache.updateAll(uncached, parallelism);
+    }
+    List<HashCode> hashes = new ArrayList<>();
+    for (Path file : files) {
+      hashes.add(hashCache != null ? hashCache.hash(file) : hashFile(file));
+    }
+    return hashes;
+  }
+
+  private HashCode hashFile(Path file) throws IOException {
+    if (hashCache == null) {
+      return com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256());
+    }
+    HashCode hash = hashCache.lookup(file);
+    if (hash != null) {
+      cacheHits++;
+      return hash;
+    }
+    cacheMisses++;
+    return hashCache.update(file);
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    String nullSafe = Strings.nullToEmpty(value);
+    hasher.putInt(nullSafe.length()).putString(nullSafe, StandardCharsets.UTF_8);
+  }
+}
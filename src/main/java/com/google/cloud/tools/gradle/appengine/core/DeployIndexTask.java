@@ -39,6 +39,8 @@ public class DeployIndexTask extends GcloudTask {
   /** Task entrypoint : deploy index.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deployIndex(config);
+    gcloud
+        .newDeployment(CloudSdkOperations.getDefaultHandler(this, "deploy config"))
+        .deployIndex(config);
   }
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+
+/**
+ * Times the phases of a gcloud app deployment by recognizing the progress markers gcloud writes to
+ * its output. gcloud prints progress tracker lines like "Updating service [default]...done." only
+ * once the step is complete, so such a phase is timed from the preceding line.
+ */
+public class DeployPhaseRecorder implements ProcessOutputLineListener {
+
+  public static final String STARTUP = "startup";
+  public static final String HASHING = "hashing";
+  public static final String UPLOAD = "upload";
+  public static final String BUILD = "build";
+  public static final String VERSION = "version";
+  public static final String PROMOTE = "promote";
+  public static final String STOP_PREVIOUS_VERSION = "stopPreviousVersion";
+
+  private static final String REPORT_PATH = "reports/appengine/deploy.json";
+
+  private static final Pattern BEGIN_DEPLOYMENT = Pattern.compile("Beginning deployment of .*");
+  private static final Pattern UPLOADING = Pattern.compile(".*Uploading (\\d+) files? to .*");
+  private static final Pattern UPLOAD_DONE = Pattern.compile("File upload done\\..*");
+  private static final Pattern BUILDING =
+      Pattern.compile("(Building and pushing image|Started cloud build) .*");
+  private static final Pattern UPDATING = Pattern.compile("Updating service .*done\\.?");
+  private static final Pattern TRAFFIC = Pattern.compile("Setting traffic split .*done\\.?");
+  private static final Pattern STOPPING = Pattern.compile("Stopping version .*done\\.?");
+  private static final Pattern DEPLOYED = Pattern.compile("Deployed service \\[([^\\]]*)\\].*");
+
+  private final String description;
+  private final List<File> deployables;
+  private final LongSupplier clock;
+  private final List<Phase> phases = new ArrayList<>();
+  private final List<String> services = new ArrayList<>();
+  private long startMillis;
+  private long endMillis;
+  private long lastLineMillis;
+  private Phase openPhase;
+  private int uploadedFiles;
+  private long stagedBytes;
+  private Boolean success;
+
+  /** Recorder for one gcloud deployment, described by the task and services it deploys. */
+  public DeployPhaseRecorder(String description, List<File> deployables) {
+    this(description, deployables, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  DeployPhaseRecorder(String description, List<File> deployables, LongSupplier clock) {
+    this.description = description;
+    this.deployables = deployables;
+    this.clock = clock;
+  }
+
+  /**
+   * Run a deployment with a default process handler that also feeds this recorder.
+   *
+   * @param task the task running the deployment, gcloud output is logged to its logger
+   * @param linePrefix prefix for every logged line of output
+   * @param logFile where the full gcloud output is written
+   * @param deployment starts the gcloud deployment using the handler it is given
+   */
+  public void record(Task task, String linePrefix, File logFile, Deployment deployment)
+      throws AppEngineException {
+    start();
+    try {
+      deployment.deploy(
+          CloudSdkOperations.getDefaultHandler(
+              task.getLogger(),
+              linePrefix,
+              logFile,
+              this,
+              ProcessTelemetry.forProject(task.getProject()).newRecording(task, "deploy")));
+      finish(true);
+    } catch (AppEngineException | RuntimeException ex) {
+      finish(false);
+      throw ex;
+    }
+  }
+
+  /** A gcloud invocation. */
+  public interface Deployment {
+    void deploy(ProcessHandler processHandler) throws AppEngineException;
+  }
+
+  // sums up the size of the staged deployables as well
+  @VisibleForTesting
+  synchronized void start() {
+    startMillis = clock.getAsLong();
+    lastLineMillis = startMillis;
+    openPhase = new Phase(STARTUP, startMillis);
+    stagedBytes = 0;
+    for (File deployable : deployables) {
+      Path staged =
+          "app.yaml".equals(deployable.getName())
+              ? deployable.getParentFile().toPath()
+              : deployable.toPath();
+      try (Stream<Path> files = Files.walk(staged)) {
+        stagedBytes +=
+            files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+      } catch (IOException | RuntimeException ex) {
+        // the size is informational only
+      }
+    }
+  }
+
+  @Override
+  public synchronized void onOutputLine(String line) {
+    long now = clock.getAsLong();
+    String trimmed = line.replaceAll("[^\\x20-\\x7e]", " ").trim();
+    trimmed = trimmed.replaceAll("^[=\\s]+|[=\\s]+$", "");
+
+    Matcher uploading = UPLOADING.matcher(trimmed);
+    Matcher deployed = DEPLOYED.matcher(trimmed);
+    if (BEGIN_DEPLOYMENT.matcher(trimmed).matches()) {
+      open(HASHING, now);
+    } else if (uploading.matches()) {
+      uploadedFiles += Integer.parseInt(uploading.group(1));
+      open(UPLOAD, now);
+    } else if (UPLOAD_DONE.matcher(trimmed).matches()) {
+      close(now);
+    } else if (BUILDING.matcher(trimmed).matches()) {
+      if (openPhase == null || !BUILD.equals(openPhase.name)) {
+        open(BUILD, now);
+      }
+    } else if (UPDATING.matcher(trimmed).matches()) {
+      completed(VERSION, now);
+    } else if (TRAFFIC.matcher(trimmed).matches()) {
+      completed(PROMOTE, now);
+    } else if (STOPPING.matcher(trimmed).matches()) {
+      completed(STOP_PREVIOUS_VERSION, now);
+    } else if (deployed.matches()) {
+      close(now);
+      services.add(deployed.group(1));
+    }
+    lastLineMillis = now;
+  }
+
+  @VisibleForTesting
+  synchronized void finish(boolean success) {
+    endMillis = clock.getAsLong();
+    close(endMillis);
+    this.success = success;
+  }
+
+  // a phase gcloud announces when it starts
+  private void open(String name, long now) {
+    close(now);
+    openPhase = new Phase(name, now);
+  }
+
+  // a phase gcloud only reports once it is done, it started after the previous line
+  private void completed(String name, long now) {
+    close(lastLineMillis);
+    Phase phase = new Phase(name, lastLineMillis);
+    phase.end(now);
+    phases.add(phase);
+  }
+
+  private void close(long now) {
+    if (openPhase != null) {
+      openPhase.end(now);
+      phases.add(openPhase);
+      openPhase = null;
+    }
+  }
+
+  /** Total time spent in each phase, in milliseconds. */
+  public synchronized Map<String, Long> getPhaseDurations() {
+    Map<String, Long> durations = new LinkedHashMap<>();
+    for (Phase phase : phases) {
+      durations.merge(phase.name, phase.durationMillis, Long::sum);
+    }
+    return durations;
+  }
+
+  public synchronized int getUploadedFiles() {
+    return uploadedFiles;
+  }
+
+  synchronized Map<String, Object> toReport() {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("deployment", description);
+    report.put("services", new ArrayList<>(services));
+    report.put("start", Instant.ofEpochMilli(startMillis).toString());
+    report.put("durationMillis", endMillis - startMillis);
+    report.put("success", success);
+    report.put("uploadedFiles", uploadedFiles);
+    report.put("stagedBytes", stagedBytes);
+    List<Map<String, Object>> phaseReports = new ArrayList<>();
+    for (Phase phase : phases) {
+      Map<String, Object> phaseReport = new LinkedHashMap<>();
+      phaseReport.put("name", phase.name);
+      phaseReport.put("offsetMillis", phase.startMillis - startMillis);
+      phaseReport.put("durationMillis", phase.durationMillis);
+      phaseReports.add(phaseReport);
+    }
+    report.put("phases", phaseReports);
+    return report;
+  }
+
+  /**
+   * Write the deployments of a task run to build/reports/appengine/deploy.json. Called after failed
+   * deployments too, so failing to write the report is only a warning.
+   */
+  public static void writeReport(Project project, List<DeployPhaseRecorder> recorders) {
+    List<Map<String, Object>> deployments = new ArrayList<>();
+    for (DeployPhaseRecorder recorder : recorders) {
+      deployments.add(recorder.toReport());
+    }
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("deployments", deployments);
+
+    Path reportFile = project.getBuildDir().toPath().resolve(REPORT_PATH);
+    try {
+      Files.createDirectories(reportFile.getParent());
+      try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+        new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+      }
+    } catch (IOException ex) {
+      project.getLogger().warn("Failed to write " + reportFile, ex);
+    }
+  }
+
+  private static class Phase {
+    private final String name;
+    private final long startMillis;
+    private long durationMillis;
+
+    Phase(String name, long startMillis) {
+      this.name = name;
+      this.startMillis = startMillis;
+    }
+
+    void end(long endMillis) {
+      durationMillis = Math.max(0, endMillis - startMillis);
+    }
+  }
+}
@@ -39,6 +39,8 @@ public class DeployQueueTask extends GcloudTask {
   /** Task entrypoint : deploy queue.yaml. */
   @TaskAction
   public void deployAction() throws AppEngineException {
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deployQueue(config);
+    gcloud
+        .newDeployment(CloudSdkOperations.getDefaultHandler(this, "deploy config"))
+        .deployQueue(config);
   }
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
+import com.google.common.base.Joiner;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.api.tasks.options.Option;
+
+/**
+ * Deploys the services of every App Engine project in a multi-project build. Services that share
+ * deploy parameters go out in a single gcloud invocation, and independent invocations run
+ * concurrently. In pipelined mode each service is uploaded as soon as it is staged, while the
+ * remaining services are still being staged.
+ */
+public class DeployServicesTask extends DefaultTask {
+
+  private final List<DeployTask> services = new ArrayList<>();
+  private boolean batch = true;
+  private int maxParallelDeploys = 2;
+  private boolean force;
+  private boolean pipelined;
+
+  // deployments started ahead of the task action in pipelined mode
+  private final Map<DeploymentUnit, Future<?>> started = new LinkedHashMap<>();
+  private final AtomicInteger finished = new AtomicInteger();
+  private final List<DeployPhaseRecorder> recorders =
+      Collections.synchronizedList(new ArrayList<>());
+  private ExecutorService executor;
+
+  /** Add the service deployed by a project, building whatever its deploy task depends on first. */
+  public void addService(DeployTask deployTask) {
+    services.add(deployTask);
+    dependsOn(deployTask.getTaskDependencies());
+  }
+
+  public boolean getBatch() {
+    return batch;
+  }
+
+  /** Deploy services with identical deploy parameters in one gcloud invocation. */
+  public void setBatch(boolean batch) {
+    this.batch = batch;
+  }
+
+  public int getMaxParallelDeploys() {
+    return maxParallelDeploys;
+  }
+
+  /** Maximum number of gcloud deploy invocations running at the same time. */
+  public void setMaxParallelDeploys(int maxParallelDeploys) {
+    if (maxParallelDeploys < 1) {
+      throw new GradleException("maxParallelDeploys must be at least 1");
+    }
+    this.maxParallelDeploys = maxParallelDeploys;
+  }
+
+  public boolean getPipelined() {
+    return pipelined;
+  }
+
+  /**
+   * Deploy each service as soon as it is staged, overlapping uploads with the staging of other
+   * services. Services are never batched in this mode.
+   */
+  @Option(option = "pipelined", description = "Deploy each service as soon as it is staged")
+  public void setPipelined(boolean pipelined) {
+    this.pipelined = pipelined;
+  }
+
+  @Option(option = "force", description = "Deploy even if nothing changed since the last deploy")
+  public void setForce(boolean force) {
+    this.force = force;
+  }
+
+  /**
+   * Start deploying services from the task graph, each one as soon as the tasks its deploy task
+   * depends on have finished. Called once the graph is ready, does nothing unless pipelined.
+   */
+  void startPipeline(TaskExecutionGraph graph) {
+    if (!pipelined || !graph.hasTask(this)) {
+      return;
+    }
+    Map<DeployTask, Set<Task>> pending = new LinkedHashMap<>();
+    for (DeployTask service : services) {
+      Set<Task> prerequisites = new HashSet<>();
+      for (Task dependency : service.getTaskDependencies().getDependencies(service)) {
+        if (graph.hasTask(dependency)) {
+          prerequisites.add(dependency);
+        }
+      }
+      pending.put(service, prerequisites);
+    }
+
+    graph.addTaskExecutionListener(
+        new TaskExecutionListener() {
+          @Override
+          public void beforeExecute(Task task) {}
+
+          @Override
+          public void afterExecute(Task task, TaskState state) {
+            if (state.getFailure() != null) {
+              return;
+            }
+            synchronized (started) {
+              pending
+                  .entrySet()
+                  .removeIf(
+                      entry -> {
+                        Set<Task> prerequisites = entry.getValue();
+                        if (prerequisites.remove(task) && prerequisites.isEmpty()) {
+                          submit(new DeploymentUnit(entry.getKey()));
+                          return true;
+                        }
+                        return false;
+                      });
+            }
+          }
+        });
+
+    // if the build fails before this task runs, don't leave deployments running unattended
+    getProject().getGradle().buildFinished(result -> awaitAbandonedDeployments());
+  }
+
+  private void awaitAbandonedDeployments() {
+    Map<DeploymentUnit, Future<?>> abandoned = snapshot();
+    if (abandoned.isEmpty()) {
+      return;
+    }
+    getLogger()
+        .warn(
+            getName()
+                + " did not run, waiting for "
+                + abandoned.size()
+                + " deployments that already started");
+    for (Map.Entry<DeploymentUnit, Future<?>> entry : abandoned.entrySet()) {
+      try {
+        entry.getValue().get();
+      } catch (ExecutionException ex) {
+        getLogger().error("Failed to deploy " + entry.getKey().describe(), ex.getCause());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    synchronized (started) {
+      executor.shutdownNow();
+      executor = null;
+      started.clear();
+    }
+  }
+
+  /** Task Entrypoint : deploy all registered services. */
+  @TaskAction
+  public void deployServicesAction() throws IOException {
+    List<DeploymentUnit> units = new ArrayList<>();
+    Map<List<Object>, DeploymentUnit> batches = new LinkedHashMap<>();
+    synchronized (started) {
+      Set<DeployTask> alreadyStarted = new HashSet<>();
+      for (DeploymentUnit unit : started.keySet()) {
+        alreadyStarted.addAll(unit.services);
+      }
+      for (DeployTask service : services) {
+        if (alreadyStarted.contains(service)) {
+          continue;
+        }
+        boolean batched = batch && !pipelined;
+        DeploymentUnit unit = batched ? batches.get(batchKey(service)) : null;
+        if (unit == null) {
+          unit = new DeploymentUnit(service);
+          units.add(unit);
+          if (batched) {
+            batches.put(batchKey(service), unit);
+          }
+        } else {
+          unit.services.add(service);
+        }
+      }
+      for (DeploymentUnit unit : units) {
+        submit(unit);
+      }
+    }
+
+    try {
+      List<String> failures = new ArrayList<>();
+      int deployed = 0;
+      for (Map.Entry<DeploymentUnit, Future<?>> entry : snapshot().entrySet()) {
+        try {
+          if (entry.getValue().get() == Boolean.TRUE) {
+            deployed++;
+          }
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          getLogger().error("Failed to deploy " + entry.getKey().describe(), cause);
+          failures.add(entry.getKey().describe() + ": " + cause.getMessage());
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new GradleException("Interrupted while deploying services", ex);
+        }
+      }
+      if (!failures.isEmpty()) {
+        throw new GradleException(
+            failures.size()
+                + " of "
+                + snapshot().size()
+                + " deployments failed:\n  "
+                + Joiner.on("\n  ").join(failures));
+      }
+      if (deployed == 0) {
+        getLogger().lifecycle("No services to deploy");
+        setDidWork(false);
+      }
+    } finally {
+      synchronized (started) {
+        if (executor != null) {
+          executor.shutdownNow();
+          executor = null;
+        }
+        started.clear();
+      }
+      finished.set(0);
+      if (!recorders.isEmpty()) {
+        DeployPhaseRecorder.writeReport(getProject(), recorders);
+        recorders.clear();
+      }
+    }
+  }
+
+  private Map<DeploymentUnit, Future<?>> snapshot() {
+    synchronized (started) {
+      return new LinkedHashMap<>(started);
+    }
+  }
+
+  // callers hold the lock on started
+  private void submit(DeploymentUnit unit) {
+    if (executor == null) {
+      executor =
+          Executors.newFixedThreadPool(
+              maxParallelDeploys,
+              runnable -> {
+                Thread thread = new Thread(runnable, "appengine-deploy");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    started.put(unit, executor.submit(() -> deploy(unit)));
+  }
+
+  // returns false if nothing needed deploying
+  private boolean deploy(DeploymentUnit unit) throws AppEngineException, IOException {
+    List<DeployTask> changed = new ArrayList<>();
+    List<String> fingerprints = new ArrayList<>();
+    for (DeployTask service : unit.services) {
+      DeployFingerprint deployFingerprint = DeployFingerprint.forTask(service);
+      String fingerprint = deployFingerprint.compute(service.getDeployConfig());
+      deployFingerprint.logCacheHitRate(getLogger());
+      if (!force && deployFingerprint.isUnchanged(service.getDeployConfig(), fingerprint)) {
+        getLogger()
+            .lifecycle(
+                "Skipping " + service.getProject().getPath() + ", unchanged since the last deploy");
+      } else {
+        changed.add(service);
+        fingerprints.add(fingerprint);
+      }
+    }
+    if (changed.isEmpty()) {
+      return false;
+    }
+
+    DeploymentUnit changedUnit = new DeploymentUnit(changed);
+    getLogger().lifecycle("Deploying " + changedUnit.describe());
+    // batched services share their gcloud, and with it their credentials
+    DeployTask first = changed.get(0);
+    Gcloud gcloud = first.getGcloud();
+    List<File> deployables = changedUnit.deployables();
+    DeployPhaseRecorder recorder =
+        new DeployPhaseRecorder(getPath() + " " + changedUnit.describe(), deployables);
+    recorders.add(recorder);
+    recorder.record(
+        this,
+        changedUnit.describe() + ": ",
+        CloudSdkOperations.getLogFile(getProject(), getName() + "-" + changedUnit.fileName()),
+        processHandler ->
+            gcloud
+                .newDeployment(processHandler)
+                .deploy(new DeployExtension(first.getDeployConfig(), deployables)));
+
+    for (int i = 0; i < changed.size(); i++) {
+      DeployTask service = changed.get(i);
+      DeployFingerprint.forTask(service).record(service.getDeployConfig(), fingerprints.get(i));
+    }
+    getLogger()
+        .lifecycle(
+            "Deployed "
+                + changedUnit.describe()
+                + " ("
+                + finished.addAndGet(changed.size())
+                + "/"
+                + services.size()
+                + " services)");
+    return true;
+  }
+
+  // services can share an invocation when they use the same gcloud (sdk and credentials) and every
+  // deploy flag passed to gcloud is the same
+  private static List<Object> batchKey(DeployTask service) {
+    DeployExtension deployConfig = service.getDeployConfig();
+    return Arrays.asList(
+        service.getGcloud(),
+        deployConfig.getProjectId(),
+        deployConfig.getVersion(),
+        deployConfig.getBucket(),
+        deployConfig.getImageUrl(),
+        deployConfig.getServer(),
+        deployConfig.getPromote(),
+        deployConfig.getStopPreviousVersion());
+  }
+
+  private static class DeploymentUnit {
+    private final List<DeployTask> services = new ArrayList<>();
+
+    DeploymentUnit(DeployTask service) {
+      services.add(service);
+    }
+
+    DeploymentUnit(List<DeployTask> services) {
+      this.services.addAll(services);
+    }
+
+    List<File> deployables() {
+      List<File> deployables = new ArrayList<>();
+      for (DeployTask service : services) {
+        deployables.addAll(service.getDeployConfig().getDeployables());
+      }
+      return deployables;
+    }
+
+    String describe() {
+      return services
+          .stream()
+          .map(service -> service.getProject().getPath())
+          .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    // ":backend:api" becomes "backend-api"
+    String fileName() {
+      return services
+          .stream()
+          .map(service -> service.getProject().getPath().replaceFirst("^:", "").replace(':', '-'))
+          .collect(Collectors.joining("_"));
+    }
+  }
+}
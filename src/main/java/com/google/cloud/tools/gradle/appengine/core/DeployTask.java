@@ -20,26 +20,117 @@ package com.google.cloud.tools.gradle.appengine.core;
 import com.google.cloud.tools.appengine.api.AppEngineException;
 import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import org.gradle.api.GradleException;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
 
 /** Task to deploy App Engine applications. */
 public class DeployTask extends GcloudTask {
 
   private DeployExtension deployConfig;
   private Gcloud gcloud;
+  private AsyncDeployment asyncDeployment;
+  private boolean force;
+  private boolean async;
 
   public void setDeployConfig(DeployExtension deployConfig, List<File> deployables) {
     this.deployConfig = new DeployExtension(deployConfig, deployables);
   }
 
+  DeployExtension getDeployConfig() {
+    return deployConfig;
+  }
+
   public void setGcloud(Gcloud gcloud) {
     this.gcloud = gcloud;
   }
 
+  Gcloud getGcloud() {
+    return gcloud;
+  }
+
+  public void setAsyncDeployment(AsyncDeployment asyncDeployment) {
+    this.asyncDeployment = asyncDeployment;
+  }
+
+  @Option(option = "force", description = "Deploy even if nothing changed since the last deploy")
+  public void setForce(boolean force) {
+    this.force = force;
+  }
+
+  @Option(
+      option = "async",
+      description = "Submit the deployment without waiting for it, see appengineAwaitDeploy")
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+
+  /** Where asynchronous deployments of this task keep their operation handle and log. */
+  File getOperationDirectory() {
+    return new File(getProject().getBuildDir(), "appengine/async-deploy");
+  }
+
   /** Task Entrypoint : DeployExtension application (via app.yaml). */
   @TaskAction
-  public void deployAction() throws AppEngineException {
-    gcloud.newDeployment(CloudSdkOperations.getDefaultHandler(getLogger())).deploy(deployConfig);
+  public void deployAction() throws AppEngineException, IOException {
+    DeployFingerprint deployFingerprint = DeployFingerprint.forTask(this);
+    String fingerprint = deployFingerprint.compute(deployConfig);
+    deployFingerprint.logCacheHitRate(getLogger());
+    if (!force && deployFingerprint.isUnchanged(deployConfig, fingerprint)) {
+      getLogger()
+          .lifecycle(
+              "Skipping deploy, nothing changed since the last deploy of version "
+                  + deployConfig.getVersion()
+                  + " to "
+                  + deployConfig.getProjectId()
+                  + " (use --force to deploy anyway)");
+      setDidWork(false);
+      return;
+    }
+
+    if (async) {
+      submitAsync(fingerprint);
+      return;
+    }
+
+    DeployPhaseRecorder recorder =
+        new DeployPhaseRecorder(getPath(), deployConfig.getDeployables());
+    try {
+      recorder.record(
+          this,
+          "",
+          CloudSdkOperations.getLogFile(getProject(), getName()),
+          processHandler -> gcloud.newDeployment(processHandler).deploy(deployConfig));
+    } finally {
+      DeployPhaseRecorder.writeReport(getProject(), Collections.singletonList(recorder));
+    }
+    deployFingerprint.record(deployConfig, fingerprint);
+  }
+
+  private void submitAsync(String fingerprint) throws IOException {
+    File operationDirectory = getOperationDirectory();
+    AsyncDeployment.Operation pending = AsyncDeployment.read(operationDirectory);
+    if (pending != null && pending.getExitCode() == null) {
+      throw new GradleException(
+          "A deployment submitted earlier is still running, wait for it with "
+              + AppEngineCorePluginConfiguration.AWAIT_DEPLOY_TASK_NAME
+              + " before submitting another one");
+    }
+    AsyncDeployment.Operation operation =
+        asyncDeployment.submit(deployConfig, fingerprint, operationDirectory);
+    getLogger()
+        .lifecycle(
+            "Submitted deployment of version "
+                + deployConfig.getVersion()
+                + " to "
+                + deployConfig.getProjectId()
+                + ", wait for it with "
+                + AppEngineCorePluginConfiguration.AWAIT_DEPLOY_TASK_NAME
+                + " (log: "
+                + operation.getLog()
+                + ")");
   }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import org.gradle.api.Project;
+
+/**
+ * Content hashes of the configuration yamls (cron, dispatch, dos, index, queue) last deployed to a
+ * cloud project. These configurations are global to a cloud project, not to a service or version.
+ */
+public class DeployedConfigs {
+
+  private static final String STORE_DIR = "deployed-configs";
+
+  private final Path store;
+  private final Properties hashes = new Properties();
+
+  @VisibleForTesting
+  DeployedConfigs(Path store) throws IOException {
+    this.store = store;
+    if (Files.isRegularFile(store)) {
+      try (InputStream in = Files.newInputStream(store)) {
+        hashes.load(in);
+      }
+    }
+  }
+
+  /** Load the configurations last deployed to a cloud project from this build. */
+  public static DeployedConfigs forProject(Project project, String projectId) throws IOException {
+    return new DeployedConfigs(
+        DeployFingerprint.cacheDirectory(project)
+            .resolve(STORE_DIR)
+            .resolve(DeployFingerprint.fileName(projectId)));
+  }
+
+  /** Returns true if a configuration with the same name and content was already deployed. */
+  public boolean isUnchanged(File yaml) throws IOException {
+    return hash(yaml).equals(hashes.getProperty(yaml.getName()));
+  }
+
+  /** Record successfully deployed configurations. */
+  public void record(List<File> yamls) throws IOException {
+    for (File yaml : yamls) {
+      hashes.setProperty(yaml.getName(), hash(yaml));
+    }
+    Files.createDirectories(store.getParent());
+    try (OutputStream out = Files.newOutputStream(store)) {
+      hashes.store(out, "appengine deployed configurations");
+    }
+  }
+
+  private static String hash(File yaml) throws IOException {
+    return com.google.common.io.Files.asByteSource(yaml).hash(Hashing.sha256()).toString();
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.internal.logging.progress.ProgressLogger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+
+/**
+ * Shows the stages of a Cloud SDK download/install in Gradle's progress display, with bytes done,
+ * throughput and ETA, and records how long each stage took for
+ * build/reports/appengine/cloud-sdk-install.json.
+ */
+public class DownloadCloudSdkProgressListener implements ProgressListener {
+
+  private static final String REPORT_PATH = "reports/appengine/cloud-sdk-install.json";
+  private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+  private final ProgressLoggerFactory progressLoggerFactory;
+  @Nullable private final ProgressLogger parent;
+  private final List<Map<String, Object>> stages;
+  private final LongSupplier nanoTime;
+  private final long reportStartNanos;
+
+  private ProgressLogger progressLogger;
+  private String stage;
+  private long totalWork;
+  private long workDone;
+  private long startNanos;
+  private long lastProgressNanos;
+
+  /** Listener for the root stage of an installation. */
+  public DownloadCloudSdkProgressListener(ProgressLoggerFactory progressLoggerFactory) {
+    this(
+        progressLoggerFactory,
+        null,
+        Collections.synchronizedList(new ArrayList<>()),
+        System::nanoTime,
+        System.nanoTime());
+  }
+
+  @VisibleForTesting
+  DownloadCloudSdkProgressListener(
+      ProgressLoggerFactory progressLoggerFactory,
+      @Nullable ProgressLogger parent,
+      List<Map<String, Object>> stages,
+      LongSupplier nanoTime,
+      long reportStartNanos) {
+    this.progressLoggerFactory = progressLoggerFactory;
+    this.parent = parent;
+    this.stages = stages;
+    this.nanoTime = nanoTime;
+    this.reportStartNanos = reportStartNanos;
+  }
+
+  @Override
+  public void start(String message, long totalWork) {
+    this.stage = message;
+    this.totalWork = totalWork;
+    this.workDone = 0;
+    this.startNanos = nanoTime.getAsLong();
+    this.lastProgressNanos = startNanos;
+    progressLogger =
+        parent == null
+            ? progressLoggerFactory.newOperation(DownloadCloudSdkProgressListener.class)
+            : progressLoggerFactory.newOperation(DownloadCloudSdkProgressListener.class, parent);
+    progressLogger.setDescription(message);
+    progressLogger.started();
+  }
+
+  @Override
+  public void update(long workDone) {
+    this.workDone += workDone;
+    long now = nanoTime.getAsLong();
+    // the installer reports every buffer it reads, only redraw a few times per second
+    if (progressLogger != null && now - lastProgressNanos >= PROGRESS_INTERVAL_NANOS) {
+      lastProgressNanos = now;
+      progressLogger.progress(describeProgress(now));
+    }
+  }
+
+  @Override
+  public void update(String message) {
+    if (progressLogger != null) {
+      progressLogger.progress(message);
+    }
+  }
+
+  @Override
+  public void done() {
+    if (progressLogger == null) {
+      return;
+    }
+    long now = nanoTime.getAsLong();
+    progressLogger.completed();
+    progressLogger = null;
+
+    long durationMillis = TimeUnit.NANOSECONDS.toMillis(now - startNanos);
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("stage", stage);
+    report.put("offsetMillis", TimeUnit.NANOSECONDS.toMillis(startNanos - reportStartNanos));
+    report.put("durationMillis", durationMillis);
+    if (workDone > 0) {
+      report.put("bytes", workDone);
+      report.put(
+          "bytesPerSecond", durationMillis == 0 ? workDone : workDone * 1000 / durationMillis);
+    }
+    stages.add(report);
+  }
+
+  @Override
+  public ProgressListener newChild(long allocation) {
+    return new DownloadCloudSdkProgressListener(
+        progressLoggerFactory, progressLogger, stages, nanoTime, reportStartNanos);
+  }
+
+  /** The completed stages, in the order they completed. */
+  public List<Map<String, Object>> getStages() {
+    synchronized (stages) {
+      return new ArrayList<>(stages);
+    }
+  }
+
+  /**
+   * Write the completed stages to build/reports/appengine/cloud-sdk-install.json. The report is
+   * written when the install fails too, so failing to write it is only a warning.
+   */
+  public void writeReport(Project project, boolean success) {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put(
+        "start",
+        Instant.now()
+            .minusMillis(TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong() - reportStartNanos))
+            .toString());
+    report.put("success", success);
+    report.put("stages", getStages());
+
+    Path reportFile = project.getBuildDir().toPath().resolve(REPORT_PATH);
+    try {
+      Files.createDirectories(reportFile.getParent());
+      try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+        new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+      }
+    } catch (IOException ex) {
+      project.getLogger().warn("Failed to write " + reportFile, ex);
+    }
+  }
+
+  @VisibleForTesting
+  String describeProgress(long now) {
+    double seconds = (now - startNanos) / 1e9;
+    long bytesPerSecond = seconds > 0 ? (long) (workDone / seconds) : 0;
+    StringBuilder progress = new StringBuilder(formatBytes(workDone));
+    if (totalWork != ProgressListener.UNKNOWN && totalWork > 0) {
+      progress
+          .append('/')
+          .append(formatBytes(totalWork))
+          .append(String.format(Locale.US, " (%d%%)", workDone * 100 / totalWork));
+    }
+    if (bytesPerSecond > 0) {
+      progress.append(", ").append(formatBytes(bytesPerSecond)).append("/s");
+      if (totalWork != ProgressListener.UNKNOWN && totalWork > workDone) {
+        progress.append(", ETA ").append((totalWork - workDone) / bytesPerSecond).append('s');
+      }
+    }
+    return progress.toString();
+  }
+
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    if (bytes < 1024 * 1024) {
+      return String.format(Locale.US, "%.1f KB", bytes / 1024.0);
+    }
+    return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024));
+  }
+}
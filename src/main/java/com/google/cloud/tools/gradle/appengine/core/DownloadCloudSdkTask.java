@@ -29,19 +29,134 @@ import com.google.cloud.tools.managedcloudsdk.components.SdkComponentInstaller;
 import com.google.cloud.tools.managedcloudsdk.components.SdkUpdater;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstaller;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstallerException;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 
 public class DownloadCloudSdkTask extends DefaultTask {
 
+  static final String INSTALL_MARKER = "install.properties";
+
   private ManagedCloudSdk managedCloudSdk;
+  private String cloudSdkVersion;
+  private URI cloudSdkMirror;
+  private List<SdkComponent> components = ImmutableList.of(SdkComponent.APP_ENGINE_JAVA);
+  private int updateCheckHours = 24;
+
+  /**
+   * A pinned version that was installed stays installed, LATEST is only checked remotely once per
+   * update check interval.
+   */
+  public DownloadCloudSdkTask() {
+    getOutputs().upToDateWhen(task -> isPinnedVersion() || !isUpdateCheckDue());
+  }
 
   public void setManagedCloudSdk(ManagedCloudSdk managedCloudSdk) {
     this.managedCloudSdk = managedCloudSdk;
   }
 
+  public void setCloudSdkVersion(String cloudSdkVersion) {
+    this.cloudSdkVersion = cloudSdkVersion;
+  }
+
+  public void setCloudSdkMirror(URI cloudSdkMirror) {
+    this.cloudSdkMirror = cloudSdkMirror;
+  }
+
+  /** Sets the components (by gcloud component id) to install in addition to app-engine-java. */
+  public void setComponents(List<String> componentIds) {
+    Set<SdkComponent> components = new LinkedHashSet<>();
+    components.add(SdkComponent.APP_ENGINE_JAVA);
+    for (String componentId : componentIds) {
+      components.add(parseComponent(componentId));
+    }
+    this.components = ImmutableList.copyOf(components);
+  }
+
+  private static SdkComponent parseComponent(String componentId) {
+    for (SdkComponent component : SdkComponent.values()) {
+      if (component.toString().equals(componentId)) {
+        return component;
+      }
+    }
+    throw new GradleException(
+        "Unknown Cloud SDK component '"
+            + componentId
+            + "', expected one of "
+            + Arrays.stream(SdkComponent.values())
+                .map(SdkComponent::toString)
+                .collect(Collectors.joining(", ")));
+  }
+
+  /** Sets the hours between checks of a LATEST Cloud SDK for updates, 0 to check every build. */
+  public void setUpdateCheckHours(int updateCheckHours) {
+    this.updateCheckHours = updateCheckHours;
+  }
+
+  @Input
+  @Optional
+  public String getCloudSdkVersion() {
+    return cloudSdkVersion;
+  }
+
+  @Internal
+  public URI getCloudSdkMirror() {
+    return cloudSdkMirror;
+  }
+
+  /** The components that are installed alongside the Cloud SDK. */
+  @Input
+  public List<String> getComponents() {
+    return components.stream().map(SdkComponent::toString).collect(Collectors.toList());
+  }
+
+  /**
+   * Records the installed version and components, next to the installation so that removing the
+   * installation also makes this task out of date.
+   */
+  @OutputFile
+  @Optional
+  public File getInstallMarker() {
+    if (managedCloudSdk == null) {
+      return null;
+    }
+    return managedCloudSdk.getSdkHome().resolveSibling(INSTALL_MARKER).toFile();
+  }
+
+  private boolean isPinnedVersion() {
+    return cloudSdkVersion != null && !"LATEST".equals(cloudSdkVersion);
+  }
+
+  private boolean isUpdateCheckDue() {
+    return managedCloudSdk == null
+        || getProject().getGradle().getStartParameter().isRefreshDependencies()
+        || getUpdateCheck().isDue(managedCloudSdk.getSdkHome());
+  }
+
+  private CloudSdkUpdateCheck getUpdateCheck() {
+    return CloudSdkUpdateCheck.forProject(getProject(), updateCheckHours);
+  }
+
   /** Task entrypoint : Download/update Cloud SDK. */
   @TaskAction
   public void downloadCloudSdkAction()
@@ -53,26 +168,108 @@ public class DownloadCloudSdkTask extends DefaultTask {
       throw new GradleException("Cloud SDK home path must not be configured to run this task.");
     }
 
-    ProgressListener progressListener = new NoOpProgressListener();
-    ConsoleListener consoleListener = new DownloadCloudSdkTaskConsoleListener(getProject());
+    DownloadCloudSdkProgressListener progressListener =
+        new DownloadCloudSdkProgressListener(
+            ((ProjectInternal) getProject()).getServices().get(ProgressLoggerFactory.class));
+    boolean success = false;
 
-    // Install sdk if not installed
-    if (!managedCloudSdk.isInstalled()) {
-      SdkInstaller installer = managedCloudSdk.newInstaller();
-      installer.install(progressListener, consoleListener);
-    }
+    // Concurrent builds on this machine install once, the others wait and reuse the installation
+    try (ManagedCloudSdkLock lock =
+        ManagedCloudSdkLock.acquire(
+            ManagedCloudSdkLock.lockFile(managedCloudSdk.getSdkHome()), getLogger())) {
+      ConsoleListener consoleListener = new DownloadCloudSdkTaskConsoleListener(getProject());
 
-    // Install app engine component
-    if (!managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)) {
-      SdkComponentInstaller componentInstaller = managedCloudSdk.newComponentInstaller();
-      componentInstaller.installComponent(
-          SdkComponent.APP_ENGINE_JAVA, progressListener, consoleListener);
-    }
+      // Install sdk if not installed
+      CloudSdkMirror mirror = cloudSdkMirror == null ? null : new CloudSdkMirror(cloudSdkMirror);
+      if (!managedCloudSdk.isInstalled()) {
+        if (mirror != null) {
+          mirror.install(
+              managedCloudSdk.getSdkHome(),
+              cloudSdkVersion,
+              progressListener,
+              consoleListener,
+              ProcessTelemetry.forProject(getProject()).newRecording(this, "install script"));
+        } else {
+          SdkInstaller installer = managedCloudSdk.newInstaller();
+          installer.install(progressListener, consoleListener);
+        }
+      }
+      if (mirror != null) {
+        mirror.configureComponents(managedCloudSdk.getSdkHome());
+      }
+
+      // Install missing components, several at once in a single gcloud invocation
+      List<SdkComponent> missingComponents = new ArrayList<>();
+      for (SdkComponent component : components) {
+        if (!managedCloudSdk.hasComponent(component)) {
+          missingComponents.add(component);
+        }
+      }
+      if (missingComponents.size() == 1) {
+        SdkComponentInstaller componentInstaller = managedCloudSdk.newComponentInstaller();
+        componentInstaller.installComponent(
+            missingComponents.get(0), progressListener, consoleListener);
+      } else if (missingComponents.size() > 1) {
+        installComponents(missingComponents, progressListener, consoleListener);
+      }
 
-    // If version is set to LATEST, update Cloud SDK
-    if (!managedCloudSdk.isUpToDate()) {
-      SdkUpdater updater = managedCloudSdk.newUpdater();
-      updater.update(progressListener, consoleListener);
+      // If version is set to LATEST, update Cloud SDK, at most once per update check interval
+      if (isPinnedVersion() || isUpdateCheckDue()) {
+        if (!managedCloudSdk.isUpToDate()) {
+          SdkUpdater updater = managedCloudSdk.newUpdater();
+          updater.update(progressListener, consoleListener);
+        }
+        if (!isPinnedVersion()) {
+          getUpdateCheck().recordCheck(managedCloudSdk.getSdkHome());
+        }
+      }
+
+      writeInstallMarker();
+      success = true;
+    } finally {
+      progressListener.writeReport(getProject(), success);
     }
   }
+
+  private void installComponents(
+      List<SdkComponent> missingComponents,
+      ProgressListener progressListener,
+      ConsoleListener consoleListener)
+      throws IOException, InterruptedException {
+    List<String> componentIds =
+        missingComponents.stream().map(SdkComponent::toString).collect(Collectors.toList());
+    List<String> command = new ArrayList<>();
+    command.add(managedCloudSdk.getGcloudPath().toString());
+    command.add("components");
+    command.add("install");
+    command.addAll(componentIds);
+    command.add("--quiet");
+
+    progressListener.start(
+        "Installing " + String.join(", ", componentIds), ProgressListener.UNKNOWN);
+    CloudSdkCommand.run(
+        command,
+        managedCloudSdk.getSdkHome(),
+        consoleListener,
+        "Installing Cloud SDK components " + componentIds,
+        ProcessTelemetry.forProject(getProject()).newRecording(this, "components install"));
+    progressListener.done();
+  }
+
+  private void writeInstallMarker() throws IOException {
+    Path sdkHome = managedCloudSdk.getSdkHome();
+    Path versionFile = sdkHome.resolve("VERSION");
+    String installedVersion =
+        Files.isRegularFile(versionFile)
+            ? new String(Files.readAllBytes(versionFile), StandardCharsets.UTF_8).trim()
+            : String.valueOf(cloudSdkVersion);
+
+    // no timestamp, builds sharing the installation write the same marker
+    List<String> marker =
+        ImmutableList.of(
+            "version=" + installedVersion, "components=" + Joiner.on(',').join(getComponents()));
+    Path markerFile = getInstallMarker().toPath();
+    Files.createDirectories(markerFile.getParent());
+    Files.write(markerFile, marker, StandardCharsets.UTF_8);
+  }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Cache of the answers to read-only gcloud queries, like the project in gcloud config. An answer is
+ * reused until it is older than the cache's time to live, or gcloud's configuration changes (the
+ * active configuration, any configuration file, or the CLOUDSDK_ environment variables that
+ * override them). Stored in the gradle user home, shared by all builds on the machine and kept in
+ * memory by the daemon.
+ */
+public class GcloudQueryCache {
+
+  private static final String CACHE_FILE = "caches/appengine-gradle-plugin/gcloud-queries.json";
+  private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+  private static final String[] CONFIG_ENVIRONMENT = {
+    "CLOUDSDK_CONFIG",
+    "CLOUDSDK_ACTIVE_CONFIG_NAME",
+    "CLOUDSDK_CORE_PROJECT",
+    "CLOUDSDK_CORE_ACCOUNT"
+  };
+
+  // one store per cache file, shared by all projects and builds of a daemon
+  private static final Map<Path, Map<String, Entry>> stores = new ConcurrentHashMap<>();
+
+  private final Path cacheFile;
+  private final Path sdkHome;
+  private final Path configDirectory;
+  private final long ttlMillis;
+  private final Function<String, String> environment;
+  private final Logger logger;
+
+  @VisibleForTesting
+  GcloudQueryCache(
+      Path cacheFile,
+      Path sdkHome,
+      Path configDirectory,
+      long ttlMillis,
+      Function<String, String> environment,
+      Logger logger) {
+    this.cacheFile = cacheFile;
+    this.sdkHome = sdkHome;
+    this.configDirectory = configDirectory;
+    this.ttlMillis = ttlMillis;
+    this.environment = environment;
+    this.logger = logger;
+  }
+
+  /**
+   * The query cache in the gradle user home, for gcloud of the sdk at sdkHome.
+   *
+   * @param ttlHours hours an answer stays valid for, 0 to always ask gcloud
+   */
+  public static GcloudQueryCache forProject(Project project, Path sdkHome, int ttlHours) {
+    Path cacheFile =
+        project.getGradle().getGradleUserHomeDir().toPath().resolve(CACHE_FILE).toAbsolutePath();
+    return new GcloudQueryCache(
+        cacheFile,
+        sdkHome,
+        findConfigDirectory(System::getenv),
+        TimeUnit.HOURS.toMillis(ttlHours),
+        System::getenv,
+        project.getLogger());
+  }
+
+  /**
+   * The answer to a read-only query, from the cache if it is still valid, otherwise from running
+   * it. Empty answers are not cached, and failing to store an answer doesn't fail the query.
+   *
+   * @param name identifies the query, like "config project"
+   * @param query asks gcloud
+   */
+  @Nullable
+  public String get(String name, Callable<String> query) throws Exception {
+    if (ttlMillis <= 0) {
+      return query.call();
+    }
+    Map<String, Entry> entries = stores.computeIfAbsent(cacheFile, GcloudQueryCache::load);
+    String key = sdkHome.toAbsolutePath().normalize() + File.pathSeparator + name;
+    String configStamp = configStamp();
+    Entry entry = entries.get(key);
+    if (entry != null
+        && entry.configStamp.equals(configStamp)
+        && System.currentTimeMillis() - entry.storedMillis < ttlMillis) {
+      return entry.value;
+    }
+
+    String value = query.call();
+    if (Strings.isNullOrEmpty(value)) {
+      entries.remove(key);
+    } else {
+      entries.put(key, new Entry(value, configStamp, System.currentTimeMillis()));
+    }
+    save(entries, key);
+    return value;
+  }
+
+  // gcloud keeps its configuration in CLOUDSDK_CONFIG, or a per user directory
+  @VisibleForTesting
+  static Path findConfigDirectory(Function<String, String> environment) {
+    String configured = environment.apply("CLOUDSDK_CONFIG");
+    if (!Strings.isNullOrEmpty(configured)) {
+      return Paths.get(configured);
+    }
+    String appData = environment.apply("APPDATA");
+    if (System.getProperty("os.name").toLowerCase(Locale.US).contains("windows")
+        && !Strings.isNullOrEmpty(appData)) {
+      return Paths.get(appData, "gcloud");
+    }
+    return Paths.get(System.getProperty("user.home"), ".config", "gcloud");
+  }
+
+  /** What a change of gcloud's configuration changes: file times and overriding variables. */
+  @VisibleForTesting
+  String configStamp() {
+    StringBuilder stamp = new StringBuilder();
+    stamp.append(configDirectory.resolve("active_config").toFile().lastModified());
+    File[] configurations = configDirectory.resolve("configurations").toFile().listFiles();
+    if (configurations != null) {
+      Arrays.sort(configurations);
+      for (File configuration : configurations) {
+        stamp
+            .append(';')
+            .append(configuration.getName())
+            .append('=')
+            .append(configuration.lastModified());
+      }
+    }
+    for (String variable : CONFIG_ENVIRONMENT) {
+      stamp.append(';').append(variable).append('=').append(environment.apply(variable));
+    }
+    return stamp.toString();
+  }
+
+  private static Map<String, Entry> load(Path cacheFile) {
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+    if (Files.isRegularFile(cacheFile)) {
+      try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+        Map<String, Entry> loaded = new Gson().fromJson(reader, ENTRIES_TYPE);
+        if (loaded != null) {
+          entries.putAll(loaded);
+        }
+      } catch (IOException | JsonParseException ex) {
+        // a broken cache is just an empty cache
+      }
+    }
+    return entries;
+  }
+
+  private void save(Map<String, Entry> entries, String updatedKey) {
+    synchronized (entries) {
+      // other daemons share the file, keep the answers they stored since it was loaded
+      load(cacheFile)
+          .forEach(
+              (key, stored) -> {
+                if (!key.equals(updatedKey)) {
+                  entries.merge(key, stored, GcloudQueryCache::newer);
+                }
+              });
+      try {
+        write(entries);
+      } catch (IOException ex) {
+        logger.warn("Failed to write " + cacheFile, ex);
+      }
+    }
+  }
+
+  private void write(Map<String, Entry> entries) throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    Path temp = Files.createTempFile(cacheFile.getParent(), "gcloud-queries", ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        new Gson().toJson(entries, ENTRIES_TYPE, writer);
+      }
+      Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static Entry newer(Entry first, Entry second) {
+    return second.storedMillis > first.storedMillis ? second : first;
+  }
+
+  private static class Entry {
+    private final String value;
+    private final String configStamp;
+    private final long storedMillis;
+
+    Entry(String value, String configStamp, long storedMillis) {
+      this.value = value;
+      this.configStamp = configStamp;
+      this.storedMillis = storedMillis;
+    }
+  }
+}
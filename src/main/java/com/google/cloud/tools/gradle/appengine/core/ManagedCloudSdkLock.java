@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Exclusive lock on a managed Cloud SDK installation, so that concurrent builds (in this JVM or in
+ * other processes on the same machine) install the SDK once and then reuse it.
+ */
+public class ManagedCloudSdkLock implements AutoCloseable {
+
+  // file locks are held per JVM, so threads of this JVM are serialized separately
+  private static final ConcurrentMap<Path, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+  private final ReentrantLock jvmLock;
+  private final FileChannel channel;
+  private final FileLock fileLock;
+
+  private ManagedCloudSdkLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock) {
+    this.jvmLock = jvmLock;
+    this.channel = channel;
+    this.fileLock = fileLock;
+  }
+
+  /** The lock file of a managed Cloud SDK, next to its versioned installation directory. */
+  public static Path lockFile(Path sdkHome) {
+    Path versionDirectory = sdkHome.toAbsolutePath().getParent();
+    return versionDirectory.resolveSibling(versionDirectory.getFileName() + ".lock");
+  }
+
+  /** Block until the lock is acquired, logging how long that took if another build held it. */
+  public static ManagedCloudSdkLock acquire(Path lockFile, Logger logger) throws IOException {
+    long start = System.nanoTime();
+    boolean waited = false;
+
+    ReentrantLock jvmLock =
+        JVM_LOCKS.computeIfAbsent(
+            lockFile.toAbsolutePath().normalize(), path -> new ReentrantLock());
+    if (!jvmLock.tryLock()) {
+      logger.lifecycle("Waiting for another build in this process to install the Cloud SDK");
+      waited = true;
+      jvmLock.lock();
+    }
+
+    FileChannel channel = null;
+    try {
+      Files.createDirectories(lockFile.getParent());
+      channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock fileLock = channel.tryLock();
+      if (fileLock == null) {
+        logger.lifecycle("Waiting for another process to install the Cloud SDK (" + lockFile + ")");
+        waited = true;
+        fileLock = channel.lock();
+      }
+
+      long waitMillis = (System.nanoTime() - start) / 1_000_000;
+      if (waited) {
+        logger.lifecycle("Acquired the Cloud SDK install lock after " + waitMillis + " ms");
+      } else {
+        logger.info("Acquired the Cloud SDK install lock " + lockFile);
+      }
+      return new ManagedCloudSdkLock(jvmLock, channel, fileLock);
+    } catch (IOException | RuntimeException ex) {
+      if (channel != null) {
+        channel.close();
+      }
+      jvmLock.unlock();
+      throw ex;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      fileLock.release();
+      channel.close();
+    } finally {
+      jvmLock.unlock();
+    }
+  }
+}
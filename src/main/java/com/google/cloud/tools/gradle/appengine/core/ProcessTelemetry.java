@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Records every process the plugin runs during a build (which task ran it, what kind of command it
+ * was, how long it ran, its exit code and how much output it wrote) and writes them to
+ * build/reports/appengine/processes.json of the root project when the build finishes.
+ */
+public class ProcessTelemetry {
+
+  private static final String REPORT_PATH = "reports/appengine/processes.json";
+
+  // one instance per build
+  private static final Map<Gradle, ProcessTelemetry> builds =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final LongSupplier clock;
+  private final List<Recording> recordings = Collections.synchronizedList(new ArrayList<>());
+
+  @VisibleForTesting
+  ProcessTelemetry(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /** The telemetry of the build project is part of, reported when the build finishes. */
+  public static ProcessTelemetry forProject(Project project) {
+    Gradle gradle = project.getGradle();
+    synchronized (builds) {
+      ProcessTelemetry telemetry = builds.get(gradle);
+      if (telemetry == null) {
+        telemetry = new ProcessTelemetry(System::currentTimeMillis);
+        builds.put(gradle, telemetry);
+        ProcessTelemetry finished = telemetry;
+        gradle.buildFinished(
+            result -> {
+              builds.remove(gradle);
+              finished.report(gradle.getRootProject());
+            });
+      }
+      return telemetry;
+    }
+  }
+
+  /**
+   * A recording for a process a task is about to run. It becomes part of the report once the
+   * process is started.
+   *
+   * @param category the kind of command, like "deploy" or "appcfg stage"
+   */
+  public Recording newRecording(Task task, String category) {
+    return new Recording(task.getPath(), category);
+  }
+
+  /** The started processes, in the order they started. */
+  public List<Recording> getRecordings() {
+    synchronized (recordings) {
+      return new ArrayList<>(recordings);
+    }
+  }
+
+  @VisibleForTesting
+  void report(Project rootProject) {
+    List<Recording> started = getRecordings();
+    if (started.isEmpty()) {
+      return;
+    }
+    File reportFile = new File(rootProject.getBuildDir(), REPORT_PATH);
+    try {
+      writeReport(started, reportFile.toPath());
+    } catch (IOException ex) {
+      rootProject.getLogger().warn("Failed to write " + reportFile, ex);
+    }
+    logSummary(started, reportFile, rootProject.getLogger());
+  }
+
+  @VisibleForTesting
+  void writeReport(List<Recording> started, Path reportFile) throws IOException {
+    List<Map<String, Object>> processes = new ArrayList<>();
+    for (Recording recording : started) {
+      processes.add(recording.toReport());
+    }
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("categories", summarize(started));
+    report.put("processes", processes);
+
+    Files.createDirectories(reportFile.getParent());
+    try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+      new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+    }
+  }
+
+  private void logSummary(List<Recording> started, File reportFile, Logger logger) {
+    long wallMillis = 0;
+    List<String> categories = new ArrayList<>();
+    for (Map.Entry<String, Map<String, Object>> category : summarize(started).entrySet()) {
+      long categoryMillis = (Long) category.getValue().get("wallMillis");
+      wallMillis += categoryMillis;
+      categories.add(
+          category.getKey()
+              + " "
+              + category.getValue().get("count")
+              + "x "
+              + formatSeconds(categoryMillis));
+    }
+    logger.lifecycle(
+        "App Engine processes: "
+            + started.size()
+            + " in "
+            + formatSeconds(wallMillis)
+            + " ("
+            + String.join(", ", categories)
+            + "), see "
+            + reportFile);
+  }
+
+  private static Map<String, Map<String, Object>> summarize(List<Recording> started) {
+    Map<String, Map<String, Object>> categories = new LinkedHashMap<>();
+    for (Recording recording : started) {
+      Map<String, Object> category =
+          categories.computeIfAbsent(
+              recording.category,
+              key -> {
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("count", 0);
+                summary.put("failures", 0);
+                summary.put("wallMillis", 0L);
+                return summary;
+              });
+      category.put("count", (Integer) category.get("count") + 1);
+      if (recording.isFailed()) {
+        category.put("failures", (Integer) category.get("failures") + 1);
+      }
+      category.put("wallMillis", (Long) category.get("wallMillis") + recording.getWallMillis());
+    }
+    return categories;
+  }
+
+  private static String formatSeconds(long millis) {
+    return String.format(Locale.US, "%.1fs", millis / 1000.0);
+  }
+
+  /** One process run by a task. */
+  public class Recording {
+    private final String taskPath;
+    private final String category;
+    private final AtomicLong stdOutBytes = new AtomicLong();
+    private final AtomicLong stdErrBytes = new AtomicLong();
+    private volatile long startMillis;
+    private volatile long endMillis;
+    @Nullable private volatile Integer exitCode;
+
+    private Recording(String taskPath, String category) {
+      this.taskPath = taskPath;
+      this.category = category;
+    }
+
+    /** The process was started. */
+    public void started() {
+      startMillis = clock.getAsLong();
+      recordings.add(this);
+    }
+
+    /** Count a line the process wrote to stdout. */
+    public void stdOut(String line) {
+      stdOutBytes.addAndGet(lineBytes(line));
+    }
+
+    /** Count a line the process wrote to stderr. */
+    public void stdErr(String line) {
+      stdErrBytes.addAndGet(lineBytes(line));
+    }
+
+    /** The process exited. */
+    public void finished(int exitCode) {
+      endMillis = clock.getAsLong();
+      this.exitCode = exitCode;
+    }
+
+    public String getTaskPath() {
+      return taskPath;
+    }
+
+    public String getCategory() {
+      return category;
+    }
+
+    /** How long the process ran, or has been running if it is still running. */
+    public long getWallMillis() {
+      return (exitCode == null ? clock.getAsLong() : endMillis) - startMillis;
+    }
+
+    /** The exit code, null while the process is running. */
+    @Nullable
+    public Integer getExitCode() {
+      return exitCode;
+    }
+
+    boolean isFailed() {
+      return exitCode != null && exitCode != 0;
+    }
+
+    private Map<String, Object> toReport() {
+      Map<String, Object> report = new LinkedHashMap<>();
+      report.put("task", taskPath);
+      report.put("category", category);
+      report.put("wallMillis", getWallMillis());
+      // a dev server started in the background is usually still running
+      report.put("running", exitCode == null);
+      if (exitCode != null) {
+        report.put("exitCode", exitCode);
+      }
+      report.put("stdoutBytes", stdOutBytes.get());
+      report.put("stderrBytes", stdErrBytes.get());
+      return report;
+    }
+
+    private long lineBytes(String line) {
+      // listeners get lines without their line separator
+      return line.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+  }
+}
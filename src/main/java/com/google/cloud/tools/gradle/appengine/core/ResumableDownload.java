@@ -0,0 +1,335 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nullable;
+import org.gradle.api.GradleException;
+
+/**
+ * Downloads a file over http(s) into destination.part, and resumes from what the .part file already
+ * holds with a range request when the connection drops, in this build or in a later one. The ETag
+ * or Last-Modified of the file is kept in destination.part.validator and sent as If-Range, so a
+ * file that changed on the server is downloaded again rather than spliced onto the old one.
+ */
+public class ResumableDownload {
+
+  private static final int DEFAULT_MAX_ATTEMPTS = 5;
+  private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+  private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+  private final URI source;
+  private final Path destination;
+  private final ProgressListener progressListener;
+  private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+  private boolean canResume;
+
+  /** Download source to destination, reporting the bytes received to progressListener. */
+  public ResumableDownload(URI source, Path destination, ProgressListener progressListener) {
+    this.source = source;
+    this.destination = destination;
+    this.progressListener = progressListener;
+  }
+
+  @VisibleForTesting
+  void setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+  }
+
+  /** The file partial downloads are kept in. */
+  public Path getPartFile() {
+    return destination.resolveSibling(destination.getFileName() + ".part");
+  }
+
+  @VisibleForTesting
+  Path getValidatorFile() {
+    return destination.resolveSibling(destination.getFileName() + ".part.validator");
+  }
+
+  /**
+   * Download the file. A download that still fails after a few resumed attempts keeps its .part
+   * file, for the next build to resume from.
+   */
+  public Path download() throws IOException {
+    try (InputStream in = open()) {
+      ByteStreams.exhaust(in);
+    }
+    Files.move(getPartFile(), destination, StandardCopyOption.REPLACE_EXISTING);
+    Files.deleteIfExists(getValidatorFile());
+    return destination;
+  }
+
+  /**
+   * Stream the file as it is downloaded, for a reader that consumes it in the same pass. What the
+   * .part file of an earlier build already holds is read first, and dropped connections are resumed
+   * like in {@link #download()}. Everything received is appended to the .part file, so a download
+   * that fails is kept for the next build to resume from ({@link #canResume()}).
+   */
+  public InputStream open() throws IOException {
+    Files.createDirectories(getPartFile().getParent());
+    DownloadStream stream = new DownloadStream();
+    stream.connect();
+    return stream;
+  }
+
+  /** Whether a failed download left a .part file that a later build can resume from. */
+  public boolean canResume() {
+    return canResume;
+  }
+
+  /** Delete the .part file, once its content was consumed or turned out to be corrupt. */
+  public void deletePartFile() throws IOException {
+    Files.deleteIfExists(getPartFile());
+    Files.deleteIfExists(getValidatorFile());
+  }
+
+  // a strong ETag, or else the Last-Modified date, the two validators If-Range accepts
+  private static void saveValidator(HttpURLConnection connection, Path validatorFile)
+      throws IOException {
+    String validator = connection.getHeaderField("ETag");
+    if (validator == null || validator.startsWith("W/")) {
+      validator = connection.getHeaderField("Last-Modified");
+    }
+    if (validator == null) {
+      Files.deleteIfExists(validatorFile);
+    } else {
+      Files.write(validatorFile, validator.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  // the length of the file in a 416 response's Content-Range: "bytes */length", or -1
+  private static long completeLength(HttpURLConnection connection) {
+    String contentRange = connection.getHeaderField("Content-Range");
+    if (contentRange == null || !contentRange.startsWith("bytes */")) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentRange.substring("bytes */".length()).trim());
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * The content of the file: the bytes already in the .part file, then the bytes received, which
+   * are appended to it. A response that starts over at byte 0 skips what the reader already got.
+   */
+  private class DownloadStream extends InputStream {
+    @Nullable private InputStream replay;
+    @Nullable private InputStream network;
+    @Nullable private OutputStream part;
+    @Nullable private HttpURLConnection connection;
+    private long position;
+    private long written;
+    private long skip;
+    private long total;
+    private int attempt;
+    private boolean started;
+
+    // connect at the end of the .part file, retrying until the attempts are used up
+    private void connect() throws IOException {
+      while (true) {
+        attempt++;
+        try {
+          if (tryConnect()) {
+            return;
+          }
+        } catch (IOException ex) {
+          failed(ex);
+        }
+      }
+    }
+
+    private boolean tryConnect() throws IOException {
+      connection = (HttpURLConnection) source.toURL().openConnection();
+      connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+      connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+      Path partFile = getPartFile();
+      Path validatorFile = getValidatorFile();
+      // a .part file of an unknown version of the file is not resumed
+      String validator =
+          Files.exists(validatorFile)
+              ? new String(Files.readAllBytes(validatorFile), StandardCharsets.UTF_8)
+              : null;
+      long offset = validator != null && Files.exists(partFile) ? Files.size(partFile) : 0;
+      if (offset > 0) {
+        connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        connection.setRequestProperty("If-Range", validator);
+      }
+      int status = connection.getResponseCode();
+      if (status == 416 && offset > 0) {
+        boolean complete = completeLength(connection) == offset;
+        disconnect();
+        if (!complete) {
+          // the .part file is longer than the file, start over
+          Files.delete(validatorFile);
+          return false;
+        }
+        // nothing left to send, the .part file is complete
+        written = offset;
+        startReading(partFile, offset);
+        return true;
+      }
+      boolean resumed = status == HttpURLConnection.HTTP_PARTIAL;
+      if (!resumed && status != HttpURLConnection.HTTP_OK) {
+        disconnect();
+        // not a dropped connection, retrying won't help
+        throw new GradleException("Downloading " + source + " failed with HTTP status " + status);
+      }
+      if (!resumed) {
+        // the server ignored the range or the file changed, start over
+        offset = 0;
+        saveValidator(connection, validatorFile);
+      }
+      long contentLength = connection.getContentLengthLong();
+      total = contentLength < 0 ? ProgressListener.UNKNOWN : offset + contentLength;
+      if (!started) {
+        progressListener.start("Downloading " + source, total);
+        progressListener.update(offset);
+        started = true;
+      } else {
+        progressListener.update("Resuming the download of " + source + " at " + offset);
+      }
+      part =
+          Files.newOutputStream(
+              partFile,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              resumed ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+      written = offset;
+      startReading(partFile, offset);
+      network = connection.getInputStream();
+      return true;
+    }
+
+    // the reader gets the .part file up to offset first, or skips what it already got beyond it
+    private void startReading(Path partFile, long offset) throws IOException {
+      if (position < offset) {
+        replay = Files.newInputStream(partFile);
+        ByteStreams.skipFully(replay, position);
+        replay = ByteStreams.limit(replay, offset - position);
+      }
+      skip = Math.max(0, position - offset);
+    }
+
+    private void failed(IOException ex) throws IOException {
+      disconnect();
+      if (attempt >= maxAttempts) {
+        canResume = true;
+        throw new IOException(
+            "Downloading " + source + " failed after " + attempt + " attempts", ex);
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (true) {
+        if (replay != null) {
+          int read = replay.read(buffer, offset, length);
+          if (read != -1) {
+            position += read;
+            return read;
+          }
+          replay.close();
+          replay = null;
+        }
+        if (network == null) {
+          return -1;
+        }
+        int read;
+        try {
+          read = network.read(buffer, offset, length);
+          if (read == -1 && total >= 0 && written < total) {
+            throw new IOException("Connection closed after " + written + " of " + total + " bytes");
+          }
+        } catch (IOException ex) {
+          failed(ex);
+          connect();
+          continue;
+        }
+        if (read == -1) {
+          disconnect();
+          progressListener.done();
+          return -1;
+        }
+        part.write(buffer, offset, read);
+        written += read;
+        progressListener.update(read);
+        int skipped = (int) Math.min(skip, read);
+        if (skipped == read) {
+          skip -= skipped;
+          continue;
+        }
+        if (skipped > 0) {
+          System.arraycopy(buffer, offset + skipped, buffer, offset, read - skipped);
+          skip = 0;
+        }
+        position += read - skipped;
+        return read - skipped;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (replay != null) {
+        replay.close();
+        replay = null;
+      }
+      disconnect();
+    }
+
+    private void disconnect() throws IOException {
+      try {
+        if (network != null) {
+          network.close();
+        }
+        if (part != null) {
+          part.close();
+        }
+      } finally {
+        network = null;
+        part = null;
+        if (connection != null) {
+          connection.disconnect();
+          connection = null;
+        }
+      }
+    }
+  }
+}
@@ -18,6 +18,9 @@
 package com.google.cloud.tools.gradle.appengine.core;
 
 import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import org.gradle.api.Project;
 
 /** Extension element to define the location of cloud sdk tooling. */
@@ -28,6 +31,10 @@ public class ToolsExtension {
   private File cloudSdkHome;
   private String cloudSdkVersion;
   private File cloudSdkServiceAccountFile;
+  private URI cloudSdkMirror;
+  private int cloudSdkUpdateCheckHours = 24;
+  private int gcloudQueryCacheHours = 24;
+  private List<String> components = new ArrayList<>();
 
   public ToolsExtension(Project project) {
     this.project = project;
@@ -56,4 +63,47 @@ public class ToolsExtension {
   public void setServiceAccountKeyFile(Object cloudSdkServiceAccountFile) {
     this.cloudSdkServiceAccountFile = project.file(cloudSdkServiceAccountFile);
   }
+
+  public URI getCloudSdkMirror() {
+    return cloudSdkMirror;
+  }
+
+  /**
+   * Sets a Cloud SDK archive, or a directory of archives, to install from. Either a local file (or
+   * file: url), or an http(s) url; a url ending with / is a directory.
+   */
+  public void setCloudSdkMirror(Object cloudSdkMirror) {
+    String mirror = cloudSdkMirror.toString();
+    if (mirror.startsWith("http://") || mirror.startsWith("https://")) {
+      this.cloudSdkMirror = URI.create(mirror);
+    } else {
+      this.cloudSdkMirror = project.file(cloudSdkMirror).toURI();
+    }
+  }
+
+  public int getCloudSdkUpdateCheckHours() {
+    return cloudSdkUpdateCheckHours;
+  }
+
+  public void setCloudSdkUpdateCheckHours(int cloudSdkUpdateCheckHours) {
+    this.cloudSdkUpdateCheckHours = cloudSdkUpdateCheckHours;
+  }
+
+  public int getGcloudQueryCacheHours() {
+    return gcloudQueryCacheHours;
+  }
+
+  /** Sets how long answers to read-only gcloud queries (like gcloud config) are reused. */
+  public void setGcloudQueryCacheHours(int gcloudQueryCacheHours) {
+    this.gcloudQueryCacheHours = gcloudQueryCacheHours;
+  }
+
+  public List<String> getComponents() {
+    return components;
+  }
+
+  /** Sets extra Cloud SDK components (by gcloud component id) to install with app-engine-java. */
+  public void setComponents(List<String> components) {
+    this.components = new ArrayList<>(components);
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
+import org.gradle.api.tasks.TaskAction;
+
+/** Validates the configuration yamls in the appengine directory before they are deployed. */
+@CacheableTask
+public class ValidateConfigTask extends DefaultTask {
+
+  private DeployExtension deployConfig;
+
+  public void setDeployConfig(DeployExtension deployConfig) {
+    this.deployConfig = deployConfig;
+  }
+
+  /** The configuration yamls present in the appengine directory. */
+  @InputFiles
+  @SkipWhenEmpty
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public FileCollection getConfigYamls() {
+    return getProject().files((Callable<List<File>>) this::findConfigYamls);
+  }
+
+  @OutputFile
+  public File getValidatedMarker() {
+    return new File(getProject().getBuildDir(), "appengine/validated-configs.txt");
+  }
+
+  /** Task entrypoint : Validate the cron, dispatch, dos, index and queue configurations. */
+  @TaskAction
+  public void validateConfigAction() throws IOException {
+    List<String> problems = new ArrayList<>();
+    List<String> validated = new ArrayList<>();
+    for (File yaml : getConfigYamls()) {
+      problems.addAll(ConfigYamlValidator.validate(yaml));
+      validated.add(yaml.getName());
+    }
+    if (!problems.isEmpty()) {
+      throw new GradleException(
+          "Invalid App Engine configuration in "
+              + deployConfig.getAppEngineDirectory()
+              + ":\n  "
+              + String.join("\n  ", problems));
+    }
+
+    File marker = getValidatedMarker();
+    Files.createDirectories(marker.getParentFile().toPath());
+    Files.write(marker.toPath(), validated, StandardCharsets.UTF_8);
+  }
+
+  private List<File> findConfigYamls() {
+    List<File> configYamls = new ArrayList<>();
+    if (deployConfig == null || deployConfig.getAppEngineDirectory() == null) {
+      return configYamls;
+    }
+    for (String yamlName : ConfigYamlValidator.CONFIG_YAMLS) {
+      File yaml = new File(deployConfig.getAppEngineDirectory(), yamlName);
+      if (yaml.isFile()) {
+        configYamls.add(yaml);
+      }
+    }
+    return configYamls;
+  }
+}
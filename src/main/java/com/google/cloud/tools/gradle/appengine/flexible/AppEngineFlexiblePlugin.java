@@ -81,7 +81,7 @@ public class AppEngineFlexiblePlugin implements Plugin<Project> {
         project -> {
           // create the sdk builder factory after we know the location of the sdk
           try {
-            cloudSdkOperations = new CloudSdkOperations(tools.getCloudSdkHome(), null);
+            cloudSdkOperations = CloudSdkOperations.forSdk(tools.getCloudSdkHome(), null);
           } catch (CloudSdkNotFoundException ex) {
             // this should be caught in AppEngineCorePluginConfig before it can ever reach here.
             throw new GradleException("Could not find CloudSDK: ", ex);
@@ -109,7 +109,9 @@ public class AppEngineFlexiblePlugin implements Plugin<Project> {
           }
 
           FlexibleDeployTargetResolver resolver =
-              new FlexibleDeployTargetResolver(cloudSdkOperations.getGcloud());
+              new FlexibleDeployTargetResolver(
+                  cloudSdkOperations.getGcloud(),
+                  cloudSdkOperations.getQueryCache(project, tools.getGcloudQueryCacheHours()));
           deploy.setProjectId(resolver.getProject(deploy.getProjectId()));
           deploy.setVersion(resolver.getVersion(deploy.getVersion()));
 
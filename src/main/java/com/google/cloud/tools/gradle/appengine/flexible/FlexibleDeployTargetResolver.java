@@ -22,14 +22,17 @@ import static com.google.cloud.tools.gradle.appengine.core.ConfigReader.GCLOUD_C
 
 import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import com.google.cloud.tools.gradle.appengine.core.ConfigReader;
+import com.google.cloud.tools.gradle.appengine.core.GcloudQueryCache;
 import org.gradle.api.GradleException;
 
 public class FlexibleDeployTargetResolver {
 
   private final Gcloud gcloud;
+  private final GcloudQueryCache queryCache;
 
-  public FlexibleDeployTargetResolver(Gcloud gcloud) {
+  public FlexibleDeployTargetResolver(Gcloud gcloud, GcloudQueryCache queryCache) {
     this.gcloud = gcloud;
+    this.queryCache = queryCache;
   }
 
   /**
@@ -51,7 +54,7 @@ public class FlexibleDeployTargetResolver {
               + APPENGINE_CONFIG
               + " is not allowed for flexible environment projects");
     } else if (configString.equals(GCLOUD_CONFIG)) {
-      return ConfigReader.getProject(gcloud);
+      return ConfigReader.getProject(gcloud, queryCache);
     } else {
       return configString;
     }
@@ -47,7 +47,7 @@ public class GenRepoInfoFileTask extends DefaultTask {
   @TaskAction
   public void generateRepositoryInfoFile() throws AppEngineException {
     gcloud
-        .newGenRepoInfo(CloudSdkOperations.getDefaultHandler(getLogger()))
+        .newGenRepoInfo(CloudSdkOperations.getDefaultHandler(this, "gen-repo-info-file"))
         .generate(configuration);
   }
 }
@@ -65,7 +65,7 @@ public class SourceContextPlugin implements Plugin<Project> {
     project.afterEvaluate(
         project -> {
           try {
-            cloudSdkOperations = new CloudSdkOperations(tools.getCloudSdkHome(), null);
+            cloudSdkOperations = CloudSdkOperations.forSdk(tools.getCloudSdkHome(), null);
           } catch (CloudSdkNotFoundException ex) {
             // this should be caught in AppEngineCorePluginConfig before it can ever reach here.
             throw new GradleException("Could not find CloudSDK: ", ex);
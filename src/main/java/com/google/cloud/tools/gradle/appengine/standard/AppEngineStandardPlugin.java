@@ -27,6 +27,7 @@ import com.google.cloud.tools.gradle.appengine.core.ConfigReader;
 import com.google.cloud.tools.gradle.appengine.core.DeployAllTask;
 import com.google.cloud.tools.gradle.appengine.core.DeployExtension;
 import com.google.cloud.tools.gradle.appengine.core.DeployTask;
+import com.google.cloud.tools.gradle.appengine.core.GcloudQueryCache;
 import com.google.cloud.tools.gradle.appengine.core.ToolsExtension;
 import com.google.common.base.Strings;
 import java.io.File;
@@ -37,7 +38,10 @@ import org.gradle.api.Project;
 import org.gradle.api.plugins.BasePlugin;
 import org.gradle.api.plugins.WarPlugin;
 import org.gradle.api.plugins.WarPluginConvention;
+import org.gradle.api.publish.PublishingExtension;
+import org.gradle.api.tasks.Upload;
 import org.gradle.api.tasks.bundling.War;
+import org.gradle.api.tasks.bundling.ZipEntryCompression;
 
 /** Plugin definition for App Engine standard environments. */
 public class AppEngineStandardPlugin implements Plugin<Project> {
@@ -48,6 +52,7 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
   public static final String RUN_TASK_NAME = "appengineRun";
   public static final String START_TASK_NAME = "appengineStart";
   public static final String STOP_TASK_NAME = "appengineStop";
+  public static final String LOGS_TASK_NAME = AppEngineCorePluginConfiguration.LOGS_TASK_NAME;
 
   public static final String STAGED_APP_DIR_NAME = "staged-app";
   public static final String DEV_APP_SERVER_OUTPUT_DIR_NAME = "dev-appserver-out";
@@ -101,7 +106,7 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
         project -> {
           // create the sdk builder factory after we know the location of the sdk
           try {
-            cloudSdkOperations = new CloudSdkOperations(tools.getCloudSdkHome(), null);
+            cloudSdkOperations = CloudSdkOperations.forSdk(tools.getCloudSdkHome(), null);
           } catch (CloudSdkNotFoundException ex) {
             // this should be caught in AppEngineCorePluginConfig before it can ever reach here.
             throw new GradleException("Could not find CloudSDK: ", ex);
@@ -125,8 +130,11 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
                   .toFile();
 
           // configure the deploy extensions's project/version parameters
+          GcloudQueryCache queryCache =
+              cloudSdkOperations.getQueryCache(project, tools.getGcloudQueryCacheHours());
           StandardDeployTargetResolver resolver =
-              new StandardDeployTargetResolver(appengineWebXml, cloudSdkOperations.getGcloud());
+              new StandardDeployTargetResolver(
+                  appengineWebXml, cloudSdkOperations.getGcloud(), queryCache);
           deploy.setProjectId(resolver.getProject(deploy.getProjectId()));
           deploy.setVersion(resolver.getVersion(deploy.getVersion()));
 
@@ -152,7 +160,8 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
             runExtension.setProjectId(deploy.getProjectId());
           }
           if (runExtension.getProjectId().equals(GCLOUD_CONFIG)) {
-            runExtension.setProjectId(ConfigReader.getProject(cloudSdkOperations.getGcloud()));
+            runExtension.setProjectId(
+                ConfigReader.getProject(cloudSdkOperations.getGcloud(), queryCache));
           } else if (runExtension.getProjectId().equals(APPENGINE_CONFIG)) {
             runExtension.setProjectId(ConfigReader.getProject(appengineWebXml));
           }
@@ -178,6 +187,22 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
                               .getArchivePath()));
             });
     project.getTasks().getByName(BasePlugin.ASSEMBLE_TASK_NAME).dependsOn(EXPLODE_WAR_TASK_NAME);
+
+    // compressing the war is wasted work when it is only exploded again, but only skip it when
+    // nothing in this build could ship the war itself
+    project
+        .getGradle()
+        .getTaskGraph()
+        .whenReady(
+            graph -> {
+              War war = (War) project.getTasks().getByPath(WarPlugin.WAR_TASK_NAME);
+              if (Boolean.TRUE.equals(stageExtension.getUncompressedWar())
+                  && graph.hasTask(war)
+                  && project.getExtensions().findByType(PublishingExtension.class) == null
+                  && graph.getAllTasks().stream().noneMatch(task -> task instanceof Upload)) {
+                war.setEntryCompression(ZipEntryCompression.STORED);
+              }
+            });
   }
 
   private void createStageTask() {
@@ -236,6 +261,12 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
         .getTasks()
         .getByName(AppEngineCorePluginConfiguration.DEPLOY_ALL_TASK_NAME)
         .dependsOn(stageTask);
+
+    // Configuration files are generated from the xml configuration during staging.
+    project
+        .getTasks()
+        .getByName(AppEngineCorePluginConfiguration.VALIDATE_CONFIG_TASK_NAME)
+        .dependsOn(stageTask);
   }
 
   private void createRunTasks() {
@@ -292,5 +323,22 @@ public class AppEngineStandardPlugin implements Plugin<Project> {
                     stopTask.setLocalRun(cloudSdkOperations.getLocalRun());
                   });
             });
+
+    project
+        .getTasks()
+        .create(
+            LOGS_TASK_NAME,
+            DevAppServerLogsTask.class,
+            logsTask -> {
+              logsTask.setGroup(APP_ENGINE_STANDARD_TASK_GROUP);
+              logsTask.setDescription(
+                  "Print the log of an App Engine standard environment application started with "
+                      + START_TASK_NAME);
+
+              project.afterEvaluate(
+                  project ->
+                      logsTask.setDevAppServerLoggingDir(
+                          new File(project.getBuildDir(), DEV_APP_SERVER_OUTPUT_DIR_NAME)));
+            });
   }
 }
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.gradle.appengine.util.io.FileOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * The format of the structured Dev App Server log, and a sparse index of it. The log holds one json
+ * object per line, starting with its timestamp and level. The index, logFile.idx, holds one record
+ * per block of about 64 KB of log: where the block starts and ends, its first and last timestamp
+ * and the levels in it, so a query for recent entries or for errors only reads the blocks that can
+ * hold them. Rotated logs keep their index as logFile.N.idx.
+ */
+public class DevAppServerLogIndex implements FileOutputLineListener.LineIndex {
+
+  /** Levels of the structured log, from least to most severe. */
+  public enum Level {
+    DEBUG,
+    INFO,
+    WARNING,
+    ERROR;
+
+    /** The level of a java.util.logging or python level name, null if it's not one. */
+    @Nullable
+    public static Level parse(String name) {
+      switch (name.toUpperCase(Locale.US)) {
+        case "SEVERE":
+        case "CRITICAL":
+        case "FATAL":
+        case "ERROR":
+          return ERROR;
+        case "WARN":
+        case "WARNING":
+          return WARNING;
+        case "INFO":
+          return INFO;
+        case "CONFIG":
+        case "FINE":
+        case "FINER":
+        case "FINEST":
+        case "DEBUG":
+          return DEBUG;
+        default:
+          return null;
+      }
+    }
+
+    /** Index bits of this level and the more severe ones. */
+    int severeMask() {
+      return -1 << ordinal();
+    }
+  }
+
+  @VisibleForTesting static final int BLOCK_BYTES = 64 * 1024;
+  // start, end, first timestamp, last timestamp, levels
+  @VisibleForTesting static final int RECORD_BYTES = 8 + 8 + 8 + 8 + 4;
+  private static final Pattern ENTRY_PREFIX =
+      Pattern.compile("^\\{\"timestamp\":\"([^\"]+)\",\"level\":\"([A-Z]+)\"");
+  private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+  private final Path logFile;
+  private final LongSupplier clock;
+
+  // only touched by the log writer
+  @Nullable private DataOutputStream out;
+  private long blockStart = -1;
+  private long blockEnd;
+  private long blockFirstMillis;
+  private long blockLastMillis;
+  private int blockLevels;
+
+  /** Index logFile as it is written. */
+  public DevAppServerLogIndex(Path logFile) {
+    this(logFile, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  DevAppServerLogIndex(Path logFile, LongSupplier clock) {
+    this.logFile = logFile;
+    this.clock = clock;
+  }
+
+  /** A line of the structured log. */
+  static String formatEntry(
+      long timeMillis,
+      Level level,
+      @Nullable String logger,
+      @Nullable String requestId,
+      String message) {
+    // timestamp and level first, the index reads them without parsing the whole line
+    Map<String, String> entry = new LinkedHashMap<>();
+    entry.put("timestamp", Instant.ofEpochMilli(timeMillis).toString());
+    entry.put("level", level.name());
+    entry.put("logger", logger);
+    entry.put("requestId", requestId);
+    entry.put("message", message);
+    return GSON.toJson(entry);
+  }
+
+  @Override
+  public void lineWritten(String line, long offset, int length) throws IOException {
+    long timeMillis = blockLastMillis;
+    Level level = null;
+    Matcher prefix = ENTRY_PREFIX.matcher(line);
+    if (prefix.find()) {
+      try {
+        timeMillis = Instant.parse(prefix.group(1)).toEpochMilli();
+      } catch (DateTimeParseException ex) {
+        // keep the time of the line before
+      }
+      level = Level.parse(prefix.group(2));
+    }
+
+    if (blockStart >= 0 && offset - blockStart >= BLOCK_BYTES) {
+      writeBlock();
+    }
+    if (blockStart < 0) {
+      blockStart = offset;
+      blockFirstMillis = timeMillis;
+      blockLastMillis = timeMillis;
+      blockLevels = 0;
+    }
+    blockEnd = offset + length;
+    blockFirstMillis = Math.min(blockFirstMillis, timeMillis);
+    blockLastMillis = Math.max(blockLastMillis, timeMillis);
+    if (level != null) {
+      blockLevels |= 1 << level.ordinal();
+    }
+  }
+
+  @Override
+  public void fileFinished(boolean rotated) throws IOException {
+    if (blockStart >= 0) {
+      writeBlock();
+    }
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+    if (rotated) {
+      rotate();
+    }
+  }
+
+  @Override
+  public String droppedLinesNotice(long droppedLines) {
+    return formatEntry(
+        clock.getAsLong(),
+        Level.WARNING,
+        null,
+        null,
+        droppedLines + " lines dropped, the log writer fell behind");
+  }
+
+  private void writeBlock() throws IOException {
+    if (out == null) {
+      out =
+          new DataOutputStream(
+              new BufferedOutputStream(
+                  Files.newOutputStream(
+                      indexFile(logFile),
+                      StandardOpenOption.CREATE,
+                      StandardOpenOption.WRITE,
+                      StandardOpenOption.TRUNCATE_EXISTING)));
+    }
+    out.writeLong(blockStart);
+    out.writeLong(blockEnd);
+    out.writeLong(blockFirstMillis);
+    out.writeLong(blockLastMillis);
+    out.writeInt(blockLevels);
+    // a running server's log is read while it's written
+    out.flush();
+    blockStart = -1;
+  }
+
+  /** Follow the rotation of the log: logFile.N.idx to logFile.N+1.idx, logFile.idx to .1.idx. */
+  private void rotate() throws IOException {
+    int generations = 0;
+    while (Files.exists(generation(logFile, generations + 1))) {
+      generations++;
+    }
+    for (int i = generations - 1; i >= 1; i--) {
+      moveIndex(generation(logFile, i), generation(logFile, i + 1));
+    }
+    moveIndex(logFile, generation(logFile, 1));
+  }
+
+  // replaces the index of to, which may be stale, also when from has none
+  private static void moveIndex(Path from, Path to) throws IOException {
+    Files.deleteIfExists(indexFile(to));
+    if (Files.exists(indexFile(from))) {
+      Files.move(indexFile(from), indexFile(to));
+    }
+  }
+
+  @VisibleForTesting
+  static Path indexFile(Path log) {
+    return log.resolveSibling(log.getFileName() + ".idx");
+  }
+
+  private static Path generation(Path logFile, int index) {
+    return logFile.resolveSibling(logFile.getFileName() + "." + index);
+  }
+
+  /**
+   * Read the entries of logFile and its rotated logs, oldest first, at or after sinceMillis and at
+   * level or more severe. Only blocks whose index record can hold such entries are read, and
+   * whatever the index doesn't cover yet.
+   *
+   * @return the number of bytes read
+   */
+  public static long read(Path logFile, long sinceMillis, Level level, Consumer<Entry> entries)
+      throws IOException {
+    List<Path> logs = new ArrayList<>();
+    for (int i = 1; Files.exists(generation(logFile, i)); i++) {
+      logs.add(0, generation(logFile, i));
+    }
+    if (Files.exists(logFile)) {
+      logs.add(logFile);
+    }
+
+    long bytesRead = 0;
+    for (Path log : logs) {
+      for (long[] range : findRanges(log, sinceMillis, level)) {
+        bytesRead += readRange(log, range[0], range[1], sinceMillis, level, entries);
+      }
+    }
+    return bytesRead;
+  }
+
+  /** The ranges of log that may hold matching entries, as {start, end} pairs. */
+  @VisibleForTesting
+  static List<long[]> findRanges(Path log, long sinceMillis, Level level) throws IOException {
+    long size = Files.size(log);
+    List<long[]> ranges = new ArrayList<>();
+    long indexed = 0;
+    Path index = indexFile(log);
+    if (Files.exists(index)) {
+      long records = Files.size(index) / RECORD_BYTES;
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+        for (long i = 0; i < records; i++) {
+          long start = in.readLong();
+          long end = Math.min(in.readLong(), size);
+          in.readLong();
+          long lastMillis = in.readLong();
+          int levels = in.readInt();
+          if (start >= end) {
+            // a stale record of an earlier, longer log
+            continue;
+          }
+          indexed = Math.max(indexed, end);
+          if (lastMillis >= sinceMillis && (levels & level.severeMask()) != 0) {
+            addRange(ranges, start, end);
+          }
+        }
+      }
+    }
+    if (indexed < size) {
+      addRange(ranges, indexed, size);
+    }
+    return ranges;
+  }
+
+  private static void addRange(List<long[]> ranges, long start, long end) {
+    long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+    if (last != null && last[1] == start) {
+      last[1] = end;
+    } else {
+      ranges.add(new long[] {start, end});
+    }
+  }
+
+  private static long readRange(
+      Path log, long start, long end, long sinceMillis, Level level, Consumer<Entry> entries)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+      channel.position(start);
+      BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(
+                  ByteStreams.limit(Channels.newInputStream(channel), end - start),
+                  StandardCharsets.UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Entry entry = Entry.parse(line);
+        if (entry != null
+            && entry.getTimeMillis() >= sinceMillis
+            && entry.getLevel().compareTo(level) >= 0) {
+          entries.accept(entry);
+        }
+      }
+    }
+    return end - start;
+  }
+
+  /** An entry of the structured log. */
+  public static class Entry {
+    private String timestamp;
+    private String level;
+    @Nullable private String logger;
+    @Nullable private String requestId;
+    private String message;
+
+    @Nullable
+    static Entry parse(String line) {
+      try {
+        Entry entry = GSON.fromJson(line, Entry.class);
+        if (entry == null || entry.timestamp == null || Level.parse(entry.level) == null) {
+          return null;
+        }
+        // fail here rather than when filtering
+        Instant.parse(entry.timestamp);
+        return entry;
+      } catch (JsonParseException | DateTimeParseException ex) {
+        return null;
+      }
+    }
+
+    public long getTimeMillis() {
+      return Instant.parse(timestamp).toEpochMilli();
+    }
+
+    public Level getLevel() {
+      return Level.parse(level);
+    }
+
+    @Nullable
+    public String getLogger() {
+      return logger;
+    }
+
+    @Nullable
+    public String getRequestId() {
+      return requestId;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder line = new StringBuilder();
+      line.append(timestamp).append(' ').append(String.format(Locale.US, "%-7s", level));
+      if (logger != null) {
+        line.append(" [").append(logger).append(']');
+      }
+      if (requestId != null) {
+        line.append(" (").append(requestId).append(')');
+      }
+      return line.append(' ').append(message).toString();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.cloud.tools.gradle.appengine.standard.DevAppServerLogIndex.Level;
+import com.google.cloud.tools.gradle.appengine.util.io.FileOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Turns Dev App Server output into the structured log of {@link DevAppServerLogIndex}: one entry
+ * per line, with timestamp, level, logger, request id and message. Understands the two line records
+ * of java.util.logging and the log lines of the python dev server. Other lines, like an
+ * application's System.out, get the time they were read; continuation lines, like stack traces, get
+ * the timestamp, level and logger of the entry they follow.
+ */
+public class DevAppServerLogParser implements ProcessOutputLineListener, Closeable {
+
+  /** The structured log in the dev server's logging directory. */
+  public static final String LOG_FILE_NAME = "dev_appserver.ndjson";
+
+  // "Oct 19, 2026 1:23:45 PM com.example.Servlet doGet", followed by "INFO: message"
+  private static final Pattern JUL_HEADER =
+      Pattern.compile(
+          "^([A-Z][a-z]{2} \\d{1,2}, \\d{4} \\d{1,2}:\\d{2}:\\d{2} [AP]M) (\\S+)(?: \\S+)?$");
+  private static final Pattern JUL_MESSAGE =
+      Pattern.compile("^(SEVERE|WARNING|INFO|CONFIG|FINE|FINER|FINEST): (.*)$");
+  private static final DateTimeFormatter JUL_TIME =
+      DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.US);
+  // "INFO     2026-10-19 13:23:45,123 module.py:432] message"
+  private static final Pattern PYTHON_LINE =
+      Pattern.compile(
+          "^(DEBUG|INFO|WARNING|ERROR|CRITICAL)\\s+"
+              + "(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2},\\d{3}) (\\S+?)\\] ?(.*)$");
+  private static final DateTimeFormatter PYTHON_TIME =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS", Locale.US);
+  private static final Pattern CONTINUATION =
+      Pattern.compile("^(\\s+.*|Caused by: .*|[\\w.$]+(Exception|Error)(: .*)?)$");
+  private static final Pattern REQUEST_ID =
+      Pattern.compile("(?i)\\brequest[_ -]?id[=:]\\s*\"?([\\w-]{4,})");
+
+  private final ProcessOutputLineListener log;
+  @Nullable private final Closeable closeable;
+  private final ZoneId zone;
+  private final LongSupplier clock;
+
+  // the header of a java.util.logging record, waiting for its message line
+  @Nullable private String pendingHeader;
+  private long pendingMillis;
+  @Nullable private String pendingLogger;
+
+  // the entry continuation lines belong to
+  private boolean hasLast;
+  private long lastMillis;
+  private Level lastLevel;
+  @Nullable private String lastLogger;
+  @Nullable private String lastRequestId;
+
+  @VisibleForTesting
+  DevAppServerLogParser(
+      ProcessOutputLineListener log,
+      @Nullable Closeable closeable,
+      ZoneId zone,
+      LongSupplier clock) {
+    this.log = log;
+    this.closeable = closeable;
+    this.zone = zone;
+    this.clock = clock;
+  }
+
+  /** Write the structured log of the dev server to logFile, with its index. */
+  public static DevAppServerLogParser open(File logFile) throws IOException {
+    FileOutputLineListener writer =
+        new FileOutputLineListener(logFile, new DevAppServerLogIndex(logFile.toPath()));
+    return new DevAppServerLogParser(
+        writer, writer, ZoneId.systemDefault(), System::currentTimeMillis);
+  }
+
+  @Override
+  public synchronized void onOutputLine(String line) {
+    if (pendingHeader != null) {
+      Matcher message = JUL_MESSAGE.matcher(line);
+      if (message.matches()) {
+        write(pendingMillis, Level.parse(message.group(1)), pendingLogger, message.group(2));
+        pendingHeader = null;
+        return;
+      }
+      flushPendingHeader();
+    }
+
+    Matcher header = JUL_HEADER.matcher(line);
+    if (header.matches()) {
+      Long millis = parseTime(header.group(1), JUL_TIME);
+      if (millis != null) {
+        pendingHeader = line;
+        pendingMillis = millis;
+        pendingLogger = header.group(2);
+        return;
+      }
+    }
+
+    Matcher python = PYTHON_LINE.matcher(line);
+    if (python.matches()) {
+      Long millis = parseTime(python.group(2), PYTHON_TIME);
+      if (millis != null) {
+        write(millis, Level.parse(python.group(1)), python.group(3), python.group(4));
+        return;
+      }
+    }
+
+    if (hasLast && CONTINUATION.matcher(line).matches()) {
+      log.onOutputLine(
+          DevAppServerLogIndex.formatEntry(lastMillis, lastLevel, lastLogger, lastRequestId, line));
+      return;
+    }
+    write(clock.getAsLong(), Level.INFO, null, line);
+  }
+
+  /** Write out a record still waiting for its message, and close the log. */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (pendingHeader != null) {
+        flushPendingHeader();
+      }
+    }
+    if (closeable != null) {
+      closeable.close();
+    }
+  }
+
+  private void flushPendingHeader() {
+    String header = pendingHeader;
+    pendingHeader = null;
+    write(pendingMillis, Level.INFO, pendingLogger, header);
+  }
+
+  private void write(long millis, Level level, @Nullable String logger, String message) {
+    hasLast = true;
+    lastMillis = millis;
+    lastLevel = level;
+    lastLogger = logger;
+    Matcher requestId = REQUEST_ID.matcher(message);
+    lastRequestId = requestId.find() ? requestId.group(1) : null;
+    log.onOutputLine(
+        DevAppServerLogIndex.formatEntry(millis, level, logger, lastRequestId, message));
+  }
+
+  @Nullable
+  private Long parseTime(String time, DateTimeFormatter format) {
+    try {
+      return LocalDateTime.parse(time, format).atZone(zone).toInstant().toEpochMilli();
+    } catch (DateTimeParseException ex) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.gradle.appengine.standard.DevAppServerLogIndex.Level;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+
+/** Print the structured log of a dev server started with appengineStart. */
+public class DevAppServerLogsTask extends DefaultTask {
+
+  private static final Pattern DURATION = Pattern.compile("(\\d+)([smhd])");
+
+  private File devAppServerLoggingDir;
+  private long sinceMillis = Long.MIN_VALUE;
+  private Level level = Level.DEBUG;
+
+  public DevAppServerLogsTask() {
+    // the log changes while the server runs
+    this.getOutputs().upToDateWhen(task -> false);
+  }
+
+  public void setDevAppServerLoggingDir(File devAppServerLoggingDir) {
+    this.devAppServerLoggingDir = devAppServerLoggingDir;
+  }
+
+  /** Sets the time of the oldest entry to print. */
+  @Option(
+      option = "since",
+      description =
+          "Print entries since an ISO-8601 instant, or a duration ago like 30s, 15m or 2h")
+  public void setSince(String since) {
+    this.sinceMillis = parseSince(since, System.currentTimeMillis());
+  }
+
+  /** Sets the least severe level to print. */
+  @Option(
+      option = "level",
+      description = "Print entries of this level or more severe: DEBUG, INFO, WARNING or ERROR")
+  public void setLevel(String level) {
+    Level parsed = Level.parse(level);
+    if (parsed == null) {
+      throw new GradleException(
+          "Invalid level '" + level + "', expected DEBUG, INFO, WARNING or ERROR");
+    }
+    this.level = parsed;
+  }
+
+  @VisibleForTesting
+  static long parseSince(String since, long nowMillis) {
+    Matcher duration = DURATION.matcher(since);
+    if (duration.matches()) {
+      long amount = Long.parseLong(duration.group(1));
+      switch (duration.group(2)) {
+        case "s":
+          return nowMillis - TimeUnit.SECONDS.toMillis(amount);
+        case "m":
+          return nowMillis - TimeUnit.MINUTES.toMillis(amount);
+        case "h":
+          return nowMillis - TimeUnit.HOURS.toMillis(amount);
+        default:
+          return nowMillis - TimeUnit.DAYS.toMillis(amount);
+      }
+    }
+    try {
+      return Instant.parse(since).toEpochMilli();
+    } catch (DateTimeParseException ex) {
+      throw new GradleException(
+          "Invalid since '"
+              + since
+              + "', expected an instant like 2018-06-01T10:15:30Z or a duration like 15m",
+          ex);
+    }
+  }
+
+  /** Task entrypoint : print the matching entries of the dev server's structured log. */
+  @TaskAction
+  public void logsAction() throws IOException {
+    Path logFile = new File(devAppServerLoggingDir, DevAppServerLogParser.LOG_FILE_NAME).toPath();
+    if (!Files.exists(logFile)) {
+      getLogger().lifecycle("No Dev App Server log at " + logFile + ", run appengineStart first");
+      setDidWork(false);
+      return;
+    }
+    AtomicLong printed = new AtomicLong();
+    long bytesRead =
+        DevAppServerLogIndex.read(
+            logFile,
+            sinceMillis,
+            level,
+            entry -> {
+              getLogger().lifecycle(entry.toString());
+              printed.incrementAndGet();
+            });
+    getLogger().info(printed.get() + " entries found in " + bytesRead + " bytes of " + logFile);
+  }
+}
@@ -43,7 +43,7 @@ public class DevAppServerRunTask extends DefaultTask {
   @TaskAction
   public void runAction() throws AppEngineException, ProjectConfigurationException {
     serverHelper
-        .getAppServer(localRun, runConfig, CloudSdkOperations.getDefaultHandler(getLogger()))
+        .getAppServer(localRun, runConfig, CloudSdkOperations.getDefaultHandler(this, "dev server"))
         .run(runConfig);
   }
 }
@@ -21,7 +21,10 @@ import com.google.cloud.tools.appengine.api.AppEngineException;
 import com.google.cloud.tools.appengine.cloudsdk.LocalRun;
 import com.google.cloud.tools.appengine.cloudsdk.process.LegacyProcessHandler;
 import com.google.cloud.tools.appengine.cloudsdk.process.NonZeroExceptionExitListener;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.gradle.appengine.core.ProcessTelemetry;
+import com.google.cloud.tools.gradle.appengine.util.io.DeferredOutputLineListener;
 import com.google.cloud.tools.gradle.appengine.util.io.FileOutputLineListener;
 import java.io.File;
 import java.io.IOException;
@@ -62,21 +65,66 @@ public class DevAppServerStartTask extends DefaultTask {
 
   /** Task entrypoint : start the dev appserver (non-blocking). */
   @TaskAction
-  public void startAction() throws AppEngineException, IOException {
+  public void startAction() throws AppEngineException {
 
     // Add a listener to write to a file for non-blocking starts, this really only works
-    // when the gradle daemon is running (which is default for newer versions of gradle)
+    // when the gradle daemon is running (which is default for newer versions of gradle). The files
+    // are opened once the server process starts, so a server that fails to start leaves none open.
+    Logger taskLogger = getLogger();
     File logFile = new File(devAppServerLoggingDir, "dev_appserver.out");
-    FileOutputLineListener logFileWriter = new FileOutputLineListener(logFile);
+    DeferredOutputLineListener<FileOutputLineListener> logFileWriter =
+        new DeferredOutputLineListener<>(
+            () -> new FileOutputLineListener(logFile),
+            ex -> taskLogger.warn("Failed to open " + logFile.getAbsolutePath(), ex));
+    // and a structured, indexed copy for appengineLogs
+    File structuredLogFile = new File(devAppServerLoggingDir, DevAppServerLogParser.LOG_FILE_NAME);
+    DeferredOutputLineListener<DevAppServerLogParser> structuredLog =
+        new DeferredOutputLineListener<>(
+            () -> DevAppServerLogParser.open(structuredLogFile),
+            ex -> taskLogger.warn("Failed to open " + structuredLogFile.getAbsolutePath(), ex));
 
-    Logger taskLogger = getLogger();
+    ProcessExitListener exitListener = new NonZeroExceptionExitListener();
+    ProcessTelemetry.Recording recording =
+        ProcessTelemetry.forProject(getProject()).newRecording(this, "dev server");
     ProcessHandler processHandler =
         LegacyProcessHandler.builder()
             .addStdOutLineListener(taskLogger::lifecycle)
             .addStdOutLineListener(logFileWriter)
+            .addStdOutLineListener(structuredLog)
+            .addStdOutLineListener(recording::stdOut)
             .addStdErrLineListener(taskLogger::lifecycle)
             .addStdErrLineListener(logFileWriter)
-            .setExitListener(new NonZeroExceptionExitListener())
+            .addStdErrLineListener(structuredLog)
+            .addStdErrLineListener(recording::stdErr)
+            .setStartListener(
+                process -> {
+                  recording.started();
+                  logFileWriter.open();
+                  structuredLog.open();
+                })
+            .setExitListener(
+                exitCode -> {
+                  recording.finished(exitCode);
+                  // all output has been read by now, flush it to the log file
+                  try {
+                    logFileWriter.close();
+                  } catch (IOException ex) {
+                    taskLogger.warn("Failed to write " + logFile.getAbsolutePath(), ex);
+                  }
+                  try {
+                    structuredLog.close();
+                  } catch (IOException ex) {
+                    taskLogger.warn("Failed to write " + structuredLogFile.getAbsolutePath(), ex);
+                  }
+                  FileOutputLineListener writer = logFileWriter.get();
+                  if (writer != null && writer.getDroppedLines() > 0) {
+                    taskLogger.warn(
+                        writer.getDroppedLines()
+                            + " lines of Dev App Server output were not written to "
+                            + logFile.getAbsolutePath());
+                  }
+                  exitListener.onExit(exitCode);
+                })
             .buildDevAppServerAsync(runConfig.getStartSuccessTimeout());
 
     serverHelper.getAppServer(localRun, runConfig, processHandler).run(runConfig);
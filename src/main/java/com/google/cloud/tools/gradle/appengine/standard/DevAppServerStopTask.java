@@ -21,7 +21,7 @@ import com.google.cloud.tools.appengine.api.AppEngineException;
 import com.google.cloud.tools.appengine.api.devserver.AppEngineDevServer;
 import com.google.cloud.tools.appengine.cloudsdk.CloudSdkNotFoundException;
 import com.google.cloud.tools.appengine.cloudsdk.LocalRun;
-import com.google.cloud.tools.gradle.appengine.core.CloudSdkOperations;
+import com.google.cloud.tools.appengine.cloudsdk.process.LegacyProcessHandler;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.tasks.TaskAction;
 
@@ -43,9 +43,9 @@ public class DevAppServerStopTask extends DefaultTask {
   /** Task entrypoint : Stop the dev appserver (get StopConfiguration from helper). */
   @TaskAction
   public void stopAction() throws CloudSdkNotFoundException {
+    // stopping is an http request to the running server, no process is started
     AppEngineDevServer server =
-        serverHelper.getAppServer(
-            localRun, runConfig, CloudSdkOperations.getDefaultHandler(getLogger()));
+        serverHelper.getAppServer(localRun, runConfig, LegacyProcessHandler.builder().build());
     try {
       server.stop(serverHelper.getStopConfiguration(runConfig));
     } catch (AppEngineException ex) {
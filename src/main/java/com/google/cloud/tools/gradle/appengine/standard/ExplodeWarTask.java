@@ -17,26 +17,53 @@
 
 package com.google.cloud.tools.gradle.appengine.standard;
 
+import com.google.cloud.tools.gradle.appengine.util.io.ParallelZipExtractor;
+import com.google.cloud.tools.gradle.appengine.util.io.ParallelZipExtractor.UnsupportedZipException;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.gradle.api.Action;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputDirectory;
-import org.gradle.api.tasks.Sync;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.util.PatternFilterable;
+import org.gradle.api.tasks.util.PatternSet;
 
-/** Expand a war. */
-public class ExplodeWarTask extends Sync {
+/**
+ * Expand a war. Entries are inflated in parallel straight from the war, and like a {@link
+ * org.gradle.api.tasks.Sync} anything in the exploded directory that is not in the war (and not
+ * preserved) is removed.
+ */
+public class ExplodeWarTask extends DefaultTask {
 
+  private File warFile;
   private File explodedAppDirectory;
+  private final PatternSet preserve = new PatternSet();
+
+  @InputFile
+  public File getWarFile() {
+    return warFile;
+  }
 
   public void setWarFile(File warFile) {
-    from(getProject().zipTree(warFile));
+    this.warFile = warFile;
   }
 
   /**
-   * Sets the output directory of Sync Task and preserves the setting so it can be recovered later
-   * via getter.
+   * Sets the output directory of the task and preserves the generated datastore index configuration
+   * across explosions.
    */
   public void setExplodedAppDirectory(File explodedAppDirectory) {
     this.explodedAppDirectory = explodedAppDirectory;
-    into(explodedAppDirectory);
     preserve(
         patternFilterable ->
             patternFilterable.include("WEB-INF/appengine-generated/datastore-indexes-auto.xml"));
@@ -46,4 +73,77 @@ public class ExplodeWarTask extends Sync {
   public File getExplodedAppDirectory() {
     return explodedAppDirectory;
   }
+
+  /** Files in the exploded directory matching these patterns are never deleted. */
+  @Internal
+  public PatternFilterable getPreserve() {
+    return preserve;
+  }
+
+  public ExplodeWarTask preserve(Action<? super PatternFilterable> action) {
+    action.execute(preserve);
+    return this;
+  }
+
+  /** Task entrypoint : explode the war into the exploded app directory. */
+  @TaskAction
+  public void explodeAction() throws IOException {
+    Path target = explodedAppDirectory.toPath().toAbsolutePath().normalize();
+    Set<Path> preserved = new HashSet<>();
+    for (File file : getProject().fileTree(explodedAppDirectory).matching(preserve).getFiles()) {
+      preserved.add(file.toPath().toAbsolutePath().normalize());
+    }
+
+    Set<Path> extracted;
+    try {
+      int parallelism = getProject().getGradle().getStartParameter().getMaxWorkerCount();
+      extracted = new ParallelZipExtractor(parallelism).extract(warFile.toPath(), target);
+    } catch (UnsupportedZipException ex) {
+      getLogger()
+          .info("Falling back to sequential extraction of " + warFile + ": " + ex.getMessage());
+      extracted = extractSequentially(target);
+    }
+
+    deleteStaleFiles(target, extracted, preserved);
+  }
+
+  private Set<Path> extractSequentially(Path target) {
+    Set<Path> extracted = new HashSet<>();
+    getProject()
+        .zipTree(warFile)
+        .visit(details -> extracted.add(target.resolve(details.getPath()).normalize()));
+    getProject().copy(copySpec -> copySpec.from(getProject().zipTree(warFile)).into(target));
+    return extracted;
+  }
+
+  private static void deleteStaleFiles(Path root, Set<Path> extracted, Set<Path> preserved)
+      throws IOException {
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (!extracted.contains(file) && !preserved.contains(file)) {
+              Files.delete(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            if (exc != null) {
+              throw exc;
+            }
+            if (!dir.equals(root) && !extracted.contains(dir)) {
+              try (Stream<Path> children = Files.list(dir)) {
+                if (!children.findAny().isPresent()) {
+                  Files.delete(dir);
+                }
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
 }
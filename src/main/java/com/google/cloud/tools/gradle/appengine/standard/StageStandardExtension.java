@@ -22,6 +22,7 @@ import java.io.File;
 import org.gradle.api.Project;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
 
@@ -42,6 +43,7 @@ public class StageStandardExtension implements StageStandardConfiguration {
   private Boolean enableJarClasses;
   private Boolean disableJarJsps;
   private String runtime;
+  private Boolean uncompressedWar;
 
   /** Constuctor. */
   public StageStandardExtension(Project project) {
@@ -177,4 +179,17 @@ public class StageStandardExtension implements StageStandardConfiguration {
   public void setRuntime(String runtime) {
     this.runtime = runtime;
   }
+
+  /**
+   * Store war entries without compression when the war is only used to feed the exploded app. This
+   * is not a staging input, it only configures the war task.
+   */
+  @Internal
+  public Boolean getUncompressedWar() {
+    return uncompressedWar;
+  }
+
+  public void setUncompressedWar(Boolean uncompressedWar) {
+    this.uncompressedWar = uncompressedWar;
+  }
 }
@@ -48,7 +48,7 @@ public class StageStandardTask extends DefaultTask {
   public void stageAction() throws AppEngineException {
     getProject().delete(stagingConfig.getStagingDirectory());
     appCfg
-        .newStaging(CloudSdkOperations.getDefaultHandler(getLogger()))
+        .newStaging(CloudSdkOperations.getDefaultHandler(this, "appcfg stage"))
         .stageStandard(stagingConfig);
   }
 }
@@ -22,6 +22,7 @@ import static com.google.cloud.tools.gradle.appengine.core.ConfigReader.GCLOUD_C
 
 import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import com.google.cloud.tools.gradle.appengine.core.ConfigReader;
+import com.google.cloud.tools.gradle.appengine.core.GcloudQueryCache;
 import java.io.File;
 import org.gradle.api.GradleException;
 
@@ -29,10 +30,18 @@ public class StandardDeployTargetResolver {
 
   private final File appengineWebXml;
   private final Gcloud gcloud;
+  private final GcloudQueryCache queryCache;
 
-  public StandardDeployTargetResolver(File appengineWebXml, Gcloud gcloud) {
+  /**
+   * Resolves deploy targets from user configuration, appengine-web.xml and gcloud config.
+   *
+   * @param queryCache answers gcloud config lookups while gcloud's configuration is unchanged
+   */
+  public StandardDeployTargetResolver(
+      File appengineWebXml, Gcloud gcloud, GcloudQueryCache queryCache) {
     this.appengineWebXml = appengineWebXml;
     this.gcloud = gcloud;
+    this.queryCache = queryCache;
   }
 
   /**
@@ -54,7 +63,7 @@ public class StandardDeployTargetResolver {
     } else if (configString.equals(APPENGINE_CONFIG)) {
       return ConfigReader.getProject(appengineWebXml);
     } else if (configString.equals(GCLOUD_CONFIG)) {
-      return ConfigReader.getProject(gcloud);
+      return ConfigReader.getProject(gcloud, queryCache);
     } else {
       return configString;
     }
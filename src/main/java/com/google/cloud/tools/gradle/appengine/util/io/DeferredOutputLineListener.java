@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * A listener for the output of a process that is only opened once the process starts, so a process
+ * that fails to start (a missing configuration file, a missing Cloud SDK) leaves no log file open.
+ * The output of a process is read from just before its start listener runs, so the first line may
+ * open the listener too.
+ */
+public class DeferredOutputLineListener<T extends ProcessOutputLineListener & Closeable>
+    implements ProcessOutputLineListener, Closeable {
+
+  /** Opens the listener. */
+  public interface Opener<T> {
+    T open() throws IOException;
+  }
+
+  private final Opener<T> opener;
+  private final Consumer<IOException> openFailureHandler;
+
+  @Nullable private volatile T listener;
+  // guarded by this, the listener is opened at most once
+  private boolean opened;
+
+  /**
+   * A listener opened by opener.
+   *
+   * @param openFailureHandler told when opening the listener fails, the output is then dropped
+   */
+  public DeferredOutputLineListener(Opener<T> opener, Consumer<IOException> openFailureHandler) {
+    this.opener = opener;
+    this.openFailureHandler = openFailureHandler;
+  }
+
+  /** Open the listener, unless it was opened or closed before. */
+  @Nullable
+  public T open() {
+    T current = listener;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (!opened) {
+        opened = true;
+        try {
+          listener = opener.open();
+        } catch (IOException ex) {
+          openFailureHandler.accept(ex);
+        }
+      }
+      return listener;
+    }
+  }
+
+  /** The listener, or null if it was never opened or failed to open. */
+  @Nullable
+  public T get() {
+    return listener;
+  }
+
+  @Override
+  public void onOutputLine(String line) {
+    T current = open();
+    if (current != null) {
+      current.onOutputLine(line);
+    }
+  }
+
+  /** Close the listener if it was opened, it is not opened after that. */
+  @Override
+  public void close() throws IOException {
+    T current;
+    synchronized (this) {
+      opened = true;
+      current = listener;
+    }
+    if (current != null) {
+      current.close();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+
+/**
+ * Persistent cache of SHA-256 file hashes. A cached hash is trusted as long as the file's size,
+ * modification time, file key (the inode) and status change time are unchanged. The modification
+ * time alone can't be trusted, extracting a war restores it, so where the file system has no status
+ * change time (on Windows) cached hashes are never trusted.
+ */
+public class FileHashCache {
+
+  private static final String CACHE_FILE = "caches/appengine-gradle-plugin/file-hashes.json";
+  private static final long UNUSED_ENTRY_EXPIRY = TimeUnit.DAYS.toMillis(30);
+  private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+
+  // one instance per cache file, shared by all projects and builds of a daemon
+  private static final Map<Path, FileHashCache> instances = new ConcurrentHashMap<>();
+
+  private final Path cacheFile;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  @VisibleForTesting
+  FileHashCache(Path cacheFile) {
+    this.cacheFile = cacheFile;
+    if (Files.isRegularFile(cacheFile)) {
+      try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+        Map<String, Entry> loaded = new Gson().fromJson(reader, ENTRIES_TYPE);
+        if (loaded != null) {
+          entries.putAll(loaded);
+        }
+      } catch (IOException | JsonParseException ex) {
+        // a broken cache is just an empty cache
+      }
+    }
+  }
+
+  /** The hash cache in the gradle user home. */
+  public static FileHashCache forProject(Project project) {
+    Path cacheFile =
+        project.getGradle().getGradleUserHomeDir().toPath().resolve(CACHE_FILE).toAbsolutePath();
+    return instances.computeIfAbsent(cacheFile, FileHashCache::new);
+  }
+
+  /** Returns the cached hash of a file, or null if the file changed since it was cached. */
+  @Nullable
+  public HashCode lookup(Path file) throws IOException {
+    Entry entry = entries.get(key(file));
+    if (entry == null || !entry.matches(readAttributes(file), readChangeTime(file))) {
+      return null;
+    }
+    entry.lastUsed = System.currentTimeMillis();
+    return HashCode.fromString(entry.hash);
+  }
+
+  /** Hash a file and cache the result. */
+  public HashCode update(Path file) throws IOException {
+    BasicFileAttributes before = readAttributes(file);
+    long changedBefore = readChangeTime(file);
+    HashCode hash = com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256());
+    // only cache the hash if the file did not change while it was read
+    Entry entry = new Entry(before, changedBefore, hash.toString());
+    if (entry.matches(readAttributes(file), readChangeTime(file))) {
+      entries.put(key(file), entry);
+    }
+    return hash;
+  }
+
+  /** Returns the hash of a file, from the cache if possible. */
+  public HashCode hash(Path file) throws IOException {
+    HashCode hash = lookup(file);
+    return hash != null ? hash : update(file);
+  }
+
+  /** Hash files and cache their hashes, in parallel. */
+  public void updateAll(List<Path> files, int parallelism) throws IOException {
+    if (files.isEmpty()) {
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+    try {
+      List<Future<HashCode>> futures = new ArrayList<>();
+      for (Path file : files) {
+        futures.add(executor.submit(() -> update(file)));
+      }
+      for (Future<HashCode> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while hashing files", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException("Failed to hash files", ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Write the cache to disk, dropping entries that were not used for a while. */
+  public synchronized void save() throws IOException {
+    long expiry = System.currentTimeMillis() - UNUSED_ENTRY_EXPIRY;
+    entries.values().removeIf(entry -> entry.lastUsed < expiry);
+
+    Files.createDirectories(cacheFile.getParent());
+    Path temp = Files.createTempFile(cacheFile.getParent(), "file-hashes", ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        new Gson().toJson(entries, ENTRIES_TYPE, writer);
+      }
+      Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static String key(Path file) {
+    return file.toAbsolutePath().normalize().toString();
+  }
+
+  private static BasicFileAttributes readAttributes(Path file) throws IOException {
+    return Files.readAttributes(file, BasicFileAttributes.class);
+  }
+
+  // the status change time in nanoseconds, which anything writing the file updates, or -1
+  private static long readChangeTime(Path file) throws IOException {
+    if (!file.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+      return -1;
+    }
+    return ((FileTime) Files.getAttribute(file, "unix:ctime")).to(TimeUnit.NANOSECONDS);
+  }
+
+  private static String fileKey(BasicFileAttributes attributes) {
+    return attributes.fileKey() == null ? "" : attributes.fileKey().toString();
+  }
+
+  @VisibleForTesting
+  static class Entry {
+    long size;
+    long lastModified;
+    String fileKey;
+    long changed;
+    String hash;
+    long lastUsed;
+
+    Entry(BasicFileAttributes attributes, long changed, String hash) {
+      this.size = attributes.size();
+      this.lastModified = attributes.lastModifiedTime().toMillis();
+      this.fileKey = fileKey(attributes);
+      this.changed = changed;
+      this.hash = hash;
+      this.lastUsed = System.currentTimeMillis();
+    }
+
+    // entries of earlier versions of the cache have no change time and never match
+    boolean matches(BasicFileAttributes attributes, long changed) {
+      return changed > 0
+          && this.changed == changed
+          && size == attributes.size()
+          && lastModified == attributes.lastModifiedTime().toMillis()
+          && fileKey.equals(fileKey(attributes));
+    }
+  }
+}
@@ -18,20 +18,338 @@
 package com.google.cloud.tools.gradle.appengine.util.io;
 
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 
-/** A listener that redirects process output to a file. */
-public class FileOutputLineListener implements ProcessOutputLineListener {
-  private final PrintStream logFilePrinter;
+/**
+ * A listener that redirects process output to a file. Lines are handed through a bounded queue to a
+ * writer thread shared by all listeners, so a chatty process never waits on the disk; lines that
+ * don't fit in the queue, or arrive after the listener was closed, are dropped and counted. Open
+ * listeners are closed, writing out their queued lines, when the jvm shuts down. The file is
+ * rotated to logFile.1, logFile.2 ... when it reaches its maximum size, and when a new listener
+ * opens it. An optional {@link LineIndex} is told the offset of every line written, so that readers
+ * can find lines without scanning the file.
+ */
+public class FileOutputLineListener implements ProcessOutputLineListener, Closeable {
+
+  static final long DEFAULT_MAX_FILE_BYTES = 10 * 1024 * 1024;
+  static final int DEFAULT_MAX_ROTATED_FILES = 5;
+  static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+  private static final int BATCH_SIZE = 1_000;
+  private static final int BUFFER_BYTES = 64 * 1024;
+  private static final byte[] LINE_SEPARATOR =
+      System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+  private static final Executor SHARED_WRITER =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setNameFormat("process-log-writer").setDaemon(true).build());
+  private static final Set<FileOutputLineListener> OPEN_LISTENERS = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(FileOutputLineListener::closeAll, "process-log-flush"));
+  }
 
+  private final Path logFile;
+  private final long maxFileBytes;
+  private final int maxRotatedFiles;
+  private final BlockingQueue<String> queue;
+  private final AtomicLong droppedLines = new AtomicLong();
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  private final Executor writerExecutor;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+  private final Object writeLock = new Object();
+  @Nullable private final LineIndex lineIndex;
+
+  // guarded by this, no line is queued once closed is set
+  private boolean closed;
+  private volatile IOException writeFailure;
+
+  // guarded by writeLock
+  private boolean finished;
+  private FileChannel channel;
+  private long fileBytes;
+  private long reportedDroppedLines;
+
+  /** Open logFile for writing, rotating the output of the previous run. */
   public FileOutputLineListener(File logFile) throws IOException {
-    logFilePrinter = new PrintStream(logFile);
+    this(
+        logFile,
+        DEFAULT_MAX_FILE_BYTES,
+        DEFAULT_MAX_ROTATED_FILES,
+        DEFAULT_QUEUE_CAPACITY,
+        SHARED_WRITER,
+        null);
+  }
+
+  /** Open logFile for writing, rotating the output of the previous run, and index its lines. */
+  public FileOutputLineListener(File logFile, LineIndex lineIndex) throws IOException {
+    this(
+        logFile,
+        DEFAULT_MAX_FILE_BYTES,
+        DEFAULT_MAX_ROTATED_FILES,
+        DEFAULT_QUEUE_CAPACITY,
+        SHARED_WRITER,
+        lineIndex);
+  }
+
+  /**
+   * Open logFile with explicit limits.
+   *
+   * @param maxFileBytes size at which the file is rotated
+   * @param maxRotatedFiles number of rotated files to keep
+   * @param queueCapacity number of lines that may wait for the writer before lines are dropped
+   * @param writerExecutor runs the writes of queued lines
+   * @param lineIndex told about every line written, may be null
+   */
+  @VisibleForTesting
+  FileOutputLineListener(
+      File logFile,
+      long maxFileBytes,
+      int maxRotatedFiles,
+      int queueCapacity,
+      Executor writerExecutor,
+      @Nullable LineIndex lineIndex)
+      throws IOException {
+    this.logFile = logFile.toPath();
+    this.maxFileBytes = maxFileBytes;
+    this.maxRotatedFiles = maxRotatedFiles;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.writerExecutor = writerExecutor;
+    this.lineIndex = lineIndex;
+
+    Files.createDirectories(this.logFile.toAbsolutePath().getParent());
+    if (Files.exists(this.logFile) && Files.size(this.logFile) > 0) {
+      rotate();
+      if (lineIndex != null) {
+        lineIndex.fileFinished(true);
+      }
+    }
+    channel = open();
+    OPEN_LISTENERS.add(this);
   }
 
   @Override
   public void onOutputLine(String line) {
-    logFilePrinter.println(line);
+    boolean queued;
+    synchronized (this) {
+      queued = !closed && writeFailure == null && queue.offer(line);
+    }
+    if (!queued) {
+      droppedLines.incrementAndGet();
+      return;
+    }
+    scheduleWrite();
+  }
+
+  /** Number of lines dropped because the writer could not keep up or the file was closed. */
+  public long getDroppedLines() {
+    return droppedLines.get();
+  }
+
+  /** Write out the queued lines and close the file. */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      closed = true;
+    }
+    OPEN_LISTENERS.remove(this);
+    synchronized (writeLock) {
+      if (!finished) {
+        finished = true;
+        try {
+          do {
+            writeBatch();
+          } while (!queue.isEmpty());
+          if (lineIndex != null) {
+            lineIndex.fileFinished(false);
+          }
+        } catch (IOException ex) {
+          writeFailure = ex;
+        } finally {
+          closeChannel();
+        }
+      }
+    }
+    if (writeFailure != null) {
+      throw writeFailure;
+    }
+  }
+
+  private static void closeAll() {
+    for (FileOutputLineListener listener : OPEN_LISTENERS) {
+      try {
+        listener.close();
+      } catch (IOException ex) {
+        // the jvm is shutting down, there is no one left to tell
+      }
+    }
+  }
+
+  private void scheduleWrite() {
+    if (writeScheduled.compareAndSet(false, true)) {
+      writerExecutor.execute(this::writeQueued);
+    }
+  }
+
+  // runs on the writer, a batch at a time so one listener can't hold up the others
+  private void writeQueued() {
+    writeScheduled.set(false);
+    synchronized (writeLock) {
+      if (finished) {
+        return;
+      }
+      try {
+        writeBatch();
+      } catch (IOException ex) {
+        writeFailure = ex;
+        finished = true;
+        closeChannel();
+        return;
+      }
+    }
+    if (!queue.isEmpty()) {
+      scheduleWrite();
+    }
+  }
+
+  private void writeBatch() throws IOException {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      String line = queue.poll();
+      if (line == null) {
+        break;
+      }
+      write(line);
+    }
+    writeDroppedLinesNotice();
+    // one write to the file per batch, not per line
+    flush();
+  }
+
+  private void closeChannel() {
+    try {
+      channel.close();
+    } catch (IOException ex) {
+      if (writeFailure == null) {
+        writeFailure = ex;
+      }
+    }
+  }
+
+  private void writeDroppedLinesNotice() throws IOException {
+    long dropped = droppedLines.get();
+    if (dropped > reportedDroppedLines) {
+      long notReported = dropped - reportedDroppedLines;
+      write(
+          lineIndex != null
+              ? lineIndex.droppedLinesNotice(notReported)
+              : "[" + notReported + " lines dropped, the log writer fell behind]");
+      reportedDroppedLines = dropped;
+    }
+  }
+
+  private void write(String line) throws IOException {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    int length = bytes.length + LINE_SEPARATOR.length;
+    long size = fileBytes + buffer.position();
+    if (size > 0 && size + length > maxFileBytes) {
+      flush();
+      channel.close();
+      rotate();
+      if (lineIndex != null) {
+        lineIndex.fileFinished(true);
+      }
+      channel = open();
+    }
+    if (length > buffer.remaining()) {
+      flush();
+    }
+    if (lineIndex != null) {
+      lineIndex.lineWritten(line, fileBytes + buffer.position(), length);
+    }
+    if (length > buffer.capacity()) {
+      fileBytes += writeFully(ByteBuffer.wrap(bytes));
+      fileBytes += writeFully(ByteBuffer.wrap(LINE_SEPARATOR));
+    } else {
+      buffer.put(bytes).put(LINE_SEPARATOR);
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    fileBytes += writeFully(buffer);
+    buffer.clear();
+  }
+
+  private long writeFully(ByteBuffer bytes) throws IOException {
+    long written = 0;
+    while (bytes.hasRemaining()) {
+      written += channel.write(bytes);
+    }
+    return written;
+  }
+
+  private FileChannel open() throws IOException {
+    fileBytes = 0;
+    return FileChannel.open(
+        logFile,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /** Shift logFile.N to logFile.N+1 and logFile to logFile.1, dropping the oldest. */
+  private void rotate() throws IOException {
+    if (maxRotatedFiles < 1) {
+      Files.deleteIfExists(logFile);
+      return;
+    }
+    Files.deleteIfExists(rotated(maxRotatedFiles));
+    for (int i = maxRotatedFiles - 1; i >= 1; i--) {
+      if (Files.exists(rotated(i))) {
+        Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    Files.move(logFile, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private Path rotated(int index) {
+    return logFile.resolveSibling(logFile.getFileName() + "." + index);
+  }
+
+  /**
+   * Keeps an index of a log file, called by the writer only. When the log file is rotated, the
+   * index must be rotated with it, to logFile.N's index.
+   */
+  public interface LineIndex {
+
+    /** The line was written at offset of the current log file, taking length bytes. */
+    void lineWritten(String line, long offset, int length) throws IOException;
+
+    /** No more lines will be written to the current log file, which was rotated if rotated. */
+    void fileFinished(boolean rotated) throws IOException;
+
+    /** The line to write in place of lines that were dropped, in the format of the log. */
+    String droppedLinesNotice(long droppedLines);
   }
 }
@@ -18,22 +18,105 @@
 package com.google.cloud.tools.gradle.appengine.util.io;
 
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.logging.Logger;
 
-/** Output listener that writes to a gradle logger. */
+/**
+ * Output listener that writes to a gradle logger, either every line at a fixed level, or at a level
+ * picked per line: errors and warnings from gcloud, appcfg and java logging go to ERROR and WARN,
+ * and of a run of progress lines (dots, percentages, counters) only the first, one every few
+ * seconds and the last reach the console, the rest go to INFO.
+ */
 public class GradleLoggerOutputListener implements ProcessOutputLineListener {
 
+  private static final Pattern ERROR = Pattern.compile("(ERROR|SEVERE|FATAL)\\b.*");
+  private static final Pattern WARNING = Pattern.compile("(WARNING|WARN)\\b.*");
+  private static final Pattern PROGRESS =
+      Pattern.compile("[.\\s]+|.*\\b\\d{1,3}(\\.\\d+)?%.*|.*[\\[(]\\d+/\\d+[\\])].*");
+  // what stays the same between lines of one progress display
+  private static final Pattern COUNTERS = Pattern.compile("\\d+|\\.+");
+  private static final long PROGRESS_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
   private final Logger logger;
-  private final LogLevel level;
+  @Nullable private final LogLevel level;
+  private final String linePrefix;
+  private final LongSupplier clock;
+
+  // the run of progress lines being collapsed
+  private String progressShape;
+  private String lastSuppressedProgress;
+  private long lastProgressMillis;
 
   public GradleLoggerOutputListener(Logger logger, LogLevel level) {
+    this(logger, level, "", System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  GradleLoggerOutputListener(
+      Logger logger, @Nullable LogLevel level, String linePrefix, LongSupplier clock) {
     this.logger = logger;
     this.level = level;
+    this.linePrefix = linePrefix;
+    this.clock = clock;
+  }
+
+  /**
+   * Listener that logs every line at the level it classifies it as.
+   *
+   * @param linePrefix prefix for every logged line
+   */
+  public static GradleLoggerOutputListener classifying(Logger logger, String linePrefix) {
+    return new GradleLoggerOutputListener(logger, null, linePrefix, System::currentTimeMillis);
   }
 
   @Override
-  public void onOutputLine(String line) {
-    logger.log(level, line);
+  public synchronized void onOutputLine(String line) {
+    if (level != null) {
+      logger.log(level, linePrefix + line);
+      return;
+    }
+    String trimmed = line.trim();
+    LogLevel lineLevel = classify(trimmed);
+    if (lineLevel != LogLevel.LIFECYCLE || !PROGRESS.matcher(trimmed).matches()) {
+      flush();
+      logger.log(lineLevel, linePrefix + line);
+      return;
+    }
+
+    String shape = COUNTERS.matcher(trimmed).replaceAll("#");
+    long now = clock.getAsLong();
+    if (!shape.equals(progressShape) || now - lastProgressMillis >= PROGRESS_INTERVAL_MILLIS) {
+      progressShape = shape;
+      lastProgressMillis = now;
+      lastSuppressedProgress = null;
+      logger.lifecycle(linePrefix + line);
+    } else {
+      lastSuppressedProgress = line;
+      logger.info(linePrefix + line);
+    }
+  }
+
+  /** End a run of progress lines, showing its final state if that was collapsed. */
+  public synchronized void flush() {
+    if (lastSuppressedProgress != null) {
+      logger.lifecycle(linePrefix + lastSuppressedProgress);
+    }
+    progressShape = null;
+    lastSuppressedProgress = null;
+  }
+
+  private static LogLevel classify(String line) {
+    if (ERROR.matcher(line).matches()) {
+      return LogLevel.ERROR;
+    }
+    if (WARNING.matcher(line).matches()) {
+      return LogLevel.WARN;
+    }
+    return LogLevel.LIFECYCLE;
   }
 }
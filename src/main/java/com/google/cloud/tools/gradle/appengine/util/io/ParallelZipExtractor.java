@@ -0,0 +1,525 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Extracts a zip archive by inflating its entries concurrently, each worker reading the archive
+ * with positional reads of a shared channel (not a memory mapping, which would keep the archive
+ * locked on Windows until it is garbage collected). Entries are read straight from the central
+ * directory, so file modes and timestamps recorded in the archive are restored on the extracted
+ * files. Archives this extractor cannot handle (zip64, encrypted or unknown compression methods)
+ * are rejected with an {@link UnsupportedZipException} before anything is written.
+ */
+public class ParallelZipExtractor {
+
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int EOCD_MIN_LENGTH = 22;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+  private static final int EXTENDED_TIMESTAMP_TAG = 0x5455;
+  private static final int UNIX_HOST = 3;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final long MIN_PARTITION_SIZE = 1024 * 1024;
+
+  private static final boolean POSIX =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private static final PosixFilePermission[] PERMISSION_BITS = {
+    PosixFilePermission.OTHERS_EXECUTE,
+    PosixFilePermission.OTHERS_WRITE,
+    PosixFilePermission.OTHERS_READ,
+    PosixFilePermission.GROUP_EXECUTE,
+    PosixFilePermission.GROUP_WRITE,
+    PosixFilePermission.GROUP_READ,
+    PosixFilePermission.OWNER_EXECUTE,
+    PosixFilePermission.OWNER_WRITE,
+    PosixFilePermission.OWNER_READ
+  };
+
+  private final int parallelism;
+
+  /**
+   * Create an extractor.
+   *
+   * @param parallelism maximum number of entries to inflate at the same time
+   */
+  public ParallelZipExtractor(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * Extract {@code archive} into {@code destination}. Throws an {@link UnsupportedZipException} if
+   * the archive uses features this extractor cannot handle.
+   *
+   * @return the absolute paths of all files and directories that were extracted
+   */
+  public Set<Path> extract(Path archive, Path destination) throws IOException {
+    Path root = destination.toAbsolutePath().normalize();
+    try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+      List<Entry> entries = readCentralDirectory(channel, root);
+      Set<Path> extracted = new HashSet<>();
+      Set<Path> directories = new HashSet<>();
+      List<Entry> files = new ArrayList<>();
+      for (Entry entry : entries) {
+        extracted.add(entry.target);
+        if (entry.directory) {
+          directories.add(entry.target);
+        } else {
+          files.add(entry);
+        }
+        for (Path parent = entry.target.getParent();
+            parent != null && !parent.equals(root) && parent.startsWith(root);
+            parent = parent.getParent()) {
+          extracted.add(parent);
+          directories.add(parent);
+        }
+      }
+
+      // create the whole directory skeleton up front so workers never race on parents
+      Files.createDirectories(root);
+      for (Path directory : directories) {
+        Files.createDirectories(directory);
+      }
+
+      extractFiles(channel, files);
+
+      // directory metadata goes last, writing the files into them has touched their mtime
+      for (Entry entry : entries) {
+        if (entry.directory) {
+          applyMetadata(entry);
+        }
+      }
+      return extracted;
+    }
+  }
+
+  private void extractFiles(FileChannel archive, List<Entry> files) throws IOException {
+    List<List<Entry>> partitions = partition(files);
+    if (partitions.isEmpty()) {
+      return;
+    }
+
+    int threads = Math.min(parallelism, partitions.size());
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "zip-extractor-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      List<Future<Void>> results = new ArrayList<>();
+      for (List<Entry> partition : partitions) {
+        results.add(
+            executor.submit(
+                () -> {
+                  Inflater inflater = new Inflater(true);
+                  byte[] buffer = new byte[CHUNK_SIZE];
+                  try {
+                    for (Entry entry : partition) {
+                      writeEntry(archive, entry, inflater, buffer);
+                      applyMetadata(entry);
+                    }
+                  } finally {
+                    inflater.end();
+                  }
+                  return null;
+                }));
+      }
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while extracting archive", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException("Failed to extract archive", ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Group entries into units of work of roughly equal compressed size. Largest entries are
+   * scheduled first so a single big jar does not end up as the tail of the extraction, small
+   * entries are batched together to keep per task overhead low.
+   */
+  @VisibleForTesting
+  List<List<Entry>> partition(List<Entry> files) {
+    List<Entry> sorted = new ArrayList<>(files);
+    sorted.sort(Comparator.comparingLong((Entry entry) -> entry.compressedSize).reversed());
+
+    long total = 0;
+    for (Entry entry : sorted) {
+      total += entry.compressedSize;
+    }
+    long target = Math.max(MIN_PARTITION_SIZE, total / (parallelism * 8L));
+
+    List<List<Entry>> partitions = new ArrayList<>();
+    List<Entry> current = new ArrayList<>();
+    long currentSize = 0;
+    for (Entry entry : sorted) {
+      if (!current.isEmpty() && currentSize + entry.compressedSize > target) {
+        partitions.add(current);
+        current = new ArrayList<>();
+        currentSize = 0;
+      }
+      current.add(entry);
+      currentSize += entry.compressedSize;
+    }
+    if (!current.isEmpty()) {
+      partitions.add(current);
+    }
+    return partitions;
+  }
+
+  private static List<Entry> readCentralDirectory(FileChannel channel, Path root)
+      throws IOException {
+    long archiveSize = channel.size();
+    int tailLength = (int) Math.min(archiveSize, EOCD_MIN_LENGTH + MAX_COMMENT_LENGTH);
+    ByteBuffer tail = read(channel, archiveSize - tailLength, tailLength);
+    int eocd = findEndOfCentralDirectory(tail);
+    if (eocd >= 20 && tail.getInt(eocd - 20) == ZIP64_LOCATOR_SIGNATURE) {
+      throw new UnsupportedZipException("zip64 archives are not supported");
+    }
+    int entryCount = Short.toUnsignedInt(tail.getShort(eocd + 10));
+    long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+    long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+    if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL) {
+      throw new UnsupportedZipException("zip64 archives are not supported");
+    }
+    if (centralDirectoryOffset + centralDirectorySize > archiveSize) {
+      throw new IOException("Corrupt zip archive: central directory outside of the archive");
+    }
+
+    ByteBuffer archive = read(channel, centralDirectoryOffset, (int) centralDirectorySize);
+    List<Entry> entries = new ArrayList<>(entryCount);
+    int position = 0;
+    for (int i = 0; i < entryCount; i++) {
+      if (archive.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new IOException("Corrupt zip archive: bad central directory header");
+      }
+      final int versionMadeBy = Short.toUnsignedInt(archive.getShort(position + 4));
+      final int flags = Short.toUnsignedInt(archive.getShort(position + 8));
+      final int method = Short.toUnsignedInt(archive.getShort(position + 10));
+      final int dosTime = Short.toUnsignedInt(archive.getShort(position + 12));
+      final int dosDate = Short.toUnsignedInt(archive.getShort(position + 14));
+      final long crc = Integer.toUnsignedLong(archive.getInt(position + 16));
+      final long compressedSize = Integer.toUnsignedLong(archive.getInt(position + 20));
+      final long size = Integer.toUnsignedLong(archive.getInt(position + 24));
+      final int nameLength = Short.toUnsignedInt(archive.getShort(position + 28));
+      final int extraLength = Short.toUnsignedInt(archive.getShort(position + 30));
+      final int commentLength = Short.toUnsignedInt(archive.getShort(position + 32));
+      final long externalAttributes = Integer.toUnsignedLong(archive.getInt(position + 38));
+      final long localHeaderOffset = Integer.toUnsignedLong(archive.getInt(position + 42));
+
+      if ((flags & 1) != 0) {
+        throw new UnsupportedZipException("encrypted entries are not supported");
+      }
+      if (method != STORED && method != DEFLATED) {
+        throw new UnsupportedZipException("unsupported compression method " + method);
+      }
+      if (compressedSize == 0xFFFFFFFFL
+          || size == 0xFFFFFFFFL
+          || localHeaderOffset == 0xFFFFFFFFL) {
+        throw new UnsupportedZipException("zip64 archives are not supported");
+      }
+
+      byte[] nameBytes = new byte[nameLength];
+      ByteBuffer nameView = archive.duplicate();
+      nameView.position(position + 46);
+      nameView.get(nameBytes);
+      String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+      Path target = root.resolve(name).normalize();
+      if (!target.startsWith(root)) {
+        throw new IOException("Zip entry '" + name + "' would be extracted outside of " + root);
+      }
+      if (target.equals(root)) {
+        // a "./" style entry for the destination itself, nothing to extract
+        position += 46 + nameLength + extraLength + commentLength;
+        continue;
+      }
+
+      Entry entry = new Entry(name, target, name.endsWith("/"));
+      entry.method = method;
+      entry.crc = crc;
+      entry.compressedSize = compressedSize;
+      entry.size = size;
+      entry.localHeaderOffset = localHeaderOffset;
+      entry.lastModified = readModificationTime(archive, position + 46 + nameLength, extraLength);
+      if (entry.lastModified == null) {
+        entry.lastModified = dosToFileTime(dosDate, dosTime);
+      }
+      if ((versionMadeBy >> 8) == UNIX_HOST) {
+        entry.unixMode = (int) ((externalAttributes >> 16) & 0777);
+      }
+      entries.add(entry);
+
+      position += 46 + nameLength + extraLength + commentLength;
+    }
+    return entries;
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer archive) throws IOException {
+    int limit = archive.limit();
+    int stop = Math.max(0, limit - EOCD_MIN_LENGTH - MAX_COMMENT_LENGTH);
+    for (int position = limit - EOCD_MIN_LENGTH; position >= stop; position--) {
+      if (archive.getInt(position) == EOCD_SIGNATURE) {
+        return position;
+      }
+    }
+    throw new IOException("Not a zip archive: end of central directory not found");
+  }
+
+  // The "UT" extra field carries a second precision unix timestamp, prefer it to the DOS date.
+  private static FileTime readModificationTime(ByteBuffer archive, int start, int length) {
+    int position = start;
+    while (position + 4 <= start + length) {
+      int tag = Short.toUnsignedInt(archive.getShort(position));
+      int size = Short.toUnsignedInt(archive.getShort(position + 2));
+      if (tag == EXTENDED_TIMESTAMP_TAG && size >= 5 && (archive.get(position + 4) & 1) != 0) {
+        long seconds = Integer.toUnsignedLong(archive.getInt(position + 5));
+        return FileTime.from(seconds, TimeUnit.SECONDS);
+      }
+      position += 4 + size;
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  static FileTime dosToFileTime(int dosDate, int dosTime) {
+    try {
+      LocalDateTime dateTime =
+          LocalDateTime.of(
+              ((dosDate >> 9) & 0x7f) + 1980,
+              Math.max(1, (dosDate >> 5) & 0x0f),
+              Math.max(1, dosDate & 0x1f),
+              (dosTime >> 11) & 0x1f,
+              (dosTime >> 5) & 0x3f,
+              Math.min(59, (dosTime & 0x1f) * 2));
+      return FileTime.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    } catch (DateTimeException ex) {
+      // garbage in the archive, leave the extraction time in place
+      return null;
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, buffer, position);
+    buffer.flip();
+    return buffer;
+  }
+
+  // positional reads leave the channel's position alone, so workers can share the channel
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long offset = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, offset);
+      if (read < 0) {
+        throw new IOException("Corrupt zip archive: unexpected end of archive");
+      }
+      offset += read;
+    }
+  }
+
+  private static void writeEntry(FileChannel archive, Entry entry, Inflater inflater, byte[] buffer)
+      throws IOException {
+    ByteBuffer localHeader = read(archive, entry.localHeaderOffset, 30);
+    if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException("Corrupt zip archive: bad local header for " + entry.name);
+    }
+    int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+    int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+    long dataStart = entry.localHeaderOffset + 30 + nameLength + extraLength;
+
+    // replace rather than overwrite, a previous extraction may have left a read only file behind
+    Files.deleteIfExists(entry.target);
+    CRC32 crc = new CRC32();
+    try (FileChannel out =
+        FileChannel.open(entry.target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      if (entry.method == STORED) {
+        copy(archive, dataStart, out, buffer, crc, entry);
+      } else {
+        inflate(archive, dataStart, out, inflater, buffer, crc, entry);
+      }
+    }
+    if (crc.getValue() != entry.crc) {
+      throw new IOException("CRC mismatch while extracting " + entry.name);
+    }
+  }
+
+  private static void copy(
+      FileChannel archive, long dataStart, FileChannel out, byte[] buffer, CRC32 crc, Entry entry)
+      throws IOException {
+    long position = dataStart;
+    long remaining = entry.compressedSize;
+    while (remaining > 0) {
+      ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, remaining));
+      readFully(archive, chunk, position);
+      crc.update(buffer, 0, chunk.position());
+      chunk.flip();
+      while (chunk.hasRemaining()) {
+        out.write(chunk);
+      }
+      position += chunk.limit();
+      remaining -= chunk.limit();
+    }
+  }
+
+  private static void inflate(
+      FileChannel archive,
+      long dataStart,
+      FileChannel out,
+      Inflater inflater,
+      byte[] buffer,
+      CRC32 crc,
+      Entry entry)
+      throws IOException {
+    inflater.reset();
+    byte[] input = new byte[(int) Math.min(CHUNK_SIZE, Math.max(1, entry.compressedSize))];
+    long position = dataStart;
+    long remaining = entry.compressedSize;
+    long written = 0;
+    try {
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          if (remaining <= 0) {
+            throw new IOException("Unexpected end of data while extracting " + entry.name);
+          }
+          int length = (int) Math.min(input.length, remaining);
+          readFully(archive, ByteBuffer.wrap(input, 0, length), position);
+          position += length;
+          remaining -= length;
+          inflater.setInput(input, 0, length);
+        }
+        int inflated = inflater.inflate(buffer);
+        if (inflated > 0) {
+          crc.update(buffer, 0, inflated);
+          ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, inflated);
+          while (chunk.hasRemaining()) {
+            out.write(chunk);
+          }
+          written += inflated;
+        } else if (inflater.needsDictionary()) {
+          throw new IOException("Unsupported preset dictionary in " + entry.name);
+        }
+      }
+    } catch (DataFormatException ex) {
+      throw new IOException("Corrupt compressed data in " + entry.name, ex);
+    }
+    if (written != entry.size) {
+      throw new IOException("Size mismatch while extracting " + entry.name);
+    }
+  }
+
+  private static void applyMetadata(Entry entry) throws IOException {
+    if (entry.unixMode != 0 && POSIX) {
+      Files.setPosixFilePermissions(entry.target, toPermissions(entry.unixMode));
+    }
+    if (entry.lastModified != null) {
+      Files.setLastModifiedTime(entry.target, entry.lastModified);
+    }
+  }
+
+  @VisibleForTesting
+  static Set<PosixFilePermission> toPermissions(int mode) {
+    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+    for (int bit = 0; bit < PERMISSION_BITS.length; bit++) {
+      if ((mode & (1 << bit)) != 0) {
+        permissions.add(PERMISSION_BITS[bit]);
+      }
+    }
+    return permissions;
+  }
+
+  @VisibleForTesting
+  static class Entry {
+    final String name;
+    final Path target;
+    final boolean directory;
+    int method;
+    long crc;
+    long compressedSize;
+    long size;
+    long localHeaderOffset;
+    int unixMode;
+    FileTime lastModified;
+
+    Entry(String name, Path target, boolean directory) {
+      this.name = name;
+      this.target = target;
+      this.directory = directory;
+    }
+  }
+
+  /** Thrown when an archive uses zip features that this extractor does not handle. */
+  public static class UnsupportedZipException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedZipException(String message) {
+      super(message);
+    }
+  }
+}
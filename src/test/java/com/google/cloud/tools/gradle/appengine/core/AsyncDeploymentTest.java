@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.appengine.cloudsdk.CloudSdk;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncDeploymentTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Project project;
+  private DeployTask deployTask;
+  private AwaitDeployTask awaitDeployTask;
+  private File operationDirectory;
+
+  /** Setup AsyncDeploymentTest. */
+  @Before
+  public void setup() throws IOException {
+    project = ProjectBuilder.builder().withProjectDir(tempFolder.newFolder("project")).build();
+    deployTask = project.getTasks().create("tempDeployTask", DeployTask.class);
+    awaitDeployTask = project.getTasks().create("tempAwaitDeployTask", AwaitDeployTask.class);
+    awaitDeployTask.setDeployTask(deployTask);
+    awaitDeployTask.setPollIntervalMillis(10);
+    operationDirectory = deployTask.getOperationDirectory();
+  }
+
+  @Test
+  public void testDeployCommand() throws IOException {
+    CloudSdk cloudSdk = mock(CloudSdk.class);
+    Path gcloud = Paths.get("/sdk/bin/gcloud");
+    when(cloudSdk.getGCloudPath()).thenReturn(gcloud);
+    final File appYaml = tempFolder.newFile("app.yaml");
+    DeployExtension deployConfig = new DeployExtension(project);
+    deployConfig.setProjectId("test-project");
+    deployConfig.setVersion("test-version");
+    deployConfig.setPromote(false);
+
+    AsyncDeployment asyncDeployment = new AsyncDeployment(cloudSdk, null);
+
+    assertEquals(
+        ImmutableList.of(
+            gcloud.toAbsolutePath().toString(),
+            "app",
+            "deploy",
+            appYaml.toPath().toString(),
+            "--no-promote",
+            "--version",
+            "test-version",
+            "--project",
+            "test-project"),
+        asyncDeployment.deployCommand(
+            new DeployExtension(deployConfig, Collections.singletonList(appYaml))));
+  }
+
+  @Test
+  public void testLauncher_recordsExitCode() throws IOException, InterruptedException {
+    File status = new File(tempFolder.getRoot(), "exit-code");
+    File log = new File(tempFolder.getRoot(), "gcloud.log");
+    String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+
+    AsyncDeployLauncher.main(new String[] {status.getPath(), log.getPath(), java, "-version"});
+
+    assertEquals("0", new String(Files.readAllBytes(status.toPath()), StandardCharsets.UTF_8));
+    assertTrue(
+        new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8).contains("version"));
+  }
+
+  @Test
+  public void testLauncher_commandNotFound() throws IOException, InterruptedException {
+    File status = new File(tempFolder.getRoot(), "exit-code");
+    File log = new File(tempFolder.getRoot(), "gcloud.log");
+
+    AsyncDeployLauncher.main(
+        new String[] {status.getPath(), log.getPath(), "/does/not/exist/gcloud", "app"});
+
+    assertEquals(
+        String.valueOf(AsyncDeployLauncher.LAUNCH_FAILED),
+        new String(Files.readAllBytes(status.toPath()), StandardCharsets.UTF_8));
+    assertTrue(
+        new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8)
+            .startsWith("Failed to start /does/not/exist/gcloud"));
+  }
+
+  @Test
+  public void testAwait_noOperation() throws IOException, InterruptedException {
+    awaitDeployTask.awaitDeployAction();
+
+    assertFalse(awaitDeployTask.getDidWork());
+  }
+
+  @Test
+  public void testAwait_success() throws IOException, InterruptedException {
+    writeOperation("0");
+
+    awaitDeployTask.awaitDeployAction();
+
+    assertNull(AsyncDeployment.read(operationDirectory));
+    assertTrue(new File(operationDirectory, "deploy-1/" + AsyncDeployment.LOG_FILE).exists());
+  }
+
+  @Test
+  public void testAwait_failure() throws IOException, InterruptedException {
+    writeOperation("1");
+
+    try {
+      awaitDeployTask.awaitDeployAction();
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(
+          ex.getMessage(),
+          ex.getMessage()
+              .startsWith("Deployment of version v to p failed with exit code 1 (log: "));
+    }
+    assertNull(AsyncDeployment.read(operationDirectory));
+  }
+
+  @Test
+  public void testAwait_timeout() throws IOException, InterruptedException {
+    writeOperation(null);
+    awaitDeployTask.setTimeout("0");
+
+    try {
+      awaitDeployTask.awaitDeployAction();
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("Timed out after 0 seconds"));
+    }
+    // still running, so the operation can be awaited again
+    assertEquals("v", AsyncDeployment.read(operationDirectory).version);
+  }
+
+  @Test
+  public void testSubmit_ownFilesPerDeployment() throws IOException, InterruptedException {
+    CloudSdk cloudSdk = mock(CloudSdk.class);
+    when(cloudSdk.getGCloudPath()).thenReturn(Paths.get("/does/not/exist/gcloud"));
+    DeployExtension deployConfig = new DeployExtension(project);
+    deployConfig.setProjectId("p");
+    deployConfig.setVersion("v");
+    DeployExtension deployment =
+        new DeployExtension(
+            deployConfig, Collections.singletonList(tempFolder.newFile("app.yaml")));
+    AsyncDeployment asyncDeployment = new AsyncDeployment(cloudSdk, null);
+    final File finished = writeOperation("0");
+
+    AsyncDeployment.Operation first = asyncDeployment.submit(deployment, null, operationDirectory);
+    AsyncDeployment.Operation second = asyncDeployment.submit(deployment, null, operationDirectory);
+
+    assertFalse(first.log.equals(second.log));
+    assertFalse(first.status.equals(second.status));
+    assertEquals(second.log, AsyncDeployment.read(operationDirectory).log);
+    // the deployment that had finished before is cleaned up
+    assertFalse(finished.exists());
+  }
+
+  // writes the operation handle and the files of deployment deploy-1
+  private File writeOperation(String exitCode) throws IOException {
+    File deployDirectory = new File(operationDirectory, "deploy-1");
+    Files.createDirectories(deployDirectory.toPath());
+    AsyncDeployment.Operation operation = new AsyncDeployment.Operation();
+    operation.projectId = "p";
+    operation.version = "v";
+    operation.command = ImmutableList.of("gcloud", "app", "deploy");
+    operation.log = new File(deployDirectory, AsyncDeployment.LOG_FILE).getPath();
+    operation.status = new File(deployDirectory, AsyncDeployment.STATUS_FILE).getPath();
+    AsyncDeployment.write(
+        operation, operationDirectory.toPath().resolve(AsyncDeployment.OPERATION_FILE));
+    Files.write(
+        Paths.get(operation.log), "Beginning deployment\n".getBytes(StandardCharsets.UTF_8));
+    if (exitCode != null) {
+      Files.write(Paths.get(operation.status), exitCode.getBytes(StandardCharsets.UTF_8));
+    }
+    return deployDirectory;
+  }
+}
@@ -26,12 +26,19 @@ import com.google.cloud.tools.appengine.cloudsdk.CloudSdkOutOfDateException;
 import com.google.cloud.tools.appengine.cloudsdk.CloudSdkVersionFileException;
 import com.google.cloud.tools.appengine.cloudsdk.InvalidJavaSdkException;
 import com.google.cloud.tools.appengine.cloudsdk.serialization.CloudSdkVersion;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -40,6 +47,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class CheckCloudSdkTaskTest {
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Mock private CloudSdk sdk;
 
   private CheckCloudSdkTask checkCloudSdkTask;
@@ -55,7 +64,7 @@ public class CheckCloudSdkTaskTest {
   @Test
   public void testCheckCloudSdkAction_nullVersion()
       throws CloudSdkNotFoundException, CloudSdkVersionFileException, InvalidJavaSdkException,
-          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException {
+          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException, IOException {
     checkCloudSdkTask.setVersion(null);
     try {
       checkCloudSdkTask.checkCloudSdkAction();
@@ -70,7 +79,7 @@ public class CheckCloudSdkTaskTest {
   @Test
   public void testCheckCloudSdkAction_versionMismatch()
       throws CloudSdkVersionFileException, CloudSdkNotFoundException, InvalidJavaSdkException,
-          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException {
+          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException, IOException {
     checkCloudSdkTask.setVersion("191.0.0");
     when(sdk.getVersion()).thenReturn(new CloudSdkVersion("190.0.0"));
     try {
@@ -86,7 +95,7 @@ public class CheckCloudSdkTaskTest {
   @Test
   public void testCheckCloudSdkAction_callPluginsCoreChecks()
       throws CloudSdkVersionFileException, InvalidJavaSdkException, CloudSdkNotFoundException,
-          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException {
+          CloudSdkOutOfDateException, AppEngineJavaComponentsNotInstalledException, IOException {
     checkCloudSdkTask.setVersion("192.0.0");
     when(sdk.getVersion()).thenReturn(new CloudSdkVersion("192.0.0"));
 
@@ -96,5 +105,26 @@ public class CheckCloudSdkTaskTest {
     Mockito.verify(sdk).validateCloudSdk();
     Mockito.verify(sdk).validateAppEngineJavaComponents();
     Mockito.verifyNoMoreInteractions(sdk);
+    Assert.assertEquals(
+        "version=192.0.0\n",
+        new String(
+            Files.readAllBytes(checkCloudSdkTask.getCheckedMarker().toPath()),
+            StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testGetSdkManifests() throws IOException {
+    Path sdkPath = tempFolder.getRoot().toPath();
+    Files.write(sdkPath.resolve("VERSION"), "192.0.0".getBytes(StandardCharsets.UTF_8));
+    Files.createDirectories(sdkPath.resolve(".install"));
+    Files.write(sdkPath.resolve(".install/app-engine-java.manifest"), new byte[0]);
+    Files.write(sdkPath.resolve(".install/app-engine-java.snapshot.json"), new byte[0]);
+    checkCloudSdkTask.setCloudSdkDescriptor(CloudSdkDescriptor.resolve(sdkPath));
+
+    Assert.assertEquals(
+        ImmutableSet.of(
+            sdkPath.resolve("VERSION").toFile(),
+            sdkPath.resolve(".install/app-engine-java.manifest").toFile()),
+        checkCloudSdkTask.getSdkManifests().getFiles());
   }
 }
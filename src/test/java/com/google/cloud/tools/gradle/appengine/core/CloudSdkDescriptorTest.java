@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CloudSdkDescriptorTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path sdkPath;
+
+  /** Lay out a minimal sdk. */
+  @Before
+  public void setup() throws IOException {
+    sdkPath = tempFolder.newFolder("google-cloud-sdk").toPath();
+    Files.write(sdkPath.resolve("VERSION"), "192.0.0\n".getBytes(StandardCharsets.UTF_8));
+    Files.createDirectories(sdkPath.resolve(".install"));
+    Files.write(sdkPath.resolve(".install/core.manifest"), new byte[0]);
+    Files.write(sdkPath.resolve(".install/app-engine-java.manifest"), new byte[0]);
+    Files.write(sdkPath.resolve(".install/core.snapshot.json"), new byte[0]);
+  }
+
+  @Test
+  public void testResolve() {
+    CloudSdkDescriptor descriptor = CloudSdkDescriptor.resolve(sdkPath);
+
+    Assert.assertEquals(sdkPath, descriptor.getSdkPath());
+    Assert.assertEquals("192.0.0", descriptor.getVersion());
+    Assert.assertEquals(Paths.get(System.getProperty("java.home")), descriptor.getJavaHome());
+    Assert.assertEquals(ImmutableList.of("app-engine-java", "core"), descriptor.getComponents());
+    Assert.assertEquals(
+        ImmutableList.of(
+            sdkPath.resolve(".install/app-engine-java.manifest"),
+            sdkPath.resolve(".install/core.manifest")),
+        descriptor.getComponentManifests());
+  }
+
+  @Test
+  public void testResolve_notInstalled() throws IOException {
+    CloudSdkDescriptor descriptor =
+        CloudSdkDescriptor.resolve(tempFolder.newFolder("missing").toPath());
+
+    Assert.assertNull(descriptor.getVersion());
+    Assert.assertTrue(descriptor.getComponents().isEmpty());
+  }
+
+  @Test
+  public void testForSdk_sameBuild() throws IOException {
+    Object build = new Object();
+    CloudSdkDescriptor descriptor = CloudSdkDescriptor.forSdk(sdkPath, build);
+
+    // within a build the sdk isn't looked at again
+    Files.write(sdkPath.resolve("VERSION"), "193.0.0".getBytes(StandardCharsets.UTF_8));
+    sdkPath.resolve("VERSION").toFile().setLastModified(0);
+
+    Assert.assertSame(descriptor, CloudSdkDescriptor.forSdk(sdkPath, build));
+  }
+
+  @Test
+  public void testForSdk_laterBuildUnchanged() {
+    CloudSdkDescriptor descriptor = CloudSdkDescriptor.forSdk(sdkPath, new Object());
+
+    Assert.assertSame(descriptor, CloudSdkDescriptor.forSdk(sdkPath, new Object()));
+  }
+
+  @Test
+  public void testForSdk_laterBuildChanged() throws IOException {
+    CloudSdkDescriptor descriptor = CloudSdkDescriptor.forSdk(sdkPath, new Object());
+
+    Files.write(sdkPath.resolve("VERSION"), "193.0.0".getBytes(StandardCharsets.UTF_8));
+    sdkPath.resolve("VERSION").toFile().setLastModified(0);
+    CloudSdkDescriptor updated = CloudSdkDescriptor.forSdk(sdkPath, new Object());
+
+    Assert.assertNotSame(descriptor, updated);
+    Assert.assertEquals("193.0.0", updated.getVersion());
+  }
+}
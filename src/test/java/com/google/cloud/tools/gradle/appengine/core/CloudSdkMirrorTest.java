@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.gradle.api.GradleException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CloudSdkMirrorTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private ProgressListener progressListener;
+
+  private Path mirror;
+  private Path sdkHome;
+
+  /** Setup CloudSdkMirrorTest. */
+  @Before
+  public void setup() throws IOException {
+    mirror = tempFolder.newFolder("mirror").toPath();
+    sdkHome = tempFolder.getRoot().toPath().resolve("managed/192.0.0/google-cloud-sdk");
+  }
+
+  @Test
+  public void testArchiveName() {
+    assertEquals(
+        "google-cloud-sdk-192.0.0-linux-x86_64.tar.gz",
+        CloudSdkMirror.archiveName("192.0.0", "Linux", "amd64"));
+    assertEquals(
+        "google-cloud-sdk-192.0.0-darwin-x86_64.tar.gz",
+        CloudSdkMirror.archiveName("192.0.0", "Mac OS X", "x86_64"));
+    assertEquals(
+        "google-cloud-sdk-192.0.0-windows-x86-bundled-python.zip",
+        CloudSdkMirror.archiveName("192.0.0", "Windows 10", "x86"));
+    assertEquals("google-cloud-sdk.tar.gz", CloudSdkMirror.archiveName(null, "Linux", "amd64"));
+    assertEquals(
+        "google-cloud-sdk-windows-x86_64-bundled-python.zip",
+        CloudSdkMirror.archiveName("LATEST", "Windows 10", "amd64"));
+  }
+
+  @Test
+  public void testFindArchive_archive() throws IOException {
+    Path archive = createArchive(mirror.resolve("sdk.tar.gz"));
+
+    assertEquals(archive.toUri(), new CloudSdkMirror(archive.toUri()).findArchive("192.0.0"));
+  }
+
+  @Test
+  public void testFindArchive_missingFromDirectory() {
+    try {
+      new CloudSdkMirror(mirror.toUri()).findArchive("192.0.0");
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains("does not contain google-cloud-sdk"));
+    }
+  }
+
+  @Test
+  public void testFindArchive_remoteDirectory() {
+    String name =
+        CloudSdkMirror.archiveName(
+            "192.0.0", System.getProperty("os.name"), System.getProperty("os.arch"));
+
+    assertEquals(
+        URI.create("https://mirror.example.com/sdk/" + name),
+        new CloudSdkMirror(URI.create("https://mirror.example.com/sdk/")).findArchive("192.0.0"));
+    assertEquals(
+        URI.create("https://mirror.example.com/sdk.tar.gz"),
+        new CloudSdkMirror(URI.create("https://mirror.example.com/sdk.tar.gz"))
+            .findArchive("192.0.0"));
+  }
+
+  @Test
+  public void testReadChecksum() throws IOException {
+    Path archive = createArchive(mirror.resolve("sdk.tar.gz"));
+    writeChecksum(archive, "0123456789ABCDEF  sdk.tar.gz\n");
+
+    assertEquals("0123456789abcdef", CloudSdkMirror.readChecksum(archive.toUri()));
+  }
+
+  @Test
+  public void testReadChecksum_missing() throws IOException {
+    Path archive = createArchive(mirror.resolve("sdk.tar.gz"));
+
+    try {
+      CloudSdkMirror.readChecksum(archive.toUri());
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("Missing checksum "));
+    }
+  }
+
+  @Test
+  public void testExtract() throws IOException {
+    Path archive = createArchive(mirror.resolve("sdk.tar.gz"));
+
+    CloudSdkMirror.extract(archive, sha256(archive), sdkHome, progressListener);
+
+    Path gcloud = sdkHome.resolve("bin/gcloud");
+    assertEquals("gcloud", new String(Files.readAllBytes(gcloud), StandardCharsets.UTF_8));
+    if (gcloud.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      assertTrue(Files.isExecutable(gcloud));
+    }
+    // only the installation is left behind
+    try (Stream<Path> siblings = Files.list(sdkHome.getParent())) {
+      assertEquals(1, siblings.count());
+    }
+    verify(progressListener).start(anyString(), eq(Files.size(archive)));
+    verify(progressListener).done();
+  }
+
+  @Test
+  public void testExtract_checksumMismatch() throws IOException {
+    Path archive = createArchive(mirror.resolve("sdk.tar.gz"));
+
+    try {
+      CloudSdkMirror.extract(archive, "0123456789abcdef", sdkHome, progressListener);
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("Checksum mismatch for "));
+    }
+    // nothing of the extracted tree is left behind
+    try (Stream<Path> siblings = Files.list(sdkHome.getParent())) {
+      assertEquals(0, siblings.count());
+    }
+  }
+
+  @Test
+  public void testExtract_symbolicLinkOutside() throws IOException {
+    TarArchiveEntry link =
+        new TarArchiveEntry("google-cloud-sdk/bin/python", TarArchiveEntry.LF_SYMLINK);
+    link.setLinkName("../../../../python");
+    Path archive = createArchive(mirror.resolve("sdk.tar.gz"), link);
+
+    try {
+      CloudSdkMirror.extract(archive, sha256(archive), sdkHome, progressListener);
+      fail();
+    } catch (IOException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("Blocked symbolic link outside"));
+    }
+    assertFalse(Files.exists(sdkHome));
+  }
+
+  @Test
+  public void testExtract_throughSymbolicLink() throws IOException {
+    TarArchiveEntry link = new TarArchiveEntry("google-cloud-sdk/lib", TarArchiveEntry.LF_SYMLINK);
+    link.setLinkName("bin");
+    Path archive =
+        createArchive(
+            mirror.resolve("sdk.tar.gz"), link, new TarArchiveEntry("google-cloud-sdk/lib/gcloud"));
+
+    try {
+      CloudSdkMirror.extract(archive, sha256(archive), sdkHome, progressListener);
+      fail();
+    } catch (IOException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("Blocked unzipping files through"));
+    }
+    assertFalse(Files.exists(sdkHome));
+  }
+
+  @Test
+  public void testConfigureComponents() throws IOException {
+    Files.createDirectories(sdkHome);
+    Files.write(mirror.resolve(CloudSdkMirror.COMPONENTS_SNAPSHOT), new byte[0]);
+    Files.write(
+        sdkHome.resolve("properties"),
+        "[core]\ndisable_usage_reporting = True\n".getBytes(StandardCharsets.UTF_8));
+    CloudSdkMirror cloudSdkMirror = new CloudSdkMirror(mirror.toUri());
+
+    cloudSdkMirror.configureComponents(sdkHome);
+    cloudSdkMirror.configureComponents(sdkHome);
+
+    List<String> properties =
+        Files.readAllLines(sdkHome.resolve("properties"), StandardCharsets.UTF_8);
+    assertEquals(4, properties.size());
+    assertEquals("[component_manager]", properties.get(2));
+    assertEquals(
+        "snapshot_url = "
+            + mirror.resolve(CloudSdkMirror.COMPONENTS_SNAPSHOT).toAbsolutePath().toUri(),
+        properties.get(3));
+  }
+
+  @Test
+  public void testConfigureComponents_noSnapshot() throws IOException {
+    Files.createDirectories(sdkHome);
+
+    new CloudSdkMirror(mirror.toUri()).configureComponents(sdkHome);
+
+    assertFalse(Files.exists(sdkHome.resolve("properties")));
+  }
+
+  // the bin/gcloud script, followed by entries without content
+  private static Path createArchive(Path archive, TarArchiveEntry... entries) throws IOException {
+    try (OutputStream out = Files.newOutputStream(archive);
+        TarArchiveOutputStream tar =
+            new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+      byte[] content = "gcloud".getBytes(StandardCharsets.UTF_8);
+      TarArchiveEntry entry = new TarArchiveEntry("google-cloud-sdk/bin/gcloud");
+      entry.setMode(0755);
+      entry.setSize(content.length);
+      tar.putArchiveEntry(entry);
+      tar.write(content);
+      tar.closeArchiveEntry();
+      for (TarArchiveEntry empty : entries) {
+        tar.putArchiveEntry(empty);
+        tar.closeArchiveEntry();
+      }
+    }
+    return archive;
+  }
+
+  private static String sha256(Path file) throws IOException {
+    return MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+  }
+
+  private static void writeChecksum(Path archive, String content) throws IOException {
+    Files.write(
+        archive.resolveSibling(archive.getFileName() + ".sha256"),
+        content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CloudSdkUpdateCheckTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path cacheFile;
+  private Path sdkHome;
+
+  /** Setup CloudSdkUpdateCheckTest. */
+  @Before
+  public void setup() {
+    cacheFile = tempFolder.getRoot().toPath().resolve("caches/cloud-sdk-checks.json");
+    sdkHome = tempFolder.getRoot().toPath().resolve("LATEST/google-cloud-sdk");
+  }
+
+  @Test
+  public void testIsDue_neverChecked() {
+    assertTrue(new CloudSdkUpdateCheck(cacheFile, TimeUnit.HOURS.toMillis(24)).isDue(sdkHome));
+  }
+
+  @Test
+  public void testIsDue_checkedWithinInterval() throws IOException {
+    new CloudSdkUpdateCheck(cacheFile, TimeUnit.HOURS.toMillis(24)).recordCheck(sdkHome);
+
+    CloudSdkUpdateCheck updateCheck =
+        new CloudSdkUpdateCheck(cacheFile, TimeUnit.HOURS.toMillis(24));
+    assertFalse(updateCheck.isDue(sdkHome));
+    assertTrue(updateCheck.isDue(tempFolder.getRoot().toPath().resolve("other")));
+  }
+
+  @Test
+  public void testIsDue_noInterval() throws IOException {
+    CloudSdkUpdateCheck updateCheck = new CloudSdkUpdateCheck(cacheFile, 0);
+    updateCheck.recordCheck(sdkHome);
+
+    assertTrue(updateCheck.isDue(sdkHome));
+  }
+
+  @Test
+  public void testIsDue_brokenRecord() throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    Files.write(cacheFile, "{not json".getBytes(StandardCharsets.UTF_8));
+    CloudSdkUpdateCheck updateCheck =
+        new CloudSdkUpdateCheck(cacheFile, TimeUnit.HOURS.toMillis(24));
+
+    assertTrue(updateCheck.isDue(sdkHome));
+    updateCheck.recordCheck(sdkHome);
+    assertFalse(updateCheck.isDue(sdkHome));
+  }
+}
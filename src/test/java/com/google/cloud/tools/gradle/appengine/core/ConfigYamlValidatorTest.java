@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class ConfigYamlValidatorTest {
+
+  private static List<String> validate(String fileName, String... lines) {
+    return ConfigYamlValidator.validate(
+        fileName, new StringReader(Joiner.on('\n').join(lines) + "\n"));
+  }
+
+  @Test
+  public void testValidate_validConfigs() {
+    assertEquals(
+        Collections.emptyList(),
+        validate(
+            "cron.yaml",
+            "cron:",
+            "- description: daily summary job",
+            "  url: /tasks/summary",
+            "  schedule: every 24 hours",
+            "  retry_parameters:",
+            "    job_retry_limit: 2",
+            "    min_backoff_seconds: 2.5",
+            "    max_backoff_seconds: 10"));
+    assertEquals(
+        Collections.emptyList(),
+        validate(
+            "dispatch.yaml",
+            "dispatch:",
+            "- url: '*/favicon.ico'",
+            "  service: default",
+            "- url: simple-sample.appspot.com/mobile/*",
+            "  service: mobile-frontend"));
+    assertEquals(
+        Collections.emptyList(),
+        validate(
+            "dos.yaml",
+            "blacklist:",
+            "- subnet: 1.2.3.4",
+            "- subnet: 10.0.0.1/24",
+            "  description: an IPv4 subnet",
+            "- subnet: abcd::123:4567/48"));
+    assertEquals(
+        Collections.emptyList(),
+        validate(
+            "index.yaml",
+            "indexes:",
+            "- kind: Cat",
+            "  ancestor: no",
+            "  properties:",
+            "  - name: name",
+            "  - name: age",
+            "    direction: desc",
+            "- kind: Store",
+            "  ancestor: yes"));
+    assertEquals(
+        Collections.emptyList(),
+        validate(
+            "queue.yaml",
+            "total_storage_limit: 120M",
+            "queue:",
+            "- name: fooqueue",
+            "  rate: 1/s",
+            "  bucket_size: 40",
+            "  retry_parameters:",
+            "    task_retry_limit: 7",
+            "    task_age_limit: 2d",
+            "- name: pull-queue",
+            "  mode: pull",
+            "  acl:",
+            "  - user_email: bar@foo.com"));
+  }
+
+  @Test
+  public void testValidate_emptyConfig() {
+    assertEquals(Collections.emptyList(), validate("cron.yaml", ""));
+    assertEquals(Collections.emptyList(), validate("queue.yaml", "queue:"));
+  }
+
+  @Test
+  public void testValidate_invalidYaml() {
+    List<String> problems = validate("cron.yaml", "cron:", "- url: /a", "  schedule: [every");
+    assertEquals(1, problems.size());
+    assertTrue(problems.get(0), problems.get(0).startsWith("cron.yaml:4: invalid yaml"));
+  }
+
+  @Test
+  public void testValidate_cron() {
+    assertEquals(
+        Collections.singletonList("cron.yaml:2: cron job is missing required key 'schedule'"),
+        validate("cron.yaml", "cron:", "- url: /a"));
+    assertEquals(
+        ImmutableList.of(
+            "cron.yaml:3: unknown key 'shedule' in cron job",
+            "cron.yaml:2: cron job is missing required key 'schedule'"),
+        validate("cron.yaml", "cron:", "- url: /a", "  shedule: every 5 minutes"));
+    assertEquals(
+        Collections.singletonList("cron.yaml:2: cron url must start with '/', found 'tasks'"),
+        validate("cron.yaml", "cron:", "- url: tasks", "  schedule: every 5 minutes"));
+    assertEquals(
+        Collections.singletonList("cron.yaml:3: invalid cron interval 'every 5 seconds'"),
+        validate("cron.yaml", "cron:", "- url: /a", "  schedule: every 5 seconds"));
+    assertEquals(
+        Collections.singletonList("cron.yaml:5: 6 is out of range, expected between 0 and 5"),
+        validate(
+            "cron.yaml",
+            "cron:",
+            "- url: /a",
+            "  schedule: every 5 minutes",
+            "  retry_parameters:",
+            "    job_retry_limit: 6"));
+  }
+
+  @Test
+  public void testValidate_cronLimit() {
+    StringBuilder cron = new StringBuilder("cron:\n");
+    for (int i = 0; i <= ConfigYamlValidator.MAX_CRON_JOBS; i++) {
+      cron.append("- url: /job").append(i).append("\n  schedule: every 1 hours\n");
+    }
+    assertEquals(
+        Collections.singletonList(
+            "cron.yaml:1: too many cron jobs, found 251 but the limit is 250"),
+        ConfigYamlValidator.validate("cron.yaml", new StringReader(cron.toString())));
+  }
+
+  @Test
+  public void testValidate_dispatch() {
+    assertEquals(
+        Collections.singletonList(
+            "dispatch.yaml:2: dispatch url must not include a scheme, found 'http://a.com/*'"),
+        validate("dispatch.yaml", "dispatch:", "- url: http://a.com/*", "  service: a"));
+    assertEquals(
+        Collections.singletonList(
+            "dispatch.yaml:2: dispatch url path may only use '*' as a suffix, found 'a.com/*/b'"),
+        validate("dispatch.yaml", "dispatch:", "- url: a.com/*/b", "  service: a"));
+    assertEquals(
+        Collections.singletonList(
+            "dispatch.yaml:2: dispatch rule is missing required key 'service'"),
+        validate("dispatch.yaml", "dispatch:", "- url: a.com/*"));
+  }
+
+  @Test
+  public void testValidate_dos() {
+    assertEquals(
+        Collections.singletonList("dos.yaml:3: invalid subnet '1.2.3.4/33'"),
+        validate("dos.yaml", "blacklist:", "- subnet: 1.2.3.4", "- subnet: 1.2.3.4/33"));
+  }
+
+  @Test
+  public void testValidate_index() {
+    assertEquals(
+        Collections.singletonList("index.yaml:5: direction must be asc or desc, found 'up'"),
+        validate(
+            "index.yaml",
+            "indexes:",
+            "- kind: Cat",
+            "  properties:",
+            "  - name: age",
+            "    direction: up"));
+    assertEquals(
+        Collections.singletonList("index.yaml:2: index without ancestor must declare 'properties'"),
+        validate("index.yaml", "indexes:", "- kind: Cat"));
+  }
+
+  @Test
+  public void testValidate_queue() {
+    assertEquals(
+        Collections.singletonList("queue.yaml:2: push queue must declare 'rate'"),
+        validate("queue.yaml", "queue:", "- name: a"));
+    assertEquals(
+        Collections.singletonList("queue.yaml:4: duplicate queue 'a'"),
+        validate("queue.yaml", "queue:", "- name: a", "  rate: 5/s", "- name: a", "  rate: 5/s"));
+    assertEquals(
+        Collections.singletonList("queue.yaml:4: 501 is out of range, expected between 1 and 500"),
+        validate("queue.yaml", "queue:", "- name: a", "  rate: 5/s", "  bucket_size: 501"));
+    assertEquals(
+        Collections.singletonList("queue.yaml:4: 'rate' is not allowed on a pull queue"),
+        validate("queue.yaml", "queue:", "- name: a", "  mode: pull", "  rate: 5/s"));
+    assertEquals(
+        Collections.singletonList("queue.yaml:3: invalid rate '5 per second'"),
+        validate("queue.yaml", "queue:", "- name: a", "  rate: 5 per second"));
+  }
+}
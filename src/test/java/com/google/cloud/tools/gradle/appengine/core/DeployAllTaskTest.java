@@ -18,6 +18,8 @@ package com.google.cloud.tools.gradle.appengine.core;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,6 +30,8 @@ import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Before;
@@ -153,4 +157,103 @@ public class DeployAllTaskTest {
     assertTrue(captured.getDeployables().contains(appYaml));
     assertFalse(captured.getDeployables().contains(validInDifferentDirYaml));
   }
+
+  @Test
+  public void testDeployAllAction_skipsUnchanged() throws AppEngineException, IOException {
+    deployConfig.setAppEngineDirectory(stageDir);
+    deployConfig.setProjectId("test-project");
+    deployConfig.setVersion("test-version");
+    tempFolder.newFile("staging/app.yaml");
+
+    deployAllTask.deployAllAction();
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(1)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployAllAction_force() throws AppEngineException, IOException {
+    deployConfig.setAppEngineDirectory(stageDir);
+    deployConfig.setProjectId("test-project");
+    deployConfig.setVersion("test-version");
+    tempFolder.newFile("staging/app.yaml");
+
+    deployAllTask.deployAllAction();
+    deployAllTask.setForce(true);
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(2)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployAllAction_failedDeployNotRecorded() throws AppEngineException, IOException {
+    deployConfig.setAppEngineDirectory(stageDir);
+    deployConfig.setProjectId("test-project");
+    deployConfig.setVersion("test-version");
+    tempFolder.newFile("staging/app.yaml");
+
+    Mockito.doThrow(new AppEngineException("failed"))
+        .doNothing()
+        .when(deploy)
+        .deploy(Mockito.any(DeployConfiguration.class));
+    try {
+      deployAllTask.deployAllAction();
+      fail();
+    } catch (AppEngineException ex) {
+      // expected
+    }
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(2)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployAllAction_skipsUnchangedConfigs() throws AppEngineException, IOException {
+    deployConfig.setAppEngineDirectory(stageDir);
+    deployConfig.setProjectId("test-project");
+    final File appYaml = tempFolder.newFile("staging/app.yaml");
+    final File cronYaml = tempFolder.newFile("staging/cron.yaml");
+    final File queueYaml = tempFolder.newFile("staging/queue.yaml");
+
+    deployAllTask.deployAllAction();
+    Files.write(queueYaml.toPath(), "queue:".getBytes(StandardCharsets.UTF_8));
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    DeployConfiguration captured = deployCapture.getValue();
+    assertTrue(captured.getDeployables().contains(appYaml));
+    assertFalse(captured.getDeployables().contains(cronYaml));
+    assertTrue(captured.getDeployables().contains(queueYaml));
+  }
+
+  @Test
+  public void testDeployAllAction_forceDeploysAllConfigs() throws AppEngineException, IOException {
+    deployConfig.setAppEngineDirectory(stageDir);
+    deployConfig.setProjectId("test-project");
+    tempFolder.newFile("staging/app.yaml");
+    final File cronYaml = tempFolder.newFile("staging/cron.yaml");
+
+    deployAllTask.deployAllAction();
+    deployAllTask.setForce(true);
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    assertTrue(deployCapture.getValue().getDeployables().contains(cronYaml));
+  }
+
+  @Test
+  public void testDeployAllAction_configsTrackedPerProject()
+      throws AppEngineException, IOException {
+    deployConfig.setAppEngineDirectory(stageDir);
+    deployConfig.setProjectId("test-project");
+    tempFolder.newFile("staging/app.yaml");
+    final File cronYaml = tempFolder.newFile("staging/cron.yaml");
+
+    deployAllTask.deployAllAction();
+    deployConfig.setProjectId("other-project");
+    deployAllTask.deployAllAction();
+
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    assertTrue(deployCapture.getValue().getDeployables().contains(cronYaml));
+  }
 }
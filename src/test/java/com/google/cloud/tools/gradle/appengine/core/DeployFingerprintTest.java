@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.base.Charsets;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeployFingerprintTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private DeployFingerprint deployFingerprint;
+  private DeployExtension deployConfig;
+  private File appYaml;
+
+  /** Setup DeployFingerprintTest. */
+  @Before
+  public void setup() throws IOException {
+    deployFingerprint =
+        new DeployFingerprint(tempFolder.getRoot().toPath().resolve("fingerprints"), null, 1);
+
+    File stageDir = tempFolder.newFolder("staging");
+    appYaml = tempFolder.newFile("staging/app.yaml");
+    tempFolder.newFolder("staging", "WEB-INF");
+    Files.write(
+        stageDir.toPath().resolve("WEB-INF/web.xml"), "<web-app/>".getBytes(Charsets.UTF_8));
+
+    Project tempProject = ProjectBuilder.builder().build();
+    DeployExtension extension = new DeployExtension(tempProject);
+    extension.setProjectId("test-project");
+    extension.setVersion("test-version");
+    deployConfig = new DeployExtension(extension, Collections.singletonList(appYaml));
+  }
+
+  @Test
+  public void testCompute_stable() throws IOException {
+    Assert.assertEquals(
+        deployFingerprint.compute(deployConfig), deployFingerprint.compute(deployConfig));
+  }
+
+  @Test
+  public void testCompute_stagedFileChanged() throws IOException {
+    String before = deployFingerprint.compute(deployConfig);
+    Files.write(
+        appYaml.toPath().resolveSibling("WEB-INF/web.xml"),
+        "<web-app></web-app>".getBytes(Charsets.UTF_8));
+    Assert.assertNotEquals(before, deployFingerprint.compute(deployConfig));
+  }
+
+  @Test
+  public void testCompute_stagedFileAdded() throws IOException {
+    String before = deployFingerprint.compute(deployConfig);
+    tempFolder.newFile("staging/WEB-INF/new.xml");
+    Assert.assertNotEquals(before, deployFingerprint.compute(deployConfig));
+  }
+
+  @Test
+  public void testCompute_parameterChanged() throws IOException {
+    String before = deployFingerprint.compute(deployConfig);
+    deployConfig.setPromote(false);
+    Assert.assertNotEquals(before, deployFingerprint.compute(deployConfig));
+  }
+
+  @Test
+  public void testCompute_noVersion() throws IOException {
+    deployConfig.setVersion(null);
+    Assert.assertNull(deployFingerprint.compute(deployConfig));
+  }
+
+  @Test
+  public void testIsUnchanged() throws IOException {
+    String fingerprint = deployFingerprint.compute(deployConfig);
+    Assert.assertFalse(deployFingerprint.isUnchanged(deployConfig, fingerprint));
+
+    deployFingerprint.record(deployConfig, fingerprint);
+    Assert.assertTrue(deployFingerprint.isUnchanged(deployConfig, fingerprint));
+
+    // another version of the same app is a different deployment target
+    deployConfig.setVersion("other-version");
+    Assert.assertFalse(
+        deployFingerprint.isUnchanged(deployConfig, deployFingerprint.compute(deployConfig)));
+  }
+
+  @Test
+  public void testIsUnchanged_rollback() throws IOException {
+    String v1 = deployFingerprint.compute(deployConfig);
+    deployFingerprint.record(deployConfig, v1);
+    deployConfig.setVersion("v2");
+    deployFingerprint.record(deployConfig, deployFingerprint.compute(deployConfig));
+
+    // v2 is serving now, promoting v1 again must not be skipped
+    deployConfig.setVersion("test-version");
+    Assert.assertFalse(deployFingerprint.isUnchanged(deployConfig, v1));
+  }
+
+  @Test
+  public void testIsUnchanged_otherService() throws IOException {
+    String fingerprint = deployFingerprint.compute(deployConfig);
+    deployFingerprint.record(deployConfig, fingerprint);
+
+    Files.write(appYaml.toPath(), "service: backend\n".getBytes(Charsets.UTF_8));
+    deployFingerprint.record(deployConfig, deployFingerprint.compute(deployConfig));
+
+    // deploying another service leaves the default service's fingerprint alone
+    Files.write(appYaml.toPath(), new byte[0]);
+    Assert.assertTrue(deployFingerprint.isUnchanged(deployConfig, fingerprint));
+  }
+
+  @Test
+  public void testTargets() throws IOException {
+    Files.write(
+        appYaml.toPath(), "runtime: java8\nservice: 'backend'  # api\n".getBytes(Charsets.UTF_8));
+    File cronYaml = tempFolder.newFile("staging/cron.yaml");
+    DeployExtension deployAll = new DeployExtension(deployConfig, Arrays.asList(cronYaml, appYaml));
+
+    Assert.assertEquals(
+        Arrays.asList("cron.yaml", "service:backend"), DeployFingerprint.targets(deployAll));
+  }
+
+  @Test
+  public void testIsUnchanged_nullFingerprint() throws IOException {
+    deployFingerprint.record(deployConfig, null);
+    Assert.assertFalse(deployFingerprint.isUnchanged(deployConfig, null));
+  }
+}
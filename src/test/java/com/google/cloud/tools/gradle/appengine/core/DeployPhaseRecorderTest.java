@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeployPhaseRecorderTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final AtomicLong clock = new AtomicLong(1000);
+  private File appYaml;
+
+  /** Setup DeployPhaseRecorderTest. */
+  @Before
+  public void setup() throws IOException {
+    appYaml = tempFolder.newFile("app.yaml");
+    Files.write(appYaml.toPath(), "runtime: java8".getBytes(Charsets.UTF_8));
+  }
+
+  private void line(long elapsed, String line, DeployPhaseRecorder recorder) {
+    clock.addAndGet(elapsed);
+    recorder.onOutputLine(line);
+  }
+
+  @Test
+  public void testStandardDeployment() {
+    DeployPhaseRecorder recorder =
+        new DeployPhaseRecorder(":appengineDeploy", Collections.singletonList(appYaml), clock::get);
+    recorder.start();
+    line(500, "Beginning deployment of service [default]...", recorder);
+    line(10, "Some files were skipped. Pass `--verbosity=info` to see which ones.", recorder);
+    line(2000, "╔════════════════════════════════════════════════════════════╗", recorder);
+    line(0, "╠═ Uploading 12 files to Google Cloud Storage               ═╣", recorder);
+    line(0, "╚════════════════════════════════════════════════════════════╝", recorder);
+    line(3000, "File upload done.", recorder);
+    line(8000, "Updating service [default]...done.", recorder);
+    line(1500, "Setting traffic split for service [default]...done.", recorder);
+    line(10, "Deployed service [default] to [https://test-project.appspot.com]", recorder);
+    line(100, "", recorder);
+    recorder.finish(true);
+
+    Map<String, Long> durations = recorder.getPhaseDurations();
+    assertEquals(Long.valueOf(500), durations.get(DeployPhaseRecorder.STARTUP));
+    assertEquals(Long.valueOf(2010), durations.get(DeployPhaseRecorder.HASHING));
+    assertEquals(Long.valueOf(3000), durations.get(DeployPhaseRecorder.UPLOAD));
+    assertEquals(Long.valueOf(8000), durations.get(DeployPhaseRecorder.VERSION));
+    assertEquals(Long.valueOf(1500), durations.get(DeployPhaseRecorder.PROMOTE));
+    assertEquals(12, recorder.getUploadedFiles());
+  }
+
+  @Test
+  public void testFlexibleDeployment() {
+    DeployPhaseRecorder recorder =
+        new DeployPhaseRecorder(":appengineDeploy", Collections.singletonList(appYaml), clock::get);
+    recorder.start();
+    line(500, "Beginning deployment of service [default]...", recorder);
+    line(1000, "Building and pushing image for service [default]", recorder);
+    line(100, "Started cloud build [1234].", recorder);
+    line(60000, "DONE", recorder);
+    line(90000, "Updating service [default] (this may take several minutes)...done.", recorder);
+    line(10, "Deployed service [default] to [https://test-project.appspot.com]", recorder);
+    recorder.finish(true);
+
+    Map<String, Long> durations = recorder.getPhaseDurations();
+    assertEquals(Long.valueOf(1000), durations.get(DeployPhaseRecorder.HASHING));
+    assertEquals(Long.valueOf(60100), durations.get(DeployPhaseRecorder.BUILD));
+    assertEquals(Long.valueOf(90000), durations.get(DeployPhaseRecorder.VERSION));
+    assertEquals(0, recorder.getUploadedFiles());
+  }
+
+  @Test
+  public void testWriteReport() throws IOException {
+    DeployPhaseRecorder recorder =
+        new DeployPhaseRecorder(":appengineDeploy", Collections.singletonList(appYaml), clock::get);
+    recorder.start();
+    line(500, "Beginning deployment of service [default]...", recorder);
+    line(10, "Deployed service [default] to [https://test-project.appspot.com]", recorder);
+    recorder.finish(false);
+
+    Project project = ProjectBuilder.builder().withProjectDir(tempFolder.newFolder()).build();
+    DeployPhaseRecorder.writeReport(project, Collections.singletonList(recorder));
+
+    Path report = project.getBuildDir().toPath().resolve("reports/appengine/deploy.json");
+    JsonObject deployment =
+        new JsonParser()
+            .parse(new String(Files.readAllBytes(report), Charsets.UTF_8))
+            .getAsJsonObject()
+            .getAsJsonArray("deployments")
+            .get(0)
+            .getAsJsonObject();
+    assertEquals(":appengineDeploy", deployment.get("deployment").getAsString());
+    assertEquals("default", deployment.getAsJsonArray("services").get(0).getAsString());
+    assertFalse(deployment.get("success").getAsBoolean());
+    assertEquals(14, deployment.get("stagedBytes").getAsLong());
+    assertEquals(510, deployment.get("durationMillis").getAsLong());
+    JsonObject hashing = deployment.getAsJsonArray("phases").get(1).getAsJsonObject();
+    assertEquals("hashing", hashing.get("name").getAsString());
+    assertEquals(500, hashing.get("offsetMillis").getAsLong());
+    assertEquals(10, hashing.get("durationMillis").getAsLong());
+  }
+
+  @Test
+  public void testWriteReport_failureDoesNotThrow() throws IOException {
+    DeployPhaseRecorder recorder =
+        new DeployPhaseRecorder(":appengineDeploy", Collections.singletonList(appYaml), clock::get);
+    Project project = ProjectBuilder.builder().withProjectDir(tempFolder.newFolder()).build();
+    // a file where the reports directory should be
+    Files.createDirectories(project.getBuildDir().toPath());
+    Files.write(project.getBuildDir().toPath().resolve("reports"), new byte[0]);
+
+    DeployPhaseRecorder.writeReport(project, Collections.singletonList(recorder));
+
+    assertFalse(Files.exists(project.getBuildDir().toPath().resolve("reports/appengine")));
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.api.deploy.DeployConfiguration;
+import com.google.cloud.tools.appengine.cloudsdk.CloudSdkAppEngineDeployment;
+import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeployServicesTaskTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private Gcloud gcloud;
+  @Mock private CloudSdkAppEngineDeployment deploy;
+
+  private Project rootProject;
+  private DeployServicesTask deployServicesTask;
+  private ArgumentCaptor<DeployConfiguration> deployCapture;
+
+  /** Setup DeployServicesTaskTest. */
+  @Before
+  public void setup() throws IOException {
+    rootProject = ProjectBuilder.builder().withProjectDir(tempFolder.newFolder("root")).build();
+    deployServicesTask = rootProject.getTasks().create("deployServices", DeployServicesTask.class);
+    deployCapture = ArgumentCaptor.forClass(DeployConfiguration.class);
+
+    when(gcloud.newDeployment(Mockito.any(ProcessHandler.class))).thenReturn(deploy);
+  }
+
+  private File addService(String name, String version) throws IOException {
+    return addService(name, version, gcloud);
+  }
+
+  private File addService(String name, String version, Gcloud gcloud) throws IOException {
+    Project project = ProjectBuilder.builder().withName(name).withParent(rootProject).build();
+    File appYaml = new File(project.getBuildDir(), "staged-app/app.yaml");
+    Files.createDirectories(appYaml.getParentFile().toPath());
+    Files.write(appYaml.toPath(), Collections.singletonList("service: " + name));
+
+    DeployExtension deployConfig = new DeployExtension(project);
+    deployConfig.setProjectId("test-project");
+    deployConfig.setVersion(version);
+    DeployTask deployTask = project.getTasks().create("deploy", DeployTask.class);
+    deployTask.dependsOn(project.getTasks().create("stage"));
+    deployTask.setDeployConfig(deployConfig, Collections.singletonList(appYaml));
+    deployTask.setGcloud(gcloud);
+    deployServicesTask.addService(deployTask);
+    return appYaml;
+  }
+
+  @Test
+  public void testDeployServices_batched() throws AppEngineException, IOException {
+    final File frontend = addService("frontend", "v1");
+    final File backend = addService("backend", "v1");
+
+    deployServicesTask.deployServicesAction();
+
+    verify(deploy).deploy(deployCapture.capture());
+    List<File> deployables = deployCapture.getValue().getDeployables();
+    assertEquals(2, deployables.size());
+    assertTrue(deployables.contains(frontend));
+    assertTrue(deployables.contains(backend));
+    assertEquals("v1", deployCapture.getValue().getVersion());
+  }
+
+  @Test
+  public void testDeployServices_differentParametersNotBatched()
+      throws AppEngineException, IOException {
+    addService("frontend", "v1");
+    addService("backend", "v2");
+
+    deployServicesTask.deployServicesAction();
+
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    for (DeployConfiguration captured : deployCapture.getAllValues()) {
+      assertEquals(1, captured.getDeployables().size());
+    }
+  }
+
+  @Test
+  public void testDeployServices_differentCredentialsNotBatched()
+      throws AppEngineException, IOException {
+    Gcloud otherGcloud = Mockito.mock(Gcloud.class);
+    when(otherGcloud.newDeployment(Mockito.any(ProcessHandler.class))).thenReturn(deploy);
+    addService("frontend", "v1");
+    addService("backend", "v1", otherGcloud);
+
+    deployServicesTask.deployServicesAction();
+
+    verify(gcloud).newDeployment(Mockito.any(ProcessHandler.class));
+    verify(otherGcloud).newDeployment(Mockito.any(ProcessHandler.class));
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+  }
+
+  @Test
+  public void testDeployServices_unbatched() throws AppEngineException, IOException {
+    addService("frontend", "v1");
+    addService("backend", "v1");
+    addService("worker", "v1");
+    deployServicesTask.setBatch(false);
+    deployServicesTask.setMaxParallelDeploys(3);
+
+    deployServicesTask.deployServicesAction();
+
+    verify(deploy, times(3)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployServices_skipsUnchanged() throws AppEngineException, IOException {
+    addService("frontend", "v1");
+    addService("backend", "v1");
+
+    deployServicesTask.deployServicesAction();
+    deployServicesTask.deployServicesAction();
+    deployServicesTask.setForce(true);
+    deployServicesTask.deployServicesAction();
+
+    verify(deploy, times(2)).deploy(Mockito.any(DeployConfiguration.class));
+  }
+
+  @Test
+  public void testDeployServices_failuresReported() throws AppEngineException, IOException {
+    addService("frontend", "v1");
+    addService("backend", "v2");
+    deployServicesTask.setBatch(false);
+    Mockito.doThrow(new AppEngineException("quota exceeded"))
+        .when(deploy)
+        .deploy(Mockito.any(DeployConfiguration.class));
+
+    try {
+      deployServicesTask.deployServicesAction();
+      fail();
+    } catch (GradleException ex) {
+      assertTrue(ex.getMessage().startsWith("2 of 2 deployments failed"));
+      assertTrue(ex.getMessage().contains("[:frontend]: quota exceeded"));
+      assertTrue(ex.getMessage().contains("[:backend]: quota exceeded"));
+    }
+  }
+
+  @Test
+  public void testSetMaxParallelDeploys_invalid() {
+    try {
+      deployServicesTask.setMaxParallelDeploys(0);
+      fail();
+    } catch (GradleException ex) {
+      assertEquals("maxParallelDeploys must be at least 1", ex.getMessage());
+    }
+  }
+
+  @Test
+  public void testDeployServices_pipelined() throws AppEngineException, IOException {
+    final File frontend = addService("frontend", "v1");
+    final File backend = addService("backend", "v1");
+    deployServicesTask.setPipelined(true);
+
+    TaskExecutionGraph graph = mock(TaskExecutionGraph.class);
+    when(graph.hasTask(Mockito.any(Task.class))).thenReturn(true);
+    deployServicesTask.startPipeline(graph);
+    ArgumentCaptor<TaskExecutionListener> listener =
+        ArgumentCaptor.forClass(TaskExecutionListener.class);
+    verify(graph).addTaskExecutionListener(listener.capture());
+
+    // frontend is uploaded as soon as it is staged, before the task itself runs
+    Task frontendStage = rootProject.project(":frontend").getTasks().getByName("stage");
+    listener.getValue().afterExecute(frontendStage, mock(TaskState.class));
+    verify(deploy, timeout(5000)).deploy(deployCapture.capture());
+    assertEquals(Collections.singletonList(frontend), deployCapture.getValue().getDeployables());
+
+    deployServicesTask.deployServicesAction();
+
+    verify(deploy, times(2)).deploy(deployCapture.capture());
+    assertEquals(Collections.singletonList(backend), deployCapture.getValue().getDeployables());
+  }
+
+  @Test
+  public void testStartPipeline_notPipelined() {
+    TaskExecutionGraph graph = mock(TaskExecutionGraph.class);
+    deployServicesTask.startPipeline(graph);
+    verify(graph, Mockito.never()).addTaskExecutionListener(Mockito.any());
+  }
+}
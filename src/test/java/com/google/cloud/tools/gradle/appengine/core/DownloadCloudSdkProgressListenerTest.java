@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.gradle.api.Project;
+import org.gradle.internal.logging.progress.ProgressLogger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DownloadCloudSdkProgressListenerTest {
+
+  private static final long MB = 1024 * 1024;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private ProgressLoggerFactory progressLoggerFactory;
+  @Mock private ProgressLogger rootLogger;
+  @Mock private ProgressLogger downloadLogger;
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private DownloadCloudSdkProgressListener listener;
+
+  /** Setup DownloadCloudSdkProgressListenerTest. */
+  @Before
+  public void setup() {
+    when(progressLoggerFactory.newOperation(DownloadCloudSdkProgressListener.class))
+        .thenReturn(rootLogger);
+    listener =
+        new DownloadCloudSdkProgressListener(
+            progressLoggerFactory, null, new ArrayList<>(), nanoTime::get, 0);
+  }
+
+  @Test
+  public void testDownloadProgress() {
+    when(progressLoggerFactory.newOperation(DownloadCloudSdkProgressListener.class, rootLogger))
+        .thenReturn(downloadLogger);
+
+    listener.start("Installing Cloud SDK", 300);
+    ProgressListener download = listener.newChild(100);
+    download.start("Downloading google-cloud-sdk.tar.gz", 10 * MB);
+    advanceMillis(1000);
+    download.update(2 * MB);
+    // too soon to redraw
+    advanceMillis(100);
+    download.update(MB);
+    advanceMillis(900);
+    download.update(MB);
+    download.done();
+    listener.done();
+
+    verify(rootLogger).setDescription("Installing Cloud SDK");
+    verify(downloadLogger).setDescription("Downloading google-cloud-sdk.tar.gz");
+    verify(downloadLogger).progress("2.0 MB/10.0 MB (20%), 2.0 MB/s, ETA 4s");
+    verify(downloadLogger).progress("4.0 MB/10.0 MB (40%), 2.0 MB/s, ETA 3s");
+    verify(downloadLogger, times(2)).progress(anyString());
+    verify(downloadLogger).completed();
+    verify(rootLogger).completed();
+
+    List<Map<String, Object>> stages = listener.getStages();
+    assertEquals(2, stages.size());
+    assertEquals("Downloading google-cloud-sdk.tar.gz", stages.get(0).get("stage"));
+    assertEquals(2000L, stages.get(0).get("durationMillis"));
+    assertEquals(4 * MB, stages.get(0).get("bytes"));
+    assertEquals(2 * MB, stages.get(0).get("bytesPerSecond"));
+    assertEquals("Installing Cloud SDK", stages.get(1).get("stage"));
+    assertEquals(0L, stages.get(1).get("offsetMillis"));
+  }
+
+  @Test
+  public void testDescribeProgress_unknownTotal() {
+    listener.start("Installing app-engine-java", ProgressListener.UNKNOWN);
+    advanceMillis(500);
+    listener.update(512);
+
+    assertEquals("512 B, 1.0 KB/s", listener.describeProgress(nanoTime.get()));
+  }
+
+  @Test
+  public void testWriteReport() throws IOException {
+    final Project project = ProjectBuilder.builder().withProjectDir(tempFolder.getRoot()).build();
+    listener.start("Installing Cloud SDK", ProgressListener.UNKNOWN);
+    advanceMillis(10);
+    listener.done();
+
+    listener.writeReport(project, false);
+
+    String report =
+        new String(
+            Files.readAllBytes(
+                project.getBuildDir().toPath().resolve("reports/appengine/cloud-sdk-install.json")),
+            StandardCharsets.UTF_8);
+    assertTrue(report, report.contains("\"success\": false"));
+    assertTrue(report, report.contains("\"stage\": \"Installing Cloud SDK\""));
+    assertTrue(report, report.contains("\"durationMillis\": 10"));
+  }
+
+  @Test
+  public void testWriteReport_failureDoesNotThrow() throws IOException {
+    Project project = ProjectBuilder.builder().withProjectDir(tempFolder.getRoot()).build();
+    // a file where the reports directory should be
+    Files.createDirectories(project.getBuildDir().toPath());
+    Files.write(project.getBuildDir().toPath().resolve("reports"), new byte[0]);
+
+    listener.writeReport(project, false);
+
+    assertFalse(Files.exists(project.getBuildDir().toPath().resolve("reports/appengine")));
+  }
+
+  private void advanceMillis(long millis) {
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+}
@@ -31,13 +31,20 @@ import com.google.cloud.tools.managedcloudsdk.components.SdkComponentInstaller;
 import com.google.cloud.tools.managedcloudsdk.components.SdkUpdater;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstaller;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstallerException;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -45,6 +52,8 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class DownloadCloudSdkTaskTest {
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Mock private ManagedCloudSdk managedCloudSdk;
 
   @Mock private SdkInstaller installer;
@@ -63,6 +72,8 @@ public class DownloadCloudSdkTaskTest {
     when(managedCloudSdk.newInstaller()).thenReturn(installer);
     when(managedCloudSdk.newComponentInstaller()).thenReturn(componentInstaller);
     when(managedCloudSdk.newUpdater()).thenReturn(updater);
+    when(managedCloudSdk.getSdkHome())
+        .thenReturn(tempFolder.getRoot().toPath().resolve("LATEST/google-cloud-sdk"));
   }
 
   @Test
@@ -104,6 +115,55 @@ public class DownloadCloudSdkTaskTest {
     verify(managedCloudSdk).newComponentInstaller();
   }
 
+  @Test
+  public void testDownloadCloudSdkAction_installMissingComponentsAtOnce()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    Assume.assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    Path sdkHome = managedCloudSdk.getSdkHome();
+    Files.createDirectories(sdkHome.resolve("bin"));
+    Path gcloud = sdkHome.resolve("bin/gcloud");
+    Files.write(gcloud, "#!/bin/sh\necho \"$@\" > gcloud-args\n".getBytes(StandardCharsets.UTF_8));
+    Assert.assertTrue(gcloud.toFile().setExecutable(true));
+    when(managedCloudSdk.getGcloudPath()).thenReturn(gcloud);
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    downloadCloudSdkTask.setComponents(ImmutableList.of("beta", "cloud-datastore-emulator", "bq"));
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.BETA)).thenReturn(false);
+    when(managedCloudSdk.hasComponent(SdkComponent.CLOUD_DATASTORE_EMULATOR)).thenReturn(false);
+    when(managedCloudSdk.hasComponent(SdkComponent.BQ)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+
+    downloadCloudSdkTask.downloadCloudSdkAction();
+
+    verify(managedCloudSdk, never()).newComponentInstaller();
+    Assert.assertEquals(
+        ImmutableList.of("components install beta cloud-datastore-emulator --quiet"),
+        Files.readAllLines(sdkHome.resolve("gcloud-args"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSetComponents() {
+    downloadCloudSdkTask.setComponents(ImmutableList.of("beta", "app-engine-java"));
+
+    Assert.assertEquals(
+        ImmutableList.of("app-engine-java", "beta"), downloadCloudSdkTask.getComponents());
+  }
+
+  @Test
+  public void testSetComponents_unknown() {
+    try {
+      downloadCloudSdkTask.setComponents(ImmutableList.of("not-a-component"));
+      Assert.fail();
+    } catch (GradleException ex) {
+      Assert.assertTrue(
+          ex.getMessage(),
+          ex.getMessage().startsWith("Unknown Cloud SDK component 'not-a-component', expected"));
+    }
+  }
+
   @Test
   public void testDownloadCloudSdkAction_update()
       throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
@@ -118,4 +178,63 @@ public class DownloadCloudSdkTaskTest {
     verify(managedCloudSdk, never()).newComponentInstaller();
     verify(managedCloudSdk).newUpdater();
   }
+
+  @Test
+  public void testDownloadCloudSdkAction_updateCheckedRecently()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    CloudSdkUpdateCheck.forProject(downloadCloudSdkTask.getProject(), 24)
+        .recordCheck(managedCloudSdk.getSdkHome());
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    downloadCloudSdkTask.downloadCloudSdkAction();
+    verify(managedCloudSdk, never()).isUpToDate();
+    verify(managedCloudSdk, never()).newUpdater();
+  }
+
+  @Test
+  public void testDownloadCloudSdkAction_updateCheckRecorded()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+    downloadCloudSdkTask.downloadCloudSdkAction();
+    Assert.assertFalse(
+        CloudSdkUpdateCheck.forProject(downloadCloudSdkTask.getProject(), 24)
+            .isDue(managedCloudSdk.getSdkHome()));
+  }
+
+  @Test
+  public void testDownloadCloudSdkAction_writesInstallMarker()
+      throws ManagedSdkVerificationException, ManagedSdkVersionMismatchException,
+          InterruptedException, CommandExecutionException, SdkInstallerException, IOException,
+          CommandExitException {
+    downloadCloudSdkTask.setManagedCloudSdk(managedCloudSdk);
+    Path sdkHome = managedCloudSdk.getSdkHome();
+    Files.createDirectories(sdkHome);
+    Files.write(sdkHome.resolve("VERSION"), "192.0.0\n".getBytes(StandardCharsets.UTF_8));
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+
+    downloadCloudSdkTask.downloadCloudSdkAction();
+
+    Assert.assertEquals(
+        sdkHome.resolveSibling(DownloadCloudSdkTask.INSTALL_MARKER).toFile(),
+        downloadCloudSdkTask.getInstallMarker());
+    Assert.assertEquals(
+        ImmutableList.of("version=192.0.0", "components=app-engine-java"),
+        Files.readAllLines(
+            downloadCloudSdkTask.getInstallMarker().toPath(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testGetInstallMarker_noManagedCloudSdk() {
+    Assert.assertNull(downloadCloudSdkTask.getInstallMarker());
+  }
 }
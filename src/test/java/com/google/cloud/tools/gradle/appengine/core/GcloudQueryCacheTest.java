@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gradle.api.logging.Logging;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GcloudQueryCacheTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private final Map<String, String> environment = new HashMap<>();
+  private final AtomicInteger queries = new AtomicInteger();
+  private Path cacheFile;
+  private Path sdkHome;
+  private Path configDirectory;
+
+  /** Setup GcloudQueryCacheTest. */
+  @Before
+  public void setUp() throws IOException {
+    cacheFile = tmp.getRoot().toPath().resolve("cache/gcloud-queries.json");
+    sdkHome = tmp.newFolder("google-cloud-sdk").toPath();
+    configDirectory = tmp.newFolder("gcloud").toPath();
+    Files.createDirectories(configDirectory.resolve("configurations"));
+    Files.write(configDirectory.resolve("active_config"), bytes("default"));
+    Files.write(configDirectory.resolve("configurations/config_default"), bytes("[core]"));
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private GcloudQueryCache newCache(long ttlMillis) {
+    return new GcloudQueryCache(
+        cacheFile,
+        sdkHome,
+        configDirectory,
+        ttlMillis,
+        environment::get,
+        Logging.getLogger(GcloudQueryCacheTest.class));
+  }
+
+  private String query(GcloudQueryCache cache) throws Exception {
+    return cache.get("config project", () -> "project-" + queries.incrementAndGet());
+  }
+
+  @Test
+  public void testReusesAnswer() throws Exception {
+    Assert.assertEquals("project-1", query(newCache(TimeUnit.HOURS.toMillis(1))));
+    Assert.assertEquals("project-1", query(newCache(TimeUnit.HOURS.toMillis(1))));
+    Assert.assertEquals(1, queries.get());
+    Assert.assertTrue(Files.exists(cacheFile));
+  }
+
+  @Test
+  public void testNoTtl() throws Exception {
+    Assert.assertEquals("project-1", query(newCache(0)));
+    Assert.assertEquals("project-2", query(newCache(0)));
+    Assert.assertFalse(Files.exists(cacheFile));
+  }
+
+  @Test
+  public void testExpired() throws Exception {
+    Assert.assertEquals("project-1", query(newCache(1)));
+    Thread.sleep(10);
+    Assert.assertEquals("project-2", query(newCache(1)));
+  }
+
+  @Test
+  public void testConfigurationChanged() throws Exception {
+    GcloudQueryCache cache = newCache(TimeUnit.HOURS.toMillis(1));
+    Assert.assertEquals("project-1", query(cache));
+
+    Path configuration = configDirectory.resolve("configurations/config_default");
+    Files.write(configuration, bytes("[core]\nproject = other"));
+    configuration.toFile().setLastModified(configuration.toFile().lastModified() - 10_000);
+
+    Assert.assertEquals("project-2", query(cache));
+  }
+
+  @Test
+  public void testEnvironmentChanged() throws Exception {
+    GcloudQueryCache cache = newCache(TimeUnit.HOURS.toMillis(1));
+    Assert.assertEquals("project-1", query(cache));
+
+    environment.put("CLOUDSDK_CORE_PROJECT", "other");
+
+    Assert.assertEquals("project-2", query(cache));
+  }
+
+  @Test
+  public void testEmptyAnswerNotCached() throws Exception {
+    GcloudQueryCache cache = newCache(TimeUnit.HOURS.toMillis(1));
+    Assert.assertNull(cache.get("config project", () -> null));
+
+    Assert.assertEquals("project-1", query(cache));
+  }
+
+  @Test
+  public void testUnwritableCache() throws Exception {
+    Files.write(cacheFile.getParent(), bytes("not a directory"));
+    GcloudQueryCache cache = newCache(TimeUnit.HOURS.toMillis(1));
+
+    Assert.assertEquals("project-1", query(cache));
+    Assert.assertEquals("project-1", query(cache));
+    Assert.assertEquals(1, queries.get());
+  }
+
+  @Test
+  public void testKeepsAnswersOfOtherDaemons() throws Exception {
+    GcloudQueryCache cache = newCache(TimeUnit.HOURS.toMillis(1));
+    Assert.assertEquals("project-1", query(cache));
+
+    // another daemon stores an answer this one doesn't know yet
+    Gson gson = new Gson();
+    final JsonObject stored =
+        gson.fromJson(
+            new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8), JsonObject.class);
+    JsonObject entry = new JsonObject();
+    entry.addProperty("value", "account-of-other-daemon");
+    entry.addProperty("configStamp", cache.configStamp());
+    entry.addProperty("storedMillis", System.currentTimeMillis());
+    stored.add(sdkHome.toAbsolutePath().normalize() + File.pathSeparator + "config account", entry);
+    Files.write(cacheFile, bytes(gson.toJson(stored)));
+
+    Assert.assertEquals("region-1", cache.get("config region", () -> "region-1"));
+
+    Assert.assertEquals("account-of-other-daemon", cache.get("config account", () -> "account-1"));
+    Assert.assertTrue(
+        new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8)
+            .contains("account-of-other-daemon"));
+  }
+
+  @Test
+  public void testFindConfigDirectory() {
+    Assert.assertEquals(
+        Paths.get("/custom/gcloud"),
+        GcloudQueryCache.findConfigDirectory(
+            ImmutableMap.of("CLOUDSDK_CONFIG", "/custom/gcloud")::get));
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ManagedCloudSdkLockTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testLockFile() {
+    Path sdkHome = Paths.get("/cache/managed-cloud-sdk/LATEST/google-cloud-sdk");
+
+    assertEquals(
+        Paths.get("/cache/managed-cloud-sdk/LATEST.lock").toAbsolutePath(),
+        ManagedCloudSdkLock.lockFile(sdkHome));
+  }
+
+  @Test
+  public void testAcquire_waitsForHolder() throws Exception {
+    Path lockFile = tempFolder.getRoot().toPath().resolve("sdk/LATEST.lock");
+    Logger logger = mock(Logger.class);
+    CountDownLatch acquired = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final ManagedCloudSdkLock lock = ManagedCloudSdkLock.acquire(lockFile, logger);
+      assertTrue(lockFile.toFile().exists());
+      final Future<?> waiter =
+          executor.submit(
+              () -> {
+                try (ManagedCloudSdkLock other = ManagedCloudSdkLock.acquire(lockFile, logger)) {
+                  acquired.countDown();
+                }
+                return null;
+              });
+      verify(logger, timeout(5000))
+          .lifecycle("Waiting for another build in this process to install the Cloud SDK");
+      assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+      lock.close();
+      waiter.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(0, acquired.getCount());
+    verify(logger).lifecycle(startsWith("Acquired the Cloud SDK install lock after "));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProcessTelemetryTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private long now;
+  private Project project;
+  private Task task;
+  private ProcessTelemetry telemetry;
+
+  /** Setup ProcessTelemetryTest. */
+  @Before
+  public void setUp() throws IOException {
+    project = ProjectBuilder.builder().withProjectDir(tmp.newFolder("project")).build();
+    task = project.getTasks().create("appengineDeploy");
+    telemetry = new ProcessTelemetry(() -> now);
+  }
+
+  @Test
+  public void testRecording() {
+    ProcessTelemetry.Recording recording = telemetry.newRecording(task, "deploy");
+    Assert.assertTrue(telemetry.getRecordings().isEmpty());
+
+    now = 1000;
+    recording.started();
+    recording.stdOut("Beginning deployment");
+    recording.stdErr("ERROR: é");
+    now = 3500;
+    recording.finished(1);
+
+    Assert.assertEquals(1, telemetry.getRecordings().size());
+    Assert.assertEquals(":appengineDeploy", recording.getTaskPath());
+    Assert.assertEquals("deploy", recording.getCategory());
+    Assert.assertEquals(2500, recording.getWallMillis());
+    Assert.assertEquals(Integer.valueOf(1), recording.getExitCode());
+  }
+
+  @Test
+  public void testRunningProcess() {
+    ProcessTelemetry.Recording recording = telemetry.newRecording(task, "dev server");
+    now = 1000;
+    recording.started();
+    now = 4000;
+
+    Assert.assertNull(recording.getExitCode());
+    Assert.assertEquals(3000, recording.getWallMillis());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReport() throws IOException {
+    ProcessTelemetry.Recording deploy = telemetry.newRecording(task, "deploy");
+    deploy.started();
+    deploy.stdOut("done");
+    now = 2000;
+    deploy.finished(0);
+    ProcessTelemetry.Recording stage = telemetry.newRecording(task, "appcfg stage");
+    stage.started();
+    stage.stdErr("oops");
+    now = 2500;
+    stage.finished(2);
+
+    telemetry.report(project);
+
+    File reportFile = new File(project.getBuildDir(), "reports/appengine/processes.json");
+    Map<String, Object> report;
+    try (Reader reader = Files.newBufferedReader(reportFile.toPath(), StandardCharsets.UTF_8)) {
+      report = new Gson().fromJson(reader, Map.class);
+    }
+    Map<String, Map<String, Object>> categories =
+        (Map<String, Map<String, Object>>) report.get("categories");
+    Assert.assertEquals(1.0, categories.get("deploy").get("count"));
+    Assert.assertEquals(2000.0, categories.get("deploy").get("wallMillis"));
+    Assert.assertEquals(1.0, categories.get("appcfg stage").get("failures"));
+
+    List<Map<String, Object>> processes = (List<Map<String, Object>>) report.get("processes");
+    Assert.assertEquals(2, processes.size());
+    Map<String, Object> process = processes.get(0);
+    Assert.assertEquals(":appengineDeploy", process.get("task"));
+    Assert.assertEquals(false, process.get("running"));
+    Assert.assertEquals(0.0, process.get("exitCode"));
+    Assert.assertEquals(5.0, process.get("stdoutBytes"));
+    Assert.assertEquals(5.0, processes.get(1).get("stderrBytes"));
+  }
+
+  @Test
+  public void testReport_nothingRecorded() {
+    telemetry.report(project);
+
+    Assert.assertFalse(
+        new File(project.getBuildDir(), "reports/appengine/processes.json").exists());
+  }
+}
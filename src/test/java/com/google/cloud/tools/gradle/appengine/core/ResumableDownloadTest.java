@@ -0,0 +1,293 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.gradle.api.GradleException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResumableDownloadTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private ProgressListener progressListener;
+
+  private final byte[] content = new byte[256 * 1024];
+  private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+  private HttpServer server;
+  private URI source;
+  private Path destination;
+
+  // bytes sent before the connection is dropped, per request; unlimited after the last one
+  private int[] dropAfter = {};
+  private boolean supportsRanges = true;
+  private String etag = "\"1\"";
+
+  /** Start a local http server that serves content and drops connections on demand. */
+  @Before
+  public void setup() throws IOException {
+    new Random(1).nextBytes(content);
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/sdk.tar.gz", this::serve);
+    server.createContext("/missing.tar.gz", exchange -> respondStatus(exchange, 404));
+    server.start();
+    source = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/sdk.tar.gz");
+    destination = tempFolder.getRoot().toPath().resolve("sdk.tar.gz");
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testDownload() throws IOException {
+    new ResumableDownload(source, destination, progressListener).download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals(Collections.singletonList(null), ranges);
+  }
+
+  @Test
+  public void testDownload_resumesDroppedConnections() throws IOException {
+    dropAfter = new int[] {100_000, 50_000};
+
+    new ResumableDownload(source, destination, progressListener).download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals(3, ranges.size());
+    assertEquals(null, ranges.get(0));
+    assertEquals("bytes=100000-", ranges.get(1));
+    assertEquals("bytes=150000-", ranges.get(2));
+    assertFalse(Files.exists(destination.resolveSibling("sdk.tar.gz.part")));
+  }
+
+  @Test
+  public void testDownload_resumesPartFileOfEarlierBuild() throws IOException {
+    dropAfter = new int[] {100_000};
+    ResumableDownload interrupted = new ResumableDownload(source, destination, progressListener);
+    interrupted.setMaxAttempts(1);
+    try {
+      interrupted.download();
+      fail();
+    } catch (IOException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().endsWith("failed after 1 attempts"));
+    }
+    assertEquals(100_000, Files.size(interrupted.getPartFile()));
+
+    new ResumableDownload(source, destination, progressListener).download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals("bytes=100000-", ranges.get(1));
+  }
+
+  @Test
+  public void testDownload_partFileOfChangedFile() throws IOException {
+    dropAfter = new int[] {100_000};
+    ResumableDownload interrupted = new ResumableDownload(source, destination, progressListener);
+    interrupted.setMaxAttempts(1);
+    try {
+      interrupted.download();
+      fail();
+    } catch (IOException ex) {
+      // keeps the .part file
+    }
+    new Random(2).nextBytes(content);
+    etag = "\"2\"";
+
+    new ResumableDownload(source, destination, progressListener).download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals("bytes=100000-", ranges.get(1));
+    assertFalse(Files.exists(interrupted.getValidatorFile()));
+  }
+
+  @Test
+  public void testDownload_partFileWithoutValidator() throws IOException {
+    ResumableDownload download = new ResumableDownload(source, destination, progressListener);
+    Files.write(download.getPartFile(), new byte[100_000]);
+
+    download.download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals(Collections.singletonList(null), ranges);
+  }
+
+  @Test
+  public void testDownload_completePartFile() throws IOException {
+    ResumableDownload download = new ResumableDownload(source, destination, progressListener);
+    Files.write(download.getPartFile(), content);
+    Files.write(download.getValidatorFile(), etag.getBytes(StandardCharsets.UTF_8));
+
+    download.download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals(Collections.singletonList("bytes=" + content.length + "-"), ranges);
+  }
+
+  @Test
+  public void testDownload_partFileLongerThanFile() throws IOException {
+    ResumableDownload download = new ResumableDownload(source, destination, progressListener);
+    Files.write(download.getPartFile(), new byte[content.length + 10]);
+    Files.write(download.getValidatorFile(), etag.getBytes(StandardCharsets.UTF_8));
+
+    download.download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+    assertEquals(2, ranges.size());
+    assertEquals(null, ranges.get(1));
+  }
+
+  @Test
+  public void testDownload_serverIgnoresRange() throws IOException {
+    dropAfter = new int[] {100_000};
+    supportsRanges = false;
+
+    new ResumableDownload(source, destination, progressListener).download();
+
+    assertArrayEquals(content, Files.readAllBytes(destination));
+  }
+
+  @Test
+  public void testOpen_streamsPartFileOfEarlierBuild() throws IOException {
+    dropAfter = new int[] {100_000};
+    ResumableDownload interrupted = new ResumableDownload(source, destination, progressListener);
+    interrupted.setMaxAttempts(1);
+    try (InputStream in = interrupted.open()) {
+      ByteStreams.exhaust(in);
+      fail();
+    } catch (IOException ex) {
+      assertTrue(interrupted.canResume());
+    }
+
+    ResumableDownload download = new ResumableDownload(source, destination, progressListener);
+    try (InputStream in = download.open()) {
+      assertArrayEquals(content, ByteStreams.toByteArray(in));
+    }
+
+    assertFalse(download.canResume());
+    assertArrayEquals(content, Files.readAllBytes(download.getPartFile()));
+    assertEquals("bytes=100000-", ranges.get(1));
+  }
+
+  @Test
+  public void testOpen_serverIgnoresRange() throws IOException {
+    dropAfter = new int[] {100_000};
+    supportsRanges = false;
+
+    ResumableDownload download = new ResumableDownload(source, destination, progressListener);
+    try (InputStream in = download.open()) {
+      assertArrayEquals(content, ByteStreams.toByteArray(in));
+    }
+    assertArrayEquals(content, Files.readAllBytes(download.getPartFile()));
+  }
+
+  @Test
+  public void testDownload_notFound() throws IOException {
+    URI missing = source.resolve("/missing.tar.gz");
+    try {
+      new ResumableDownload(missing, destination, progressListener).download();
+      fail();
+    } catch (GradleException ex) {
+      assertEquals("Downloading " + missing + " failed with HTTP status 404", ex.getMessage());
+    }
+  }
+
+  private void serve(HttpExchange exchange) throws IOException {
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    final int request = ranges.size();
+    ranges.add(range);
+    String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+    int offset = 0;
+    if (range != null && supportsRanges && etag.equals(ifRange)) {
+      offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+    }
+    exchange.getResponseHeaders().add("ETag", etag);
+    if (offset >= content.length) {
+      exchange.getResponseHeaders().add("Content-Range", "bytes */" + content.length);
+      respondStatus(exchange, 416);
+      return;
+    }
+    int length = content.length - offset;
+    int limit = request < dropAfter.length ? dropAfter[request] : length;
+    if (offset > 0) {
+      exchange
+          .getResponseHeaders()
+          .add(
+              "Content-Range",
+              "bytes " + offset + "-" + (content.length - 1) + "/" + content.length);
+      exchange.sendResponseHeaders(206, length);
+    } else {
+      exchange.sendResponseHeaders(200, length);
+    }
+    OutputStream body = exchange.getResponseBody();
+    try {
+      body.write(content, offset, Math.min(limit, length));
+      body.flush();
+    } finally {
+      if (limit < length) {
+        // drop the connection in the middle of the body
+        closeQuietly(exchange);
+      } else {
+        exchange.close();
+      }
+    }
+  }
+
+  private static void closeQuietly(HttpExchange exchange) {
+    try {
+      exchange.close();
+    } catch (RuntimeException ex) {
+      // the body is incomplete, which is the point
+    }
+  }
+
+  private static void respondStatus(HttpExchange exchange, int status) throws IOException {
+    exchange.sendResponseHeaders(status, -1);
+    exchange.close();
+  }
+}
@@ -98,6 +98,7 @@ public class AppEngineFlexiblePluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeploy");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
@@ -116,16 +117,28 @@ public class AppEngineFlexiblePluginTest {
             ":assemble",
             ":checkCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeploy");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
+  @Test
+  public void testValidateConfig_taskTree() throws IOException {
+    BuildResult buildResult =
+        createTestProject().applyGradleRunner("appengineValidateConfig", "--dry-run");
+
+    // validating is offline, it doesn't need the Cloud SDK
+    final List<String> expected = ImmutableList.of(":appengineValidateConfig");
+    assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
+  }
+
   @Test
   public void testDeployCron_taskTree() throws IOException {
     BuildResult buildResult =
         createTestProject().applyGradleRunner("appengineDeployCron", "--dry-run");
 
-    final List<String> expected = ImmutableList.of(":downloadCloudSdk", ":appengineDeployCron");
+    final List<String> expected =
+        ImmutableList.of(":appengineValidateConfig", ":downloadCloudSdk", ":appengineDeployCron");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
@@ -134,7 +147,9 @@ public class AppEngineFlexiblePluginTest {
     BuildResult buildResult =
         createTestProject().applyGradleRunner("appengineDeployDispatch", "--dry-run");
 
-    final List<String> expected = ImmutableList.of(":downloadCloudSdk", ":appengineDeployDispatch");
+    final List<String> expected =
+        ImmutableList.of(
+            ":appengineValidateConfig", ":downloadCloudSdk", ":appengineDeployDispatch");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
@@ -143,7 +158,8 @@ public class AppEngineFlexiblePluginTest {
     BuildResult buildResult =
         createTestProject().applyGradleRunner("appengineDeployDos", "--dry-run");
 
-    final List<String> expected = ImmutableList.of(":downloadCloudSdk", ":appengineDeployDos");
+    final List<String> expected =
+        ImmutableList.of(":appengineValidateConfig", ":downloadCloudSdk", ":appengineDeployDos");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
@@ -152,7 +168,8 @@ public class AppEngineFlexiblePluginTest {
     BuildResult buildResult =
         createTestProject().applyGradleRunner("appengineDeployIndex", "--dry-run");
 
-    final List<String> expected = ImmutableList.of(":downloadCloudSdk", ":appengineDeployIndex");
+    final List<String> expected =
+        ImmutableList.of(":appengineValidateConfig", ":downloadCloudSdk", ":appengineDeployIndex");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
@@ -161,7 +178,8 @@ public class AppEngineFlexiblePluginTest {
     BuildResult buildResult =
         createTestProject().applyGradleRunner("appengineDeployQueue", "--dry-run");
 
-    final List<String> expected = ImmutableList.of(":downloadCloudSdk", ":appengineDeployQueue");
+    final List<String> expected =
+        ImmutableList.of(":appengineValidateConfig", ":downloadCloudSdk", ":appengineDeployQueue");
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
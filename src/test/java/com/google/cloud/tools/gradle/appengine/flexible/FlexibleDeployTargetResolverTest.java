@@ -24,8 +24,11 @@ import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
 import com.google.cloud.tools.appengine.cloudsdk.serialization.CloudSdkConfig;
 import com.google.cloud.tools.gradle.appengine.core.ConfigReader;
+import com.google.cloud.tools.gradle.appengine.core.GcloudQueryCache;
 import java.io.IOException;
 import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -45,25 +48,32 @@ public class FlexibleDeployTargetResolverTest {
   @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
   @Mock Gcloud gcloud;
   @Mock CloudSdkConfig cloudSdkConfig;
+  private GcloudQueryCache queryCache;
 
+  /** Setup FlexibleDeployTargetResolverTest. */
   @Before
   public void setup()
       throws CloudSdkNotFoundException, ProcessHandlerException, CloudSdkOutOfDateException,
           CloudSdkVersionFileException, IOException {
+    Project project =
+        ProjectBuilder.builder().withGradleUserHomeDir(temporaryFolder.newFolder("home")).build();
+    queryCache = GcloudQueryCache.forProject(project, temporaryFolder.getRoot().toPath(), 0);
     Mockito.when(gcloud.getConfig()).thenReturn(cloudSdkConfig);
     Mockito.when(cloudSdkConfig.getProject()).thenReturn(PROJECT_GCLOUD);
   }
 
   @Test
   public void testGetProject_buildConfig() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     String result = deployTargetResolver.getProject("some-project");
     Assert.assertEquals("some-project", result);
   }
 
   @Test
   public void testGetProject_appengineConfig() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     try {
       deployTargetResolver.getProject(ConfigReader.APPENGINE_CONFIG);
       Assert.fail();
@@ -83,14 +93,16 @@ public class FlexibleDeployTargetResolverTest {
 
   @Test
   public void testGetProject_gcloudConfig() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     String result = deployTargetResolver.getProject(ConfigReader.GCLOUD_CONFIG);
     Assert.assertEquals(PROJECT_GCLOUD, result);
   }
 
   @Test
   public void testGetProject_nothingSet() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     try {
       deployTargetResolver.getProject(null);
       Assert.fail();
@@ -110,14 +122,16 @@ public class FlexibleDeployTargetResolverTest {
 
   @Test
   public void testGetVersion_buildConfig() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     String result = deployTargetResolver.getVersion("some-version");
     Assert.assertEquals("some-version", result);
   }
 
   @Test
   public void testGetVersion_appengineConfig() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     try {
       deployTargetResolver.getVersion(ConfigReader.APPENGINE_CONFIG);
       Assert.fail();
@@ -137,14 +151,16 @@ public class FlexibleDeployTargetResolverTest {
 
   @Test
   public void testGetVersion_gcloudConfig() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     String result = deployTargetResolver.getVersion(ConfigReader.GCLOUD_CONFIG);
     Assert.assertNull(result);
   }
 
   @Test
   public void testGetVersion_nothingSet() {
-    FlexibleDeployTargetResolver deployTargetResolver = new FlexibleDeployTargetResolver(gcloud);
+    FlexibleDeployTargetResolver deployTargetResolver =
+        new FlexibleDeployTargetResolver(gcloud, queryCache);
     try {
       deployTargetResolver.getVersion(null);
       Assert.fail();
@@ -105,6 +105,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeploy");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -125,6 +126,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeployCron");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -145,6 +147,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeployDispatch");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -165,6 +168,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeployDos");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -185,6 +189,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeployIndex");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -205,6 +210,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeployQueue");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -261,6 +267,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":downloadCloudSdk", // this should NOT run checkCloudSdk
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeploy");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -281,6 +288,7 @@ public class AppEngineStandardPluginTest {
             ":assemble",
             ":checkCloudSdk",
             ":appengineStage",
+            ":appengineValidateConfig",
             ":appengineDeploy");
 
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
@@ -295,6 +303,15 @@ public class AppEngineStandardPluginTest {
     assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
   }
 
+  @Test
+  public void testLogs_taskTree() throws IOException {
+    BuildResult buildResult = createTestProject().applyGradleRunner("appengineLogs", "--dry-run");
+
+    final List<String> expected = ImmutableList.of(":appengineLogs");
+
+    assertEquals(expected, BuildResultFilter.extractTasks(buildResult));
+  }
+
   @Test
   public void testDefaultConfiguration() throws IOException {
     Project p =
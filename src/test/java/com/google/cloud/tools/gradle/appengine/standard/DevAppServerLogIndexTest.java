@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.gradle.appengine.standard.DevAppServerLogIndex.Entry;
+import com.google.cloud.tools.gradle.appengine.standard.DevAppServerLogIndex.Level;
+import com.google.cloud.tools.gradle.appengine.util.io.FileOutputLineListener;
+import com.google.common.base.Strings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DevAppServerLogIndexTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private File logFile;
+
+  @Before
+  public void setUp() {
+    logFile = new File(tmp.getRoot(), DevAppServerLogParser.LOG_FILE_NAME);
+  }
+
+  // one block of info entries, one block holding an error, one more block of info entries
+  private void writeLog(long startMillis) throws IOException {
+    String padding = Strings.repeat("x", 1000);
+    FileOutputLineListener writer =
+        new FileOutputLineListener(logFile, new DevAppServerLogIndex(logFile.toPath()));
+    long time = startMillis;
+    for (int block = 0; block < 3; block++) {
+      for (int i = 0; i < 70; i++) {
+        Level level = block == 1 && i == 35 ? Level.ERROR : Level.INFO;
+        writer.onOutputLine(
+            DevAppServerLogIndex.formatEntry(time++, level, "logger", null, i + padding));
+      }
+    }
+    writer.close();
+  }
+
+  private List<Entry> read(long sinceMillis, Level level) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    DevAppServerLogIndex.read(logFile.toPath(), sinceMillis, level, entries::add);
+    return entries;
+  }
+
+  @Test
+  public void testIndexesBlocks() throws IOException {
+    writeLog(1000);
+
+    long records =
+        Files.size(DevAppServerLogIndex.indexFile(logFile.toPath()))
+            / DevAppServerLogIndex.RECORD_BYTES;
+    Assert.assertEquals(4, records);
+    Assert.assertEquals(210, read(0, Level.DEBUG).size());
+  }
+
+  @Test
+  public void testReadsOnlyBlocksWithTheLevel() throws IOException {
+    writeLog(1000);
+
+    List<Entry> errors = read(0, Level.ERROR);
+    Assert.assertEquals(1, errors.size());
+    Assert.assertEquals(1000 + 70 + 35, errors.get(0).getTimeMillis());
+
+    List<long[]> ranges = DevAppServerLogIndex.findRanges(logFile.toPath(), 0, Level.ERROR);
+    Assert.assertEquals(1, ranges.size());
+    Assert.assertTrue(ranges.get(0)[1] - ranges.get(0)[0] <= 2 * DevAppServerLogIndex.BLOCK_BYTES);
+  }
+
+  @Test
+  public void testReadsOnlyBlocksSince() throws IOException {
+    writeLog(1000);
+
+    List<Entry> recent = read(1000 + 200, Level.DEBUG);
+    Assert.assertEquals(10, recent.size());
+    List<long[]> ranges = DevAppServerLogIndex.findRanges(logFile.toPath(), 1200, Level.DEBUG);
+    Assert.assertTrue(ranges.get(0)[0] > 0);
+  }
+
+  @Test
+  public void testReadsRotatedLogsAndTheirIndexes() throws IOException {
+    writeLog(1000);
+    writeLog(5000);
+
+    Path rotated = logFile.toPath().resolveSibling(logFile.getName() + ".1");
+    Assert.assertTrue(Files.exists(DevAppServerLogIndex.indexFile(rotated)));
+    List<Entry> errors = read(0, Level.ERROR);
+    Assert.assertEquals(2, errors.size());
+    Assert.assertEquals(1000 + 70 + 35, errors.get(0).getTimeMillis());
+    Assert.assertEquals(5000 + 70 + 35, errors.get(1).getTimeMillis());
+  }
+
+  @Test
+  public void testReadsUnindexedLog() throws IOException {
+    Files.write(
+        logFile.toPath(),
+        (DevAppServerLogIndex.formatEntry(1000, Level.WARNING, null, "abcd", "<html> & \"quotes\"")
+                + "\nnot json\n")
+            .getBytes(StandardCharsets.UTF_8));
+
+    List<Entry> entries = read(0, Level.INFO);
+    Assert.assertEquals(1, entries.size());
+    Assert.assertEquals("<html> & \"quotes\"", entries.get(0).getMessage());
+    Assert.assertEquals("abcd", entries.get(0).getRequestId());
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import com.google.cloud.tools.gradle.appengine.standard.DevAppServerLogIndex.Entry;
+import com.google.cloud.tools.gradle.appengine.standard.DevAppServerLogIndex.Level;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DevAppServerLogParserTest {
+
+  private static final long NOW = Instant.parse("2026-10-19T12:00:00Z").toEpochMilli();
+
+  private final List<Entry> entries = new ArrayList<>();
+  private DevAppServerLogParser parser;
+
+  /** Parse into entries, in UTC. */
+  @Before
+  public void setUp() {
+    parser =
+        new DevAppServerLogParser(
+            line -> entries.add(Entry.parse(line)), null, ZoneOffset.UTC, () -> NOW);
+  }
+
+  @Test
+  public void testJavaUtilLoggingRecord() throws IOException {
+    parser.onOutputLine("Oct 19, 2026 1:23:45 PM com.example.Servlet doGet");
+    parser.onOutputLine("WARNING: slow query, requestId=5f3a9c01");
+    parser.close();
+
+    Assert.assertEquals(1, entries.size());
+    Entry entry = entries.get(0);
+    Assert.assertEquals(
+        Instant.parse("2026-10-19T13:23:45Z").toEpochMilli(), entry.getTimeMillis());
+    Assert.assertEquals(Level.WARNING, entry.getLevel());
+    Assert.assertEquals("com.example.Servlet", entry.getLogger());
+    Assert.assertEquals("5f3a9c01", entry.getRequestId());
+    Assert.assertEquals("slow query, requestId=5f3a9c01", entry.getMessage());
+  }
+
+  @Test
+  public void testPythonLine() throws IOException {
+    parser.onOutputLine("ERROR    2026-10-19 09:08:07,654 module.py:432] boom");
+    parser.close();
+
+    Entry entry = entries.get(0);
+    Assert.assertEquals(
+        Instant.parse("2026-10-19T09:08:07.654Z").toEpochMilli(), entry.getTimeMillis());
+    Assert.assertEquals(Level.ERROR, entry.getLevel());
+    Assert.assertEquals("module.py:432", entry.getLogger());
+    Assert.assertEquals("boom", entry.getMessage());
+  }
+
+  @Test
+  public void testContinuationLinesFollowTheirEntry() throws IOException {
+    parser.onOutputLine("Oct 19, 2026 1:23:45 PM com.example.Servlet doGet");
+    parser.onOutputLine("SEVERE: request failed");
+    parser.onOutputLine("java.lang.IllegalStateException: bad state");
+    parser.onOutputLine("\tat com.example.Servlet.doGet(Servlet.java:42)");
+    parser.onOutputLine("plain output");
+    parser.close();
+
+    Assert.assertEquals(4, entries.size());
+    for (Entry entry : entries.subList(0, 3)) {
+      Assert.assertEquals(Level.ERROR, entry.getLevel());
+      Assert.assertEquals("com.example.Servlet", entry.getLogger());
+    }
+    Assert.assertEquals(
+        "\tat com.example.Servlet.doGet(Servlet.java:42)", entries.get(2).getMessage());
+    Assert.assertEquals(Level.INFO, entries.get(3).getLevel());
+    Assert.assertEquals(NOW, entries.get(3).getTimeMillis());
+    Assert.assertNull(entries.get(3).getLogger());
+  }
+
+  @Test
+  public void testHeaderWithoutMessage() throws IOException {
+    parser.onOutputLine("Oct 19, 2026 1:23:45 PM com.example.Servlet doGet");
+    parser.close();
+
+    Assert.assertEquals(1, entries.size());
+    Assert.assertEquals(
+        "Oct 19, 2026 1:23:45 PM com.example.Servlet doGet", entries.get(0).getMessage());
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.standard;
+
+import java.time.Instant;
+import org.gradle.api.GradleException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DevAppServerLogsTaskTest {
+
+  private static final long NOW = Instant.parse("2026-10-19T12:00:00Z").toEpochMilli();
+
+  @Test
+  public void testParseSinceDuration() {
+    Assert.assertEquals(NOW - 30_000, DevAppServerLogsTask.parseSince("30s", NOW));
+    Assert.assertEquals(NOW - 15 * 60_000, DevAppServerLogsTask.parseSince("15m", NOW));
+    Assert.assertEquals(NOW - 2 * 3600_000, DevAppServerLogsTask.parseSince("2h", NOW));
+    Assert.assertEquals(NOW - 24 * 3600_000, DevAppServerLogsTask.parseSince("1d", NOW));
+  }
+
+  @Test
+  public void testParseSinceInstant() {
+    Assert.assertEquals(
+        Instant.parse("2026-10-19T10:15:30Z").toEpochMilli(),
+        DevAppServerLogsTask.parseSince("2026-10-19T10:15:30Z", NOW));
+  }
+
+  @Test(expected = GradleException.class)
+  public void testParseSinceInvalid() {
+    DevAppServerLogsTask.parseSince("yesterday", NOW);
+  }
+}
@@ -19,8 +19,13 @@ package com.google.cloud.tools.gradle.appengine.standard;
 
 import com.google.cloud.tools.gradle.appengine.TestProject;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import org.gradle.testkit.runner.BuildResult;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -65,4 +70,26 @@ public class ExplodeWarTaskTest {
     Assert.assertTrue(Files.isRegularFile(datastoreIndexesAutoXml));
     Assert.assertFalse(Files.isRegularFile(junkXml));
   }
+
+  @Test
+  public void testUncompressedWar() throws IOException {
+    new TestProject(testProjectDir.getRoot()).addStandardBuildFile().addAppEngineWebXml();
+    Files.write(
+        testProjectDir.getRoot().toPath().resolve("build.gradle"),
+        Collections.singletonList("appengine.stage.uncompressedWar = true"),
+        StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+
+    new TestProject(testProjectDir.getRoot()).applyGradleRunner("explodeWar");
+
+    Path libs = testProjectDir.getRoot().toPath().resolve("build").resolve("libs");
+    Path war = libs.resolve(testProjectDir.getRoot().getName() + ".war");
+    try (ZipFile zipFile = new ZipFile(war.toFile())) {
+      Assert.assertTrue(
+          Collections.list(zipFile.entries())
+              .stream()
+              .filter(entry -> !entry.isDirectory())
+              .allMatch(entry -> entry.getMethod() == ZipEntry.STORED));
+    }
+  }
 }
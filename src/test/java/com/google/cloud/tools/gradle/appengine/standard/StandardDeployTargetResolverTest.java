@@ -24,11 +24,14 @@ import com.google.cloud.tools.appengine.cloudsdk.Gcloud;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
 import com.google.cloud.tools.appengine.cloudsdk.serialization.CloudSdkConfig;
 import com.google.cloud.tools.gradle.appengine.core.ConfigReader;
+import com.google.cloud.tools.gradle.appengine.core.GcloudQueryCache;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
 import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -50,6 +53,7 @@ public class StandardDeployTargetResolverTest {
 
   @Mock Gcloud gcloud;
   @Mock CloudSdkConfig cloudSdkConfig;
+  private GcloudQueryCache queryCache;
 
   /** Setup PropertyResolverTest. */
   @Before
@@ -57,6 +61,9 @@ public class StandardDeployTargetResolverTest {
       throws IOException, CloudSdkNotFoundException, ProcessHandlerException,
           CloudSdkOutOfDateException, CloudSdkVersionFileException {
     appengineWebXml = new File(temporaryFolder.newFolder("source", "WEB-INF"), "appengine-web.xml");
+    Project project =
+        ProjectBuilder.builder().withGradleUserHomeDir(temporaryFolder.newFolder("home")).build();
+    queryCache = GcloudQueryCache.forProject(project, temporaryFolder.getRoot().toPath(), 0);
     Mockito.when(gcloud.getConfig()).thenReturn(cloudSdkConfig);
     Mockito.when(cloudSdkConfig.getProject()).thenReturn(PROJECT_GCLOUD);
 
@@ -74,7 +81,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetProject_buildConfig() {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     String result = deployTargetResolver.getProject("some-project");
     Assert.assertEquals("some-project", result);
   }
@@ -82,7 +89,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetProject_appengineConfig() {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     String result = deployTargetResolver.getProject(ConfigReader.APPENGINE_CONFIG);
     Assert.assertEquals(PROJECT_XML, result);
   }
@@ -90,7 +97,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetProject_gcloudConfig() {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     String result = deployTargetResolver.getProject(ConfigReader.GCLOUD_CONFIG);
     Assert.assertEquals(PROJECT_GCLOUD, result);
   }
@@ -98,7 +105,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetProject_nothingSet() throws IOException {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     try {
       String result = deployTargetResolver.getProject(null);
       Assert.fail();
@@ -119,7 +126,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetVersion_buildConfig() {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     String result = deployTargetResolver.getVersion("some-version");
     Assert.assertEquals("some-version", result);
   }
@@ -127,7 +134,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetVersion_appengineConfig() {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     String result = deployTargetResolver.getVersion(ConfigReader.APPENGINE_CONFIG);
     Assert.assertEquals(VERSION_XML, result);
   }
@@ -135,7 +142,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetVersion_gcloudConfig() {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     String result = deployTargetResolver.getVersion(ConfigReader.GCLOUD_CONFIG);
     Assert.assertNull(result);
   }
@@ -143,7 +150,7 @@ public class StandardDeployTargetResolverTest {
   @Test
   public void testGetVersion_nothingSet() throws IOException {
     StandardDeployTargetResolver deployTargetResolver =
-        new StandardDeployTargetResolver(appengineWebXml, gcloud);
+        new StandardDeployTargetResolver(appengineWebXml, gcloud, queryCache);
     try {
       deployTargetResolver.getVersion(null);
       Assert.fail();
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeferredOutputLineListenerTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private File logFile;
+  private final List<IOException> openFailures = new ArrayList<>();
+  private DeferredOutputLineListener<FileOutputLineListener> listener;
+
+  /** Setup DeferredOutputLineListenerTest. */
+  @Before
+  public void setUp() {
+    logFile = new File(tmp.getRoot(), "logs/gcloud.log");
+    listener =
+        new DeferredOutputLineListener<>(
+            () -> new FileOutputLineListener(logFile), openFailures::add);
+  }
+
+  @Test
+  public void testNotOpenedBeforeStart() throws IOException {
+    listener.close();
+
+    Assert.assertFalse(logFile.exists());
+    Assert.assertNull(listener.get());
+  }
+
+  @Test
+  public void testOpenedByFirstLine() throws IOException {
+    listener.onOutputLine("first");
+    listener.open();
+    listener.onOutputLine("second");
+    listener.close();
+
+    Assert.assertEquals(
+        ImmutableList.of("first", "second"),
+        Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testNotReopenedAfterClose() throws IOException {
+    listener.close();
+    listener.onOutputLine("too late");
+
+    Assert.assertNull(listener.open());
+    Assert.assertFalse(logFile.exists());
+  }
+
+  @Test
+  public void testOpenFailure() throws IOException {
+    // a file where the log directory should be
+    Files.write(tmp.getRoot().toPath().resolve("logs"), new byte[0]);
+
+    listener.onOutputLine("dropped");
+    listener.onOutputLine("dropped too");
+    listener.close();
+
+    Assert.assertEquals(1, openFailures.size());
+  }
+}
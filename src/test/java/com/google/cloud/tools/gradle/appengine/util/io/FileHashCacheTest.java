@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileHashCacheTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private Path cacheFile;
+  private Path staged;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheFile = tmp.getRoot().toPath().resolve("cache/file-hashes.json");
+    staged = tmp.newFolder("staged").toPath();
+  }
+
+  private Path write(String name, String content) throws IOException {
+    Path file = staged.resolve(name);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(Charsets.UTF_8));
+    return file;
+  }
+
+  private static HashCode sha256(String content) {
+    return Hashing.sha256().hashString(content, Charsets.UTF_8);
+  }
+
+  @Test
+  public void testHash() throws IOException {
+    Path file = write("app.yaml", "runtime: java8");
+    FileHashCache cache = new FileHashCache(cacheFile);
+
+    Assert.assertNull(cache.lookup(file));
+    Assert.assertEquals(sha256("runtime: java8"), cache.hash(file));
+    Assert.assertEquals(sha256("runtime: java8"), cache.lookup(file));
+  }
+
+  @Test
+  public void testLookup_modifiedFile() throws IOException {
+    Path file = write("app.yaml", "runtime: java8");
+    FileHashCache cache = new FileHashCache(cacheFile);
+    cache.hash(file);
+
+    write("app.yaml", "runtime: java");
+    Assert.assertNull(cache.lookup(file));
+    Assert.assertEquals(sha256("runtime: java"), cache.hash(file));
+  }
+
+  @Test
+  public void testLookup_touchedFile() throws IOException {
+    Path file = write("app.yaml", "runtime: java8");
+    FileHashCache cache = new FileHashCache(cacheFile);
+    cache.hash(file);
+
+    Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+    Assert.assertNull(cache.lookup(file));
+  }
+
+  @Test
+  public void testLookup_rewrittenWithSameSizeAndTime() throws IOException {
+    Path file = write("app.yaml", "runtime: java8");
+    FileHashCache cache = new FileHashCache(cacheFile);
+    cache.hash(file);
+
+    // like a war extracted again with the timestamps of its entries
+    FileTime lastModified = Files.getLastModifiedTime(file);
+    write("app.yaml", "runtime: java9");
+    Files.setLastModifiedTime(file, lastModified);
+
+    Assert.assertNull(cache.lookup(file));
+    Assert.assertEquals(sha256("runtime: java9"), cache.hash(file));
+  }
+
+  @Test
+  public void testLookup_replacedFile() throws IOException {
+    Path file = write("app.yaml", "runtime: java8");
+    FileHashCache cache = new FileHashCache(cacheFile);
+    cache.hash(file);
+
+    // same size and modification time but a different inode
+    FileTime lastModified = Files.getLastModifiedTime(file);
+    Path replacement = write("replacement.yaml", "runtime: java9");
+    Files.setLastModifiedTime(replacement, lastModified);
+    Files.delete(file);
+    Files.move(replacement, file);
+
+    Assume.assumeNotNull(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+    Assert.assertNull(cache.lookup(file));
+  }
+
+  @Test
+  public void testUpdateAll_persisted() throws IOException {
+    final Path appYaml = write("app.yaml", "runtime: java8");
+    final Path webXml = write("WEB-INF/web.xml", "<web-app/>");
+
+    FileHashCache cache = new FileHashCache(cacheFile);
+    cache.updateAll(Arrays.asList(appYaml, webXml), 4);
+    cache.save();
+    Assert.assertTrue(Files.isRegularFile(cacheFile));
+
+    FileHashCache reloaded = new FileHashCache(cacheFile);
+    Assert.assertEquals(sha256("runtime: java8"), reloaded.lookup(appYaml));
+    Assert.assertEquals(sha256("<web-app/>"), reloaded.lookup(webXml));
+  }
+
+  @Test
+  public void testLoad_brokenCacheFile() throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    Files.write(cacheFile, "{not json".getBytes(Charsets.UTF_8));
+    Path file = write("app.yaml", "runtime: java8");
+
+    FileHashCache cache = new FileHashCache(cacheFile);
+    Assert.assertNull(cache.lookup(file));
+    Assert.assertEquals(sha256("runtime: java8"), cache.hash(file));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileOutputLineListenerTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private File logFile;
+
+  @Before
+  public void setUp() {
+    logFile = new File(tmp.getRoot(), "logs/dev_appserver.out");
+  }
+
+  private static Executor newThread() {
+    return runnable -> new Thread(runnable).start();
+  }
+
+  private List<String> read(String name) throws IOException {
+    return Files.readAllLines(logFile.toPath().resolveSibling(name), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testWritesLines() throws IOException {
+    FileOutputLineListener listener = new FileOutputLineListener(logFile);
+    listener.onOutputLine("first");
+    listener.onOutputLine("second");
+    listener.close();
+
+    Assert.assertEquals(ImmutableList.of("first", "second"), read("dev_appserver.out"));
+    Assert.assertEquals(0, listener.getDroppedLines());
+  }
+
+  @Test
+  public void testRotatesPreviousRun() throws IOException {
+    FileOutputLineListener listener = new FileOutputLineListener(logFile);
+    listener.onOutputLine("first run");
+    listener.close();
+
+    listener = new FileOutputLineListener(logFile);
+    listener.onOutputLine("second run");
+    listener.close();
+
+    Assert.assertEquals(ImmutableList.of("second run"), read("dev_appserver.out"));
+    Assert.assertEquals(ImmutableList.of("first run"), read("dev_appserver.out.1"));
+  }
+
+  @Test
+  public void testRotatesBySize() throws IOException {
+    // room for two 4 byte lines per file, keep two rotated files
+    int lineBytes = "0000".length() + System.lineSeparator().length();
+    FileOutputLineListener listener =
+        new FileOutputLineListener(logFile, 2 * lineBytes, 2, 100, newThread(), null);
+    for (int i = 0; i < 7; i++) {
+      listener.onOutputLine("000" + i);
+    }
+    listener.close();
+
+    Assert.assertEquals(ImmutableList.of("0006"), read("dev_appserver.out"));
+    Assert.assertEquals(ImmutableList.of("0004", "0005"), read("dev_appserver.out.1"));
+    Assert.assertEquals(ImmutableList.of("0002", "0003"), read("dev_appserver.out.2"));
+    Assert.assertFalse(Files.exists(logFile.toPath().resolveSibling("dev_appserver.out.3")));
+  }
+
+  @Test
+  public void testDropsLinesWhenQueueIsFull() throws IOException {
+    List<Runnable> writers = new ArrayList<>();
+    FileOutputLineListener listener =
+        new FileOutputLineListener(logFile, 1024, 1, 2, writers::add, null);
+    for (int i = 0; i < 5; i++) {
+      listener.onOutputLine("line " + i);
+    }
+    Assert.assertEquals(3, listener.getDroppedLines());
+
+    // let the writer catch up
+    newThread().execute(writers.get(0));
+    listener.close();
+
+    Path log = logFile.toPath();
+    Assert.assertEquals(
+        ImmutableList.of("line 0", "line 1", "[3 lines dropped, the log writer fell behind]"),
+        Files.readAllLines(log, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCountsLinesAfterClose() throws IOException {
+    FileOutputLineListener listener = new FileOutputLineListener(logFile);
+    listener.onOutputLine("first");
+    listener.close();
+    listener.onOutputLine("too late");
+
+    Assert.assertEquals(ImmutableList.of("first"), read("dev_appserver.out"));
+    Assert.assertEquals(1, listener.getDroppedLines());
+  }
+
+  @Test
+  public void testTellsIndexWhereLinesAre() throws IOException {
+    int lineBytes = "0000".length() + System.lineSeparator().length();
+    List<String> events = new ArrayList<>();
+    FileOutputLineListener.LineIndex index =
+        new FileOutputLineListener.LineIndex() {
+          @Override
+          public void lineWritten(String line, long offset, int length) {
+            events.add(line + "@" + offset + "+" + length);
+          }
+
+          @Override
+          public void fileFinished(boolean rotated) {
+            events.add(rotated ? "rotated" : "closed");
+          }
+
+          @Override
+          public String droppedLinesNotice(long droppedLines) {
+            return "dropped " + droppedLines;
+          }
+        };
+    FileOutputLineListener listener =
+        new FileOutputLineListener(logFile, 2 * lineBytes, 2, 100, newThread(), index);
+    for (int i = 0; i < 3; i++) {
+      listener.onOutputLine("000" + i);
+    }
+    listener.close();
+
+    Assert.assertEquals(
+        ImmutableList.of(
+            "0000@0+" + lineBytes,
+            "0001@" + lineBytes + "+" + lineBytes,
+            "rotated",
+            "0002@0+" + lineBytes,
+            "closed"),
+        events);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GradleLoggerOutputListenerTest {
+
+  @Mock private Logger logger;
+
+  private long now;
+  private GradleLoggerOutputListener listener;
+
+  @Before
+  public void setUp() {
+    listener = new GradleLoggerOutputListener(logger, null, "[a] ", () -> now);
+  }
+
+  @Test
+  public void testFixedLevel() {
+    new GradleLoggerOutputListener(logger, LogLevel.INFO).onOutputLine("ERROR: not classified");
+
+    Mockito.verify(logger).log(LogLevel.INFO, "ERROR: not classified");
+  }
+
+  @Test
+  public void testClassifiesLevels() {
+    listener.onOutputLine("ERROR: (gcloud.app.deploy) Permission denied");
+    listener.onOutputLine("WARNING: Found 2 errors in app.yaml");
+    listener.onOutputLine("SEVERE: Unable to start the server");
+    listener.onOutputLine("Beginning deployment of service [default]...");
+
+    InOrder inOrder = Mockito.inOrder(logger);
+    inOrder.verify(logger).log(LogLevel.ERROR, "[a] ERROR: (gcloud.app.deploy) Permission denied");
+    inOrder.verify(logger).log(LogLevel.WARN, "[a] WARNING: Found 2 errors in app.yaml");
+    inOrder.verify(logger).log(LogLevel.ERROR, "[a] SEVERE: Unable to start the server");
+    inOrder
+        .verify(logger)
+        .log(LogLevel.LIFECYCLE, "[a] Beginning deployment of service [default]...");
+  }
+
+  @Test
+  public void testCollapsesProgress() {
+    listener.onOutputLine("Uploading [1/3] files");
+    now += 500;
+    listener.onOutputLine("Uploading [2/3] files");
+    now += 500;
+    listener.onOutputLine("Uploading [3/3] files");
+    listener.onOutputLine("File upload done.");
+
+    InOrder inOrder = Mockito.inOrder(logger);
+    inOrder.verify(logger).lifecycle("[a] Uploading [1/3] files");
+    inOrder.verify(logger).info("[a] Uploading [2/3] files");
+    inOrder.verify(logger).info("[a] Uploading [3/3] files");
+    // the final state of a collapsed run is shown
+    inOrder.verify(logger).lifecycle("[a] Uploading [3/3] files");
+    inOrder.verify(logger).log(LogLevel.LIFECYCLE, "[a] File upload done.");
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void testShowsProgressPeriodically() {
+    listener.onOutputLine("Copying 10%");
+    now += 1000;
+    listener.onOutputLine("Copying 20%");
+    now += 1000;
+    listener.onOutputLine("Copying 30%");
+    listener.flush();
+
+    InOrder inOrder = Mockito.inOrder(logger);
+    inOrder.verify(logger).lifecycle("[a] Copying 10%");
+    inOrder.verify(logger).info("[a] Copying 20%");
+    inOrder.verify(logger).lifecycle("[a] Copying 30%");
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void testDotsAreProgress() {
+    listener.onOutputLine("....");
+    listener.onOutputLine("........");
+
+    Mockito.verify(logger).lifecycle("[a] ....");
+    Mockito.verify(logger).info("[a] ........");
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.google.cloud.tools.gradle.appengine.util.io;
+
+import com.google.cloud.tools.gradle.appengine.util.io.ParallelZipExtractor.Entry;
+import com.google.common.base.Charsets;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelZipExtractorTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private Path destination;
+
+  @Before
+  public void setUp() throws IOException {
+    destination = tmp.newFolder("exploded").toPath();
+  }
+
+  @Test
+  public void testExtract_storedAndDeflatedEntries() throws IOException {
+    byte[] big = new byte[3 * 1024 * 1024];
+    new Random(0).nextBytes(big);
+    byte[] text = "<appengine-web-app/>".getBytes(Charsets.UTF_8);
+
+    Path war = tmp.getRoot().toPath().resolve("app.war");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(war))) {
+      zip.putNextEntry(new ZipEntry("WEB-INF/"));
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("WEB-INF/appengine-web.xml"));
+      zip.write(text);
+      zip.closeEntry();
+      addStoredEntry(zip, "WEB-INF/lib/big.jar", big);
+      zip.putNextEntry(new ZipEntry("WEB-INF/lib/big-deflated.jar"));
+      zip.write(big);
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("empty.txt"));
+      zip.closeEntry();
+    }
+
+    Set<Path> extracted = new ParallelZipExtractor(4).extract(war, destination);
+
+    Assert.assertArrayEquals(
+        text, Files.readAllBytes(destination.resolve("WEB-INF/appengine-web.xml")));
+    Assert.assertArrayEquals(big, Files.readAllBytes(destination.resolve("WEB-INF/lib/big.jar")));
+    Assert.assertArrayEquals(
+        big, Files.readAllBytes(destination.resolve("WEB-INF/lib/big-deflated.jar")));
+    Assert.assertEquals(0, Files.size(destination.resolve("empty.txt")));
+    Assert.assertTrue(extracted.contains(destination.resolve("WEB-INF").toAbsolutePath()));
+    Assert.assertTrue(extracted.contains(destination.resolve("WEB-INF/lib").toAbsolutePath()));
+    Assert.assertTrue(
+        extracted.contains(destination.resolve("WEB-INF/lib/big.jar").toAbsolutePath()));
+  }
+
+  @Test
+  public void testExtract_overwritesExistingFiles() throws IOException {
+    Path war = tmp.getRoot().toPath().resolve("app.war");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(war))) {
+      zip.putNextEntry(new ZipEntry("index.html"));
+      zip.write("new".getBytes(Charsets.UTF_8));
+      zip.closeEntry();
+    }
+    Path index = destination.resolve("index.html");
+    Files.write(index, "old and longer".getBytes(Charsets.UTF_8));
+
+    new ParallelZipExtractor(2).extract(war, destination);
+
+    Assert.assertEquals("new", new String(Files.readAllBytes(index), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testExtract_restoresModificationTimeAndMode() throws IOException {
+    Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+    FileTime lastModified = FileTime.from(1500000000L, TimeUnit.SECONDS);
+    Path war = tmp.getRoot().toPath().resolve("app.war");
+    try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(war.toFile())) {
+      ZipArchiveEntry script = new ZipArchiveEntry("bin/run.sh");
+      script.setUnixMode(0755);
+      script.setLastModifiedTime(lastModified);
+      zip.putArchiveEntry(script);
+      zip.write("#!/bin/sh".getBytes(Charsets.UTF_8));
+      zip.closeArchiveEntry();
+    }
+
+    new ParallelZipExtractor(1).extract(war, destination);
+
+    Path script = destination.resolve("bin/run.sh");
+    Assert.assertTrue(
+        Files.getPosixFilePermissions(script).contains(PosixFilePermission.OWNER_EXECUTE));
+    Assert.assertEquals(
+        lastModified.to(TimeUnit.SECONDS),
+        Files.getLastModifiedTime(script).to(TimeUnit.SECONDS),
+        2);
+  }
+
+  @Test
+  public void testExtract_rejectsEntriesOutsideDestination() throws IOException {
+    Path war = tmp.getRoot().toPath().resolve("evil.war");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(war))) {
+      zip.putNextEntry(new ZipEntry("../evil.txt"));
+      zip.write(1);
+      zip.closeEntry();
+    }
+
+    try {
+      new ParallelZipExtractor(1).extract(war, destination);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().contains("../evil.txt"));
+    }
+    Assert.assertFalse(Files.exists(tmp.getRoot().toPath().resolve("evil.txt")));
+  }
+
+  @Test
+  public void testExtract_notAZip() throws IOException {
+    Path war = tmp.newFile("broken.war").toPath();
+    Files.write(war, "not a zip".getBytes(Charsets.UTF_8));
+
+    try {
+      new ParallelZipExtractor(1).extract(war, destination);
+      Assert.fail();
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testPartition_largestFirstAndBatched() {
+    List<Entry> entries = new ArrayList<>();
+    entries.add(entry("small-1", 10));
+    entries.add(entry("huge", 64L * 1024 * 1024));
+    entries.add(entry("small-2", 10));
+    entries.add(entry("medium", 2L * 1024 * 1024));
+
+    List<List<Entry>> partitions = new ParallelZipExtractor(4).partition(entries);
+
+    // the huge entry gets a partition of its own and is scheduled first, everything else is
+    // batched together
+    Assert.assertEquals(2, partitions.size());
+    Assert.assertEquals(Arrays.asList("huge"), names(partitions.get(0)));
+    Assert.assertEquals(Arrays.asList("medium", "small-1", "small-2"), names(partitions.get(1)));
+  }
+
+  @Test
+  public void testDosToFileTime() {
+    // 2018-03-14 12:30:10
+    int dosDate = ((2018 - 1980) << 9) | (3 << 5) | 14;
+    int dosTime = (12 << 11) | (30 << 5) | 5;
+    FileTime fileTime = ParallelZipExtractor.dosToFileTime(dosDate, dosTime);
+    Assert.assertEquals(
+        LocalDateTime.of(2018, 3, 14, 12, 30, 10),
+        LocalDateTime.ofInstant(fileTime.toInstant(), ZoneId.systemDefault()));
+  }
+
+  @Test
+  public void testToPermissions() {
+    Set<PosixFilePermission> permissions = ParallelZipExtractor.toPermissions(0640);
+    Assert.assertEquals(3, permissions.size());
+    Assert.assertTrue(permissions.contains(PosixFilePermission.OWNER_READ));
+    Assert.assertTrue(permissions.contains(PosixFilePermission.OWNER_WRITE));
+    Assert.assertTrue(permissions.contains(PosixFilePermission.GROUP_READ));
+  }
+
+  private static void addStoredEntry(ZipOutputStream zip, String name, byte[] content)
+      throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    entry.setCompressedSize(content.length);
+    entry.setCrc(crc.getValue());
+    zip.putNextEntry(entry);
+    zip.write(content);
+    zip.closeEntry();
+  }
+
+  private static Entry entry(String name, long compressedSize) {
+    Entry entry = new Entry(name, null, false);
+    entry.compressedSize = compressedSize;
+    return entry;
+  }
+
+  private static List<String> names(List<Entry> entries) {
+    List<String> names = new ArrayList<>();
+    for (Entry entry : entries) {
+      names.add(entry.name);
+    }
+    names.sort(String::compareTo);
+    return names;
+  }
+}